@@ -2,6 +2,9 @@ package com.techeart.restapi;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+
+import java.time.Clock;
 
 @SpringBootApplication
 public class RestapiApplication
@@ -11,4 +14,13 @@ public class RestapiApplication
 		SpringApplication.run(RestapiApplication.class, args);
 	}
 
+	/**
+	 * Clock of the dates the service works with, such as the age of users.
+	 * */
+	@Bean
+	public Clock clock()
+	{
+		return Clock.systemDefaultZone();
+	}
+
 }
@@ -1,52 +1,238 @@
 package com.techeart.restapi.api.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.techeart.restapi.api.data.DataChangesDto;
 import com.techeart.restapi.api.data.DataRequestDto;
 import com.techeart.restapi.api.data.DataResponseDto;
+import com.techeart.restapi.api.data.UserFieldsWriter;
 import com.techeart.restapi.api.data.UserPatchDto;
+import com.techeart.restapi.api.data.UserPatchItemDto;
+import com.techeart.restapi.api.exception.ApiRequestException;
 import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.repository.UserQuery;
+import com.techeart.restapi.repository.UserSearchResult;
+import com.techeart.restapi.service.UserChangeLog;
+import com.techeart.restapi.service.UserChangeStream;
+import com.techeart.restapi.service.UserJsonCache;
 import com.techeart.restapi.service.UsersService;
+import jakarta.annotation.Nullable;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping(path = "api/v1/users")
 public class UsersController
 {
+    /**
+     * Response header describing how a query was answered, see {@link com.techeart.restapi.repository.QueryPlan}.
+     * */
+    public static final String QUERY_PLAN_HEADER = "X-Query-Plan";
+
     private final UsersService usersService;
+    private final UserJsonCache userJsonCache;
+    private final UserFieldsWriter fieldsWriter;
+    private final UserChangeLog changeLog;
+    private final UserChangeStream changeStream;
+
+    /**
+     * Writes single users to a shared generator, which is flushed by the buffer size rather than after every user.
+     * */
+    private final ObjectWriter userWriter;
+
+    /**
+     * Formats other than JSON that responses can be written in, chosen only if the client prefers them.
+     * */
+    private final List<MediaType> otherFormats;
 
     @Autowired
-    public UsersController(UsersService usersService)
+    public UsersController(UsersService usersService, UserJsonCache userJsonCache,
+                           UserFieldsWriter fieldsWriter, UserChangeLog changeLog,
+                           UserChangeStream changeStream, ObjectMapper mapper,
+                           HttpMessageConverters converters)
     {
         this.usersService = usersService;
+        this.userJsonCache = userJsonCache;
+        this.fieldsWriter = fieldsWriter;
+        this.changeLog = changeLog;
+        this.changeStream = changeStream;
+        this.userWriter = mapper.writerFor(User.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.otherFormats = converters.getConverters().stream()
+                .flatMap(converter -> converter.getSupportedMediaTypes(DataResponseDto.class).stream())
+                .filter(type -> type.isConcrete() && !type.isCompatibleWith(MediaType.APPLICATION_JSON))
+                .toList();
     }
 
     @GetMapping
-    public DataResponseDto getPage(@RequestParam(name = "offset", required = false) Integer offset,
-                                   @RequestParam(name = "limit", required = false) Integer limit,
-                                   HttpServletRequest request)
+    public ResponseEntity<Object> getPage(@RequestParam(name = "offset", required = false) Integer offset,
+                                          @RequestParam(name = "limit", required = false) Integer limit,
+                                          @RequestParam(name = "cursor", required = false) String cursor,
+                                          @RequestParam(name = "sort", required = false) String sort,
+                                          @RequestParam(name = "fields", required = false) String fields,
+                                          HttpServletRequest servletRequest, WebRequest request)
     {
-        return usersService.get(offset, limit, request.getRequestURL().toString());
+        String url = servletRequest.getRequestURL().toString();
+        if (sort != null)
+        {
+            if (cursor != null)
+                throw ApiRequestException.badRequest("Sorted pages are addressed by offset, not by cursor.");
+
+            return respond(usersService.getSorted(sort, offset, limit, url), fields, request);
+        }
+
+        if (cursor != null)
+            return respond(usersService.getByCursor(cursor, limit, url), fields, request);
+
+        return respond(usersService.get(offset, limit, url), fields, request);
     }
 
     @GetMapping(path = "{userId}")
-    public DataResponseDto getOne(@PathVariable UUID userId)
+    public ResponseEntity<Object> getOne(@PathVariable UUID userId,
+                                         @RequestParam(name = "fields", required = false) String fields,
+                                         WebRequest request)
     {
-        return new DataResponseDto(usersService.getOne(userId));
+        if (fields != null || !acceptsJson(request))
+            return respond(new DataResponseDto(usersService.getOne(userId)), fields, request);
+
+        UserJsonCache.UserJson json = userJsonCache.get(userId);
+
+        /*sets the ETag header and status 304 if the client already has this body*/
+        if (request.checkNotModified(json.etag()))
+            return null;
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).eTag(json.etag()).body(json.body());
     }
 
+    /**
+     * Finds users born between the dates (exclusive), or being of an age between the bounds (inclusive).
+     * */
     @GetMapping(path = "search")
-    public DataResponseDto findByBirthDate(
-            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) @RequestParam("minDate") LocalDate minDate,
+    public ResponseEntity<Object> findByBirthDate(
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) @RequestParam(value = "minDate", required = false) LocalDate minDate,
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) @RequestParam(value = "maxDate", required = false) LocalDate maxDate,
+            @RequestParam(value = "minAge", required = false) Integer minAge,
+            @RequestParam(value = "maxAge", required = false) Integer maxAge,
+            @RequestParam(name = "fields", required = false) String fields,
+            WebRequest request)
+    {
+        List<User> users;
+        if (minAge == null && maxAge == null)
+        {
+            if (minDate == null)
+                throw ApiRequestException.badRequest("Either 'minDate' or an age bound is required.");
+
+            users = usersService.getByBirthDate(minDate, maxDate);
+        }
+        else
+        {
+            if (minDate != null || maxDate != null)
+                throw ApiRequestException.badRequest("Search either by birth dates or by ages.");
+
+            users = usersService.getByAge(minAge, maxAge);
+        }
+
+        return respond(new DataResponseDto(users.toArray()), fields, request);
+    }
+
+    @GetMapping(path = "query")
+    public ResponseEntity<Object> query(
+            @RequestParam(value = "emailDomain", required = false) String emailDomain,
+            @RequestParam(value = "firstName", required = false) String firstName,
+            @RequestParam(value = "lastName", required = false) String lastName,
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) @RequestParam(value = "minDate", required = false) LocalDate minDate,
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) @RequestParam(value = "maxDate", required = false) LocalDate maxDate,
+            @RequestParam(value = "minAge", required = false) Integer minAge,
+            @RequestParam(value = "maxAge", required = false) Integer maxAge,
+            @RequestParam(value = "hasPhone", required = false) Boolean hasPhone,
+            @RequestParam(value = "hasAddress", required = false) Boolean hasAddress,
+            @RequestParam(value = "emailContains", required = false) String emailContains,
+            @RequestParam(value = "addressContains", required = false) String addressContains,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "fields", required = false) String fields,
+            WebRequest request)
+    {
+        UserQuery query = new UserQuery(emailDomain, firstName, lastName, minDate, maxDate, hasPhone, hasAddress,
+                emailContains, addressContains);
+        UserSearchResult result = usersService.search(query, minAge, maxAge, limit);
+
+        return respond(ResponseEntity.ok().header(QUERY_PLAN_HEADER, result.plan()),
+                new DataResponseDto(result.users().toArray()), fields, request);
+    }
+
+    @GetMapping(path = "suggest")
+    public ResponseEntity<Object> suggest(@RequestParam(name = "prefix") String prefix,
+                                          @RequestParam(name = "limit", required = false) Integer limit,
+                                          @RequestParam(name = "fields", required = false) String fields,
+                                          WebRequest request)
+    {
+        return respond(new DataResponseDto(usersService.suggest(prefix, limit).toArray()), fields, request);
+    }
+
+    @PostMapping(path = "lookup")
+    public ResponseEntity<Object> findAllById(@RequestBody DataRequestDto<List<UUID>> userIds,
+                                              @RequestParam(name = "fields", required = false) String fields,
+                                              WebRequest request)
+    {
+        /*a POST, so that long lists of ids are not limited by the length of the URL*/
+        return respond(usersService.getMany(userIds.getData()), fields, request);
+    }
+
+    @GetMapping(path = "changes")
+    public DataChangesDto getChanges(@RequestParam(name = "since") long version,
+                                     @RequestParam(name = "limit", required = false) Integer limit)
+    {
+        UserChangeLog.Changes changes = changeLog.since(version, limit);
+        return new DataChangesDto(changes.version(), changes.hasMore(), changes.changes().toArray());
+    }
+
+    @GetMapping(path = "changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges()
+    {
+        return changeStream.subscribe();
+    }
+
+    @GetMapping(path = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> export(
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) @RequestParam(value = "minDate", required = false) LocalDate minDate,
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) @RequestParam(value = "maxDate", required = false) LocalDate maxDate)
     {
-        return new DataResponseDto(usersService.getByBirthDate(minDate, maxDate).toArray());
+        /*taking the snapshot before the response is committed, so that bad arguments still get an error response*/
+        Stream<User> users = usersService.export(minDate, maxDate);
+
+        StreamingResponseBody body = out -> {
+            try (users; JsonGenerator generator = userWriter.createGenerator(out))
+            {
+                /*lines are separated explicitly instead*/
+                generator.setRootValueSeparator(null);
+                for (User user : (Iterable<User>) users::iterator)
+                {
+                    userWriter.writeValue(generator, user);
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     @PostMapping
@@ -56,12 +242,25 @@ public class UsersController
         usersService.add(user.getData());
     }
 
+    @PostMapping(path = "batch")
+    public DataResponseDto createAll(@RequestBody DataRequestDto<List<User>> users)
+    {
+        /*items are validated one by one, so that an invalid item does not fail the others*/
+        return new DataResponseDto(usersService.addAll(users.getData()).toArray());
+    }
+
     @PatchMapping(path = "{userId}")
     public void update(@PathVariable UUID userId, @RequestBody DataRequestDto<UserPatchDto> data)
     {
         usersService.patch(userId, data.getData());
     }
 
+    @PatchMapping(path = "batch")
+    public DataResponseDto updateAll(@RequestBody DataRequestDto<List<UserPatchItemDto>> data)
+    {
+        return new DataResponseDto(usersService.patchAll(data.getData()).toArray());
+    }
+
     @PutMapping
     public void replace(@RequestBody DataRequestDto<User> user)
     {
@@ -73,4 +272,62 @@ public class UsersController
     {
         usersService.delete(userId);
     }
+
+    @DeleteMapping(path = "batch")
+    public DataResponseDto deleteAll(@RequestBody DataRequestDto<List<UUID>> userIds)
+    {
+        return new DataResponseDto(usersService.deleteAll(userIds.getData()).toArray());
+    }
+
+    /**
+     * Returns the response as is, to be written in the negotiated format,
+     * or serialized as JSON with only the requested user fields.
+     * */
+    private ResponseEntity<Object> respond(DataResponseDto response, @Nullable String fields, WebRequest request)
+    {
+        return respond(ResponseEntity.ok(), response, fields, request);
+    }
+
+    private ResponseEntity<Object> respond(ResponseEntity.BodyBuilder builder, DataResponseDto response,
+                                           @Nullable String fields, WebRequest request)
+    {
+        if (fields == null)
+            return builder.body(response);
+
+        if (!acceptsJson(request))
+            throw new ApiRequestException(HttpStatus.NOT_ACCEPTABLE, "Selecting user fields is supported for JSON only.");
+
+        byte[] body = fieldsWriter.write(response, fieldsWriter.parse(fields));
+        return builder.contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Tells whether JSON is the format the client prefers, so that pre-serialized JSON can be returned
+     * instead of negotiating the format. Accepted types are taken by quality, then by specificity,
+     * like content negotiation does; JSON, the default format, is chosen for wildcards.
+     * */
+    private boolean acceptsJson(WebRequest request)
+    {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null || accept.isBlank())
+            return true;
+
+        List<MediaType> accepted = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        /*media types compare their quality before their specificity*/
+        MimeTypeUtils.sortBySpecificity(accepted);
+
+        for (MediaType type : accepted)
+        {
+            if (type.getQualityValue() == 0)
+                continue;
+
+            if (type.isCompatibleWith(MediaType.APPLICATION_JSON))
+                return true;
+
+            if (otherFormats.stream().anyMatch(type::isCompatibleWith))
+                return false;
+        }
+
+        return false;
+    }
 }
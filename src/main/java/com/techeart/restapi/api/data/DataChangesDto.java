@@ -0,0 +1,33 @@
+package com.techeart.restapi.api.data;
+
+/**
+ * Changes of users after a version, oldest first.
+ * */
+public class DataChangesDto extends DataResponseDto
+{
+    private long version;
+    private boolean hasMore;
+
+    public DataChangesDto(long version, boolean hasMore, Object... objects)
+    {
+        super(objects);
+        this.version = version;
+        this.hasMore = hasMore;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
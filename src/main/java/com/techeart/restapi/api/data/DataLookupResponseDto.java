@@ -0,0 +1,26 @@
+package com.techeart.restapi.api.data;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Users found on a list of ids, in the order of the ids, and the ids not found.
+ * */
+public class DataLookupResponseDto extends DataResponseDto
+{
+    private List<UUID> missing;
+
+    public DataLookupResponseDto(List<UUID> missing, Object... objects)
+    {
+        super(objects);
+        this.missing = missing;
+    }
+
+    public List<UUID> getMissing() {
+        return missing;
+    }
+
+    public void setMissing(List<UUID> missing) {
+        this.missing = missing;
+    }
+}
@@ -0,0 +1,112 @@
+package com.techeart.restapi.api.data;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.techeart.restapi.api.exception.ApiRequestException;
+import com.techeart.restapi.api.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.util.List;
+
+/**
+ * Serializes responses with only the requested properties of their users (sparse fieldsets).
+ * <p>
+ * A combination of properties is a bit mask over {@link #FIELDS}. The writer of every combination
+ * is created up front, and users are written property by property without reflection.
+ * */
+@Component
+public class UserFieldsWriter
+{
+    /**
+     * Properties of {@link User} in the order they are serialized.
+     * */
+    public static final List<String> FIELDS =
+            List.of("id", "email", "firstName", "lastName", "birthDate", "address", "phoneNumber");
+
+    private static final String MASK_ATTRIBUTE = UserFieldsWriter.class.getName() + ".mask";
+
+    private final ObjectWriter[] writers = new ObjectWriter[1 << FIELDS.size()];
+
+    @Autowired
+    public UserFieldsWriter(ObjectMapper mapper)
+    {
+        /*the copy keeps the date and id formats of the application mapper*/
+        ObjectMapper projecting = mapper.copy().registerModule(new SimpleModule().addSerializer(User.class, new Serializer()));
+
+        ObjectWriter base = projecting.writer();
+        for (int mask = 1; mask < writers.length; mask++)
+            writers[mask] = base.withAttribute(MASK_ATTRIBUTE, mask);
+    }
+
+    /**
+     * Parses a comma-separated list of property names.
+     * */
+    public int parse(String fields) throws ApiRequestException
+    {
+        int mask = 0;
+        for (String field : fields.split(","))
+        {
+            int index = FIELDS.indexOf(field.trim());
+            if (index < 0)
+                throw ApiRequestException.badRequest("Unknown user field: '" + field.trim() + "'.");
+
+            mask |= 1 << index;
+        }
+
+        return mask;
+    }
+
+    public byte[] write(Object response, int mask)
+    {
+        try
+        {
+            return writers[mask].writeValueAsBytes(response);
+        }
+        catch (JsonProcessingException e)
+        {
+            throw new IllegalStateException("Can't serialize the response", e);
+        }
+    }
+
+    private static final class Serializer extends StdSerializer<User>
+    {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private Serializer()
+        {
+            super(User.class);
+        }
+
+        @Override
+        public void serialize(User user, JsonGenerator gen, SerializerProvider provider) throws IOException
+        {
+            int mask = (Integer) provider.getAttribute(MASK_ATTRIBUTE);
+
+            gen.writeStartObject(user);
+            if ((mask & 1) != 0)
+                provider.defaultSerializeField("id", user.getId(), gen);
+            if ((mask & 1 << 1) != 0)
+                provider.defaultSerializeField("email", user.getEmail(), gen);
+            if ((mask & 1 << 2) != 0)
+                provider.defaultSerializeField("firstName", user.getFirstName(), gen);
+            if ((mask & 1 << 3) != 0)
+                provider.defaultSerializeField("lastName", user.getLastName(), gen);
+            if ((mask & 1 << 4) != 0)
+                provider.defaultSerializeField("birthDate", user.getBirthDate(), gen);
+            if ((mask & 1 << 5) != 0)
+                provider.defaultSerializeField("address", user.getAddress(), gen);
+            if ((mask & 1 << 6) != 0)
+                provider.defaultSerializeField("phoneNumber", user.getPhoneNumber(), gen);
+            gen.writeEndObject();
+        }
+    }
+}
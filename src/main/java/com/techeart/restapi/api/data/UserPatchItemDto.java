@@ -0,0 +1,30 @@
+package com.techeart.restapi.api.data;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Patch of a single user within a bulk patch request.
+ * */
+public class UserPatchItemDto extends UserPatchDto
+{
+    @JsonProperty("id")
+    private UUID id;
+
+    public UserPatchItemDto() { }
+
+    public UserPatchItemDto(UUID id, String email, String firstName, String lastName, LocalDate birthDate, String address, String phoneNumber) {
+        super(email, firstName, lastName, birthDate, address, phoneNumber);
+        this.id = id;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+}
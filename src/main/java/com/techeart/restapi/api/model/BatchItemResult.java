@@ -0,0 +1,45 @@
+package com.techeart.restapi.api.model;
+
+import org.springframework.http.HttpStatusCode;
+
+import java.util.UUID;
+
+/**
+ * Outcome of one item of a batch request.
+ * */
+public class BatchItemResult
+{
+    private final int index;
+    private final int status;
+    private final UUID id;
+    private final String detail;
+
+    /**
+     * @param index position of the item in the request
+     * @param id id of the user the item created, changed or referred to
+     * @param detail reason of the failure, null if the item succeeded
+     * */
+    public BatchItemResult(int index, HttpStatusCode status, UUID id, String detail)
+    {
+        this.index = index;
+        this.status = status.value();
+        this.id = id;
+        this.detail = detail;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+}
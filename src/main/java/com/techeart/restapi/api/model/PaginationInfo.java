@@ -5,6 +5,7 @@ public class PaginationInfo
     private int offset;
     private int limit;
     private int total;
+    private long version;
 
     public PaginationInfo() { }
 
@@ -14,6 +15,11 @@ public class PaginationInfo
         this.total = total;
     }
 
+    public PaginationInfo(int offset, int limit, int total, long version) {
+        this(offset, limit, total);
+        this.version = version;
+    }
+
     public int getOffset() {
         return offset;
     }
@@ -37,4 +43,12 @@ public class PaginationInfo
     public void setTotal(int total) {
         this.total = total;
     }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
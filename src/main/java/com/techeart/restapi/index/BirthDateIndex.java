@@ -0,0 +1,455 @@
+package com.techeart.restapi.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Sorted index of user slots by birth date.
+ * <p>
+ * Entries are (epoch day, slot) pairs kept in primitive arrays, ordered by day and then by slot.
+ * The entries are split into sorted chunks of bounded size, so an insertion or removal only moves
+ * the entries of one chunk, while a range query is a binary search followed by a sequential walk.
+ * <p>
+ * Like {@link SlotList}, the index can be {@link #snapshot() snapshotted}: snapshots share chunks
+ * with the index, which copies a shared chunk before modifying it. Chunks are grouped into pages
+ * of up to 64 chunks, so a snapshot copies only the directory of pages and a write after it
+ * copies at most one page and one chunk, besides rarely splitting a page.
+ * */
+public class BirthDateIndex
+{
+    private static final int MAX_CHUNK_SIZE = 512;
+    private static final int MAX_PAGE_CHUNKS = 64;
+
+    private Page[] pages = new Page[] { new Page(0) };
+    private int pageCount = 1;
+    private int size;
+
+    /**
+     * Pages and chunks created in a different generation may be shared with snapshots.
+     * */
+    private long generation;
+
+    private final boolean frozen;
+
+    public BirthDateIndex()
+    {
+        this.frozen = false;
+    }
+
+    private BirthDateIndex(BirthDateIndex source)
+    {
+        this.pages = Arrays.copyOf(source.pages, source.pageCount);
+        this.pageCount = source.pageCount;
+        this.size = source.size;
+        this.frozen = true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns an immutable copy of the current state of the index.
+     * */
+    public BirthDateIndex snapshot()
+    {
+        if (frozen)
+            return this;
+
+        BirthDateIndex snapshot = new BirthDateIndex(this);
+
+        /*all current pages and chunks are shared from now on*/
+        generation++;
+        return snapshot;
+    }
+
+    public void add(long epochDay, int slot)
+    {
+        checkMutable();
+
+        int p = findPage(epochDay, slot);
+        Page page = ownedPage(p);
+        int c = page.findChunk(epochDay, slot);
+        Chunk chunk = page.ownedChunk(c, generation);
+
+        if (chunk.size == MAX_CHUNK_SIZE)
+        {
+            Chunk upper = chunk.split(generation);
+            page.insertChunk(c + 1, upper);
+
+            if (compare(epochDay, slot, upper.days[0], upper.slots[0]) >= 0)
+                chunk = upper;
+        }
+
+        chunk.insert(epochDay, slot);
+        page.size++;
+        size++;
+
+        /*a full page is split right away, so that a chunk can always be inserted*/
+        if (page.chunkCount == MAX_PAGE_CHUNKS)
+            insertPage(p + 1, page.split(generation));
+    }
+
+    /**
+     * Returns false if there was no such entry.
+     * */
+    public boolean remove(long epochDay, int slot)
+    {
+        checkMutable();
+
+        int p = findPage(epochDay, slot);
+        int c = pages[p].findChunk(epochDay, slot);
+        if (!pages[p].chunks[c].contains(epochDay, slot))
+            return false;
+
+        Page page = ownedPage(p);
+        Chunk chunk = page.ownedChunk(c, generation);
+        chunk.remove(epochDay, slot);
+
+        page.size--;
+        size--;
+
+        if (chunk.size == 0 && page.chunkCount > 1)
+            page.removeChunk(c);
+        else if (page.size == 0 && pageCount > 1)
+            removePage(p);
+
+        return true;
+    }
+
+    public void clear()
+    {
+        checkMutable();
+
+        pages = new Page[] { new Page(generation) };
+        pageCount = 1;
+        size = 0;
+    }
+
+    /**
+     * Passes the slots of all entries with a day in the given inclusive range
+     * to the action, in ascending order of days.
+     * */
+    public void forEachBetween(long fromDay, long toDay, IntConsumer action)
+    {
+        forEachBetweenWhile(fromDay, toDay, slot -> {
+            action.accept(slot);
+            return true;
+        });
+    }
+
+    /**
+     * Like {@link #forEachBetween(long, long, IntConsumer)}, but stops as soon as the action returns false.
+     * */
+    public void forEachBetweenWhile(long fromDay, long toDay, IntPredicate action)
+    {
+        if (fromDay > toDay)
+            return;
+
+        /*slots are never negative, so (fromDay, -1) is lower than any entry of that day*/
+        int p = findPage(fromDay, -1);
+        int c = pages[p].findChunk(fromDay, -1);
+        int i = pages[p].chunks[c].lowerBound(fromDay, -1);
+
+        for (; p < pageCount; p++, c = 0)
+        {
+            Page page = pages[p];
+            for (; c < page.chunkCount; c++, i = 0)
+            {
+                Chunk chunk = page.chunks[c];
+                for (; i < chunk.size; i++)
+                {
+                    if (chunk.days[i] > toDay || !action.test(chunk.slots[i]))
+                        return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries with a day in the given inclusive range,
+     * counting whole pages and chunks instead of walking their entries.
+     * */
+    public int countBetween(long fromDay, long toDay)
+    {
+        if (fromDay > toDay)
+            return 0;
+
+        int upper = toDay == Long.MAX_VALUE ? size : countBefore(toDay + 1);
+        return upper - countBefore(fromDay);
+    }
+
+    /**
+     * Returns the number of entries with a day before the given one.
+     * */
+    private int countBefore(long day)
+    {
+        int p = findPage(day, -1);
+        Page page = pages[p];
+        int c = page.findChunk(day, -1);
+
+        int result = page.chunks[c].lowerBound(day, -1);
+        for (int i = 0; i < c; i++)
+            result += page.chunks[i].size;
+        for (int i = 0; i < p; i++)
+            result += pages[i].size;
+
+        return result;
+    }
+
+    /**
+     * Returns the index of the page the key belongs to:
+     * the last page whose first entry is not greater than the key (or the first page).
+     * */
+    private int findPage(long day, int slot)
+    {
+        int lo = 1;
+        int hi = pageCount - 1;
+        int result = 0;
+
+        while (lo <= hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            Chunk first = pages[mid].chunks[0];
+
+            if (compare(first.days[0], first.slots[0], day, slot) <= 0)
+            {
+                result = mid;
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid - 1;
+            }
+        }
+
+        return result;
+    }
+
+    private Page ownedPage(int p)
+    {
+        if (pages[p].generation != generation)
+            pages[p] = pages[p].copy(generation);
+
+        return pages[p];
+    }
+
+    private void checkMutable()
+    {
+        if (frozen)
+            throw new UnsupportedOperationException("Snapshot can not be modified.");
+    }
+
+    private void insertPage(int at, Page page)
+    {
+        if (pageCount == pages.length)
+            pages = Arrays.copyOf(pages, pageCount << 1);
+
+        System.arraycopy(pages, at, pages, at + 1, pageCount - at);
+        pages[at] = page;
+        pageCount++;
+    }
+
+    private void removePage(int at)
+    {
+        System.arraycopy(pages, at + 1, pages, at, pageCount - at - 1);
+        pages[--pageCount] = null;
+    }
+
+    private static int compare(long day1, int slot1, long day2, int slot2)
+    {
+        int result = Long.compare(day1, day2);
+        return result != 0 ? result : Integer.compare(slot1, slot2);
+    }
+
+    /**
+     * Up to {@link #MAX_PAGE_CHUNKS} consecutive chunks, with the number of their entries.
+     * */
+    private static final class Page
+    {
+        private final Chunk[] chunks;
+        private final long generation;
+        private int chunkCount;
+        private int size;
+
+        private Page(long generation)
+        {
+            this.chunks = new Chunk[MAX_PAGE_CHUNKS];
+            this.chunks[0] = new Chunk(MAX_CHUNK_SIZE, generation);
+            this.chunkCount = 1;
+            this.generation = generation;
+        }
+
+        private Page(Chunk[] chunks, int chunkCount, int size, long generation)
+        {
+            this.chunks = chunks;
+            this.chunkCount = chunkCount;
+            this.size = size;
+            this.generation = generation;
+        }
+
+        private Page copy(long generation)
+        {
+            return new Page(chunks.clone(), chunkCount, size, generation);
+        }
+
+        /**
+         * Returns the index of the chunk the key belongs to:
+         * the last chunk whose first entry is not greater than the key (or the first chunk).
+         * */
+        private int findChunk(long day, int slot)
+        {
+            int lo = 1;
+            int hi = chunkCount - 1;
+            int result = 0;
+
+            while (lo <= hi)
+            {
+                int mid = (lo + hi) >>> 1;
+                Chunk chunk = chunks[mid];
+
+                if (compare(chunk.days[0], chunk.slots[0], day, slot) <= 0)
+                {
+                    result = mid;
+                    lo = mid + 1;
+                }
+                else
+                {
+                    hi = mid - 1;
+                }
+            }
+
+            return result;
+        }
+
+        /**
+         * Must be called on a page owned by the index.
+         * */
+        private Chunk ownedChunk(int c, long generation)
+        {
+            if (chunks[c].generation != generation)
+                chunks[c] = chunks[c].copy(generation);
+
+            return chunks[c];
+        }
+
+        private void insertChunk(int at, Chunk chunk)
+        {
+            System.arraycopy(chunks, at, chunks, at + 1, chunkCount - at);
+            chunks[at] = chunk;
+            chunkCount++;
+        }
+
+        private void removeChunk(int at)
+        {
+            System.arraycopy(chunks, at + 1, chunks, at, chunkCount - at - 1);
+            chunks[--chunkCount] = null;
+        }
+
+        /**
+         * Moves the upper half of the chunks to a new page and returns it.
+         * */
+        private Page split(long generation)
+        {
+            int half = chunkCount >>> 1;
+            Page upper = new Page(new Chunk[MAX_PAGE_CHUNKS], chunkCount - half, 0, generation);
+
+            System.arraycopy(chunks, half, upper.chunks, 0, upper.chunkCount);
+            Arrays.fill(chunks, half, chunkCount, null);
+            chunkCount = half;
+
+            for (int i = 0; i < upper.chunkCount; i++)
+                upper.size += upper.chunks[i].size;
+            size -= upper.size;
+
+            return upper;
+        }
+    }
+
+    private static final class Chunk
+    {
+        private final long[] days;
+        private final int[] slots;
+        private final long generation;
+        private int size;
+
+        private Chunk(int capacity, long generation)
+        {
+            this.days = new long[capacity];
+            this.slots = new int[capacity];
+            this.generation = generation;
+        }
+
+        private Chunk copy(long generation)
+        {
+            Chunk copy = new Chunk(days.length, generation);
+            System.arraycopy(days, 0, copy.days, 0, size);
+            System.arraycopy(slots, 0, copy.slots, 0, size);
+            copy.size = size;
+            return copy;
+        }
+
+        private boolean contains(long day, int slot)
+        {
+            int at = lowerBound(day, slot);
+            return at < size && days[at] == day && slots[at] == slot;
+        }
+
+        /**
+         * Returns the position of the first entry not lower than the key.
+         * */
+        private int lowerBound(long day, int slot)
+        {
+            int lo = 0;
+            int hi = size;
+
+            while (lo < hi)
+            {
+                int mid = (lo + hi) >>> 1;
+                if (compare(days[mid], slots[mid], day, slot) < 0)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+
+            return lo;
+        }
+
+        private void insert(long day, int slot)
+        {
+            int at = lowerBound(day, slot);
+
+            System.arraycopy(days, at, days, at + 1, size - at);
+            System.arraycopy(slots, at, slots, at + 1, size - at);
+            days[at] = day;
+            slots[at] = slot;
+            size++;
+        }
+
+        private void remove(long day, int slot)
+        {
+            int at = lowerBound(day, slot);
+
+            System.arraycopy(days, at + 1, days, at, size - at - 1);
+            System.arraycopy(slots, at + 1, slots, at, size - at - 1);
+            size--;
+        }
+
+        /**
+         * Moves the upper half of the entries to a new chunk and returns it.
+         * */
+        private Chunk split(long generation)
+        {
+            int half = size >>> 1;
+            Chunk upper = new Chunk(days.length, generation);
+
+            upper.size = size - half;
+            System.arraycopy(days, half, upper.days, 0, upper.size);
+            System.arraycopy(slots, half, upper.slots, 0, upper.size);
+            size = half;
+
+            return upper;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.techeart.restapi.index;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Unique index from email address to the id of the user owning it.
+ * <p>
+ * Addresses are compared in normalized form (see {@link #normalize(String)}),
+ * so "Bob@Mail.com" and "bob@mail.com" are treated as the same address.
+ * Null addresses are not indexed.
+ * <p>
+ * The index is safe for concurrent use: claiming an address is an atomic
+ * "insert if absent", so two registrations can never take the same address.
+ * */
+public class EmailIndex
+{
+    private final Map<String, UUID> owners = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the key the address is indexed under: trimmed and lower-cased (locale independent).
+     * */
+    public static String normalize(String email)
+    {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public static boolean isSameAddress(String email1, String email2)
+    {
+        return Objects.equals(normalize(email1), normalize(email2));
+    }
+
+    public int size() {
+        return owners.size();
+    }
+
+    /**
+     * Returns the id of the user owning the address or null if the address is free.
+     * */
+    public UUID getOwner(String email)
+    {
+        return email == null ? null : owners.get(normalize(email));
+    }
+
+    /**
+     * Assigns the address to the user unless it is owned by a different user.
+     * <p>
+     * Returns false if the address is already taken by another user.
+     * */
+    public boolean claim(String email, UUID userId)
+    {
+        if (email == null)
+            return true;
+
+        UUID owner = owners.putIfAbsent(normalize(email), userId);
+        return owner == null || owner.equals(userId);
+    }
+
+    /**
+     * Releases the address if it is owned by the given user.
+     * */
+    public void release(String email, UUID userId)
+    {
+        if (email != null)
+            owners.remove(normalize(email), userId);
+    }
+
+    public void clear()
+    {
+        owners.clear();
+    }
+}
@@ -0,0 +1,100 @@
+package com.techeart.restapi.index;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Non-unique index from a key to the slots of the users having it.
+ * <p>
+ * Keys are taken as given, callers normalize them. The slots of a key are a {@link SlotBitmap},
+ * walked in ascending order without sorting. The number of users of a key is known
+ * without walking its slots, which lets a query planner compare the selectivity of keys.
+ * An {@link #ordered()} index keeps its keys sorted, so that the keys starting with a prefix
+ * are found by a range walk. The index is not thread safe.
+ * */
+public class KeyIndex
+{
+    private final Map<String, SlotBitmap> entries;
+
+    /**
+     * Creates a hash index, for lookups of whole keys only.
+     * */
+    public KeyIndex()
+    {
+        this(new HashMap<>());
+    }
+
+    private KeyIndex(Map<String, SlotBitmap> entries)
+    {
+        this.entries = entries;
+    }
+
+    /**
+     * Creates an index of sorted keys, which also supports {@link #withPrefix(String)}.
+     * */
+    public static KeyIndex ordered()
+    {
+        return new KeyIndex(new TreeMap<>());
+    }
+
+    /**
+     * Number of distinct keys.
+     * */
+    public int size() {
+        return entries.size();
+    }
+
+    public void add(String key, int slot)
+    {
+        if (key != null)
+            entries.computeIfAbsent(key, k -> new SlotBitmap()).add(slot);
+    }
+
+    public void remove(String key, int slot)
+    {
+        if (key == null)
+            return;
+
+        SlotBitmap slots = entries.get(key);
+        if (slots != null && slots.remove(slot) && slots.size() == 0)
+            entries.remove(key);
+    }
+
+    /**
+     * Returns the slots of the key, or null if no user has it. The set must not be modified.
+     * */
+    public SlotBitmap get(String key)
+    {
+        return key == null ? null : entries.get(key);
+    }
+
+    public int count(String key)
+    {
+        SlotBitmap slots = get(key);
+        return slots == null ? 0 : slots.size();
+    }
+
+    /**
+     * Returns the entries of the keys starting with the prefix, in key order. The sets must not be modified.
+     * */
+    public Iterator<Map.Entry<String, SlotBitmap>> withPrefix(String prefix)
+    {
+        if (!(entries instanceof NavigableMap<String, SlotBitmap> sorted))
+            throw new UnsupportedOperationException("Prefix lookups need an ordered index.");
+
+        if (prefix == null)
+            return Collections.emptyIterator();
+
+        /*every key starting with the prefix sorts between it and the prefix followed by the greatest char*/
+        return sorted.subMap(prefix, true, prefix + Character.MAX_VALUE, true).entrySet().iterator();
+    }
+
+    public void clear()
+    {
+        entries.clear();
+    }
+}
@@ -0,0 +1,288 @@
+package com.techeart.restapi.index;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Compressed set of user slots, used as a posting list.
+ * <p>
+ * Slots are split by their upper 16 bits into chunks of 65536 slots. A chunk holding a few slots
+ * keeps them as a sorted array of chars (2 bytes per slot), a dense chunk as a bitmap of 8 KiB
+ * (1 bit per slot), whichever is smaller. Adding or removing a slot touches one chunk only,
+ * so updates stay cheap however long the list is. The set is not thread safe.
+ * */
+public class SlotBitmap
+{
+    /*an array chunk larger than this would take more than the 8 KiB of a bitmap*/
+    private static final int ARRAY_MAX = 4096;
+
+    private int[] keys = new int[1];
+    private Chunk[] chunks = new Chunk[1];
+    private int chunkCount;
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int slot)
+    {
+        int c = findChunk(slot >>> 16);
+        return c >= 0 && chunks[c].contains((char) slot);
+    }
+
+    /**
+     * Returns false if the slot was in the set already.
+     * */
+    public boolean add(int slot)
+    {
+        if (slot < 0)
+            throw new IllegalArgumentException("Slot must not be negative: " + slot);
+
+        int key = slot >>> 16;
+        int c = findChunk(key);
+        if (c < 0)
+        {
+            c = -c - 1;
+            insertChunk(c, key, new ArrayChunk());
+        }
+
+        Chunk chunk = chunks[c];
+        int before = chunk.size();
+        chunks[c] = chunk.add((char) slot);
+        if (chunks[c].size() == before)
+            return false;
+
+        size++;
+        return true;
+    }
+
+    /**
+     * Returns false if there was no such slot.
+     * */
+    public boolean remove(int slot)
+    {
+        int c = findChunk(slot >>> 16);
+        if (c < 0)
+            return false;
+
+        Chunk chunk = chunks[c];
+        int before = chunk.size();
+        chunks[c] = chunk.remove((char) slot);
+        if (chunks[c].size() == before)
+            return false;
+
+        size--;
+        if (chunks[c].size() == 0)
+            removeChunk(c);
+
+        return true;
+    }
+
+    /**
+     * Passes the slots to the action in ascending order, until it returns false.
+     *
+     * @return false if the action stopped the walk
+     * */
+    public boolean forEachWhile(IntPredicate action)
+    {
+        for (int c = 0; c < chunkCount; c++)
+        {
+            if (!chunks[c].forEachWhile(keys[c] << 16, action))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the position of the chunk with the key, or (-(insertion point) - 1).
+     * */
+    private int findChunk(int key)
+    {
+        return Arrays.binarySearch(keys, 0, chunkCount, key);
+    }
+
+    private void insertChunk(int at, int key, Chunk chunk)
+    {
+        if (chunkCount == keys.length)
+        {
+            keys = Arrays.copyOf(keys, chunkCount << 1);
+            chunks = Arrays.copyOf(chunks, chunkCount << 1);
+        }
+
+        System.arraycopy(keys, at, keys, at + 1, chunkCount - at);
+        System.arraycopy(chunks, at, chunks, at + 1, chunkCount - at);
+        keys[at] = key;
+        chunks[at] = chunk;
+        chunkCount++;
+    }
+
+    private void removeChunk(int at)
+    {
+        System.arraycopy(keys, at + 1, keys, at, chunkCount - at - 1);
+        System.arraycopy(chunks, at + 1, chunks, at, chunkCount - at - 1);
+        chunks[--chunkCount] = null;
+    }
+
+    /**
+     * Lower 16 bits of the slots of one chunk. Modifications return the chunk to use from then on,
+     * which is a different kind of chunk when the other one becomes smaller.
+     * */
+    private sealed interface Chunk permits ArrayChunk, BitmapChunk
+    {
+        int size();
+
+        boolean contains(char low);
+
+        Chunk add(char low);
+
+        Chunk remove(char low);
+
+        boolean forEachWhile(int high, IntPredicate action);
+    }
+
+    private static final class ArrayChunk implements Chunk
+    {
+        private char[] values = new char[4];
+        private int size;
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(char low)
+        {
+            return Arrays.binarySearch(values, 0, size, low) >= 0;
+        }
+
+        @Override
+        public Chunk add(char low)
+        {
+            int at = Arrays.binarySearch(values, 0, size, low);
+            if (at >= 0)
+                return this;
+
+            if (size == ARRAY_MAX)
+                return toBitmap().add(low);
+
+            at = -at - 1;
+            if (size == values.length)
+                values = Arrays.copyOf(values, Math.min(size << 1, ARRAY_MAX));
+
+            System.arraycopy(values, at, values, at + 1, size - at);
+            values[at] = low;
+            size++;
+            return this;
+        }
+
+        @Override
+        public Chunk remove(char low)
+        {
+            int at = Arrays.binarySearch(values, 0, size, low);
+            if (at < 0)
+                return this;
+
+            System.arraycopy(values, at + 1, values, at, size - at - 1);
+            size--;
+            return this;
+        }
+
+        @Override
+        public boolean forEachWhile(int high, IntPredicate action)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                if (!action.test(high | values[i]))
+                    return false;
+            }
+
+            return true;
+        }
+
+        private BitmapChunk toBitmap()
+        {
+            BitmapChunk bitmap = new BitmapChunk();
+            for (int i = 0; i < size; i++)
+                bitmap.add(values[i]);
+
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapChunk implements Chunk
+    {
+        /*converted back to an array well below ARRAY_MAX, so that a chunk at the limit does not flip on every write*/
+        private static final int ARRAY_THRESHOLD = ARRAY_MAX / 2;
+
+        private final long[] words = new long[1 << 10];
+        private int size;
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(char low)
+        {
+            return (words[low >>> 6] & 1L << low) != 0;
+        }
+
+        @Override
+        public Chunk add(char low)
+        {
+            long word = words[low >>> 6];
+            long bit = 1L << low;
+            if ((word & bit) == 0)
+            {
+                words[low >>> 6] = word | bit;
+                size++;
+            }
+
+            return this;
+        }
+
+        @Override
+        public Chunk remove(char low)
+        {
+            long word = words[low >>> 6];
+            long bit = 1L << low;
+            if ((word & bit) == 0)
+                return this;
+
+            words[low >>> 6] = word & ~bit;
+            size--;
+            return size < ARRAY_THRESHOLD ? toArray() : this;
+        }
+
+        @Override
+        public boolean forEachWhile(int high, IntPredicate action)
+        {
+            for (int w = 0; w < words.length; w++)
+            {
+                for (long word = words[w]; word != 0; word &= word - 1)
+                {
+                    if (!action.test(high | w << 6 | Long.numberOfTrailingZeros(word)))
+                        return false;
+                }
+            }
+
+            return true;
+        }
+
+        private ArrayChunk toArray()
+        {
+            ArrayChunk array = new ArrayChunk();
+            array.values = new char[Math.max(4, size)];
+            forEachWhile(0, slot -> {
+                array.values[array.size++] = (char) slot;
+                return true;
+            });
+
+            return array;
+        }
+    }
+}
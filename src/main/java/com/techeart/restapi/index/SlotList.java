@@ -0,0 +1,377 @@
+package com.techeart.restapi.index;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Insertion ordered list addressed by stable slot numbers.
+ * <p>
+ * Slots are never reused or shifted: removing an element leaves a hole,
+ * so slot numbers stored in indexes stay valid. Elements are kept in chunks
+ * with a live counter per chunk, which lets offset based access skip whole chunks
+ * and allows releasing a chunk as soon as all of its elements are removed.
+ * <p>
+ * {@link #snapshot()} returns an immutable copy that shares the chunks with this list.
+ * Chunks are reached through pages of 64 chunks, so taking a snapshot copies only the short
+ * directory of pages. A shared page or chunk is copied before its first modification,
+ * so a write after a snapshot copies at most one page and one chunk.
+ * */
+public class SlotList<T> implements Iterable<T>
+{
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final int PAGE_SHIFT = 6;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    /**
+     * Chunks by page, and the number of elements of every chunk by page.
+     * */
+    private Object[][][] pages = new Object[1][][];
+    private int[][] chunkSizes = new int[1][];
+
+    /**
+     * Number of elements of every page, which lets offset based access skip whole pages.
+     * */
+    private int[] pageSizes = new int[1];
+
+    /**
+     * Generation each page and chunk was copied (or created) in. Only pages and chunks of the current
+     * generation are owned by this list, all the others may be shared with snapshots.
+     * */
+    private long[] pageGenerations = new long[1];
+    private long[] chunkGenerations = new long[PAGE_SIZE];
+    private long generation;
+
+    /**
+     * Number of slots ever allocated, the next slot to be returned by {@link #add(Object)}.
+     * */
+    private int slotCount;
+
+    /**
+     * Number of elements currently stored.
+     * */
+    private int size;
+
+    private final boolean frozen;
+
+    public SlotList()
+    {
+        this.frozen = false;
+    }
+
+    private SlotList(SlotList<T> source)
+    {
+        this.pages = Arrays.copyOf(source.pages, source.pages.length);
+        this.chunkSizes = Arrays.copyOf(source.chunkSizes, source.chunkSizes.length);
+        this.pageSizes = Arrays.copyOf(source.pageSizes, source.pageSizes.length);
+        this.slotCount = source.slotCount;
+        this.size = source.size;
+        this.frozen = true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns an immutable copy of the current state of the list.
+     * */
+    public SlotList<T> snapshot()
+    {
+        if (frozen)
+            return this;
+
+        SlotList<T> snapshot = new SlotList<>(this);
+
+        /*all current pages and chunks are shared from now on*/
+        generation++;
+        return snapshot;
+    }
+
+    /**
+     * Appends the element and returns its slot.
+     * */
+    public int add(T value)
+    {
+        checkMutable();
+        if (value == null)
+            throw new IllegalArgumentException("Null elements are not supported.");
+
+        int slot = slotCount;
+        int chunk = slot >>> CHUNK_SHIFT;
+        int page = chunk >>> PAGE_SHIFT;
+
+        if (page == pages.length)
+        {
+            pages = Arrays.copyOf(pages, pages.length << 1);
+            chunkSizes = Arrays.copyOf(chunkSizes, chunkSizes.length << 1);
+            pageSizes = Arrays.copyOf(pageSizes, pageSizes.length << 1);
+            pageGenerations = Arrays.copyOf(pageGenerations, pageGenerations.length << 1);
+            chunkGenerations = Arrays.copyOf(chunkGenerations, chunkGenerations.length << 1);
+        }
+
+        if (pages[page] == null)
+        {
+            pages[page] = new Object[PAGE_SIZE][];
+            chunkSizes[page] = new int[PAGE_SIZE];
+            pageGenerations[page] = generation;
+        }
+
+        if (chunk(chunk) == null)
+        {
+            ownedPage(page)[chunk & PAGE_MASK] = new Object[CHUNK_SIZE];
+            chunkGenerations[chunk] = generation;
+        }
+
+        ownedChunk(chunk)[slot & CHUNK_MASK] = value;
+        chunkSizes[page][chunk & PAGE_MASK]++;
+        pageSizes[page]++;
+        slotCount++;
+        size++;
+
+        return slot;
+    }
+
+    /**
+     * Returns the element stored in the slot or null if the slot is empty.
+     * */
+    @SuppressWarnings("unchecked")
+    public T get(int slot)
+    {
+        if (slot < 0 || slot >= slotCount)
+            return null;
+
+        Object[] chunk = chunk(slot >>> CHUNK_SHIFT);
+        return chunk == null ? null : (T) chunk[slot & CHUNK_MASK];
+    }
+
+    /**
+     * Replaces the element stored in an occupied slot.
+     * */
+    public void set(int slot, T value)
+    {
+        checkMutable();
+        if (value == null)
+            throw new IllegalArgumentException("Null elements are not supported.");
+
+        if (get(slot) == null)
+            throw new IllegalArgumentException("Slot is empty: " + slot);
+
+        ownedChunk(slot >>> CHUNK_SHIFT)[slot & CHUNK_MASK] = value;
+    }
+
+    /**
+     * Empties the slot and returns the element it contained (null if it was already empty).
+     * */
+    public T remove(int slot)
+    {
+        checkMutable();
+
+        T removed = get(slot);
+        if (removed == null)
+            return null;
+
+        int chunk = slot >>> CHUNK_SHIFT;
+        int page = chunk >>> PAGE_SHIFT;
+        Object[][] owned = ownedPage(page);
+        size--;
+        pageSizes[page]--;
+
+        if (--chunkSizes[page][chunk & PAGE_MASK] == 0)
+            owned[chunk & PAGE_MASK] = null;
+        else
+            ownedChunk(chunk)[slot & CHUNK_MASK] = null;
+
+        return removed;
+    }
+
+    public void clear()
+    {
+        checkMutable();
+
+        pages = new Object[1][][];
+        chunkSizes = new int[1][];
+        pageSizes = new int[1];
+        pageGenerations = new long[1];
+        chunkGenerations = new long[PAGE_SIZE];
+        slotCount = 0;
+        size = 0;
+    }
+
+    /**
+     * Returns the slot of the element at the given position in insertion order
+     * or -1 if the position is out of range.
+     * */
+    public int slotAt(int offset)
+    {
+        if (offset < 0 || offset >= size)
+            return -1;
+
+        int page = 0;
+        while (offset >= pageSizes[page])
+        {
+            offset -= pageSizes[page];
+            page++;
+        }
+
+        int chunk = page << PAGE_SHIFT;
+        while (offset >= chunkSizes[page][chunk & PAGE_MASK])
+        {
+            offset -= chunkSizes[page][chunk & PAGE_MASK];
+            chunk++;
+        }
+
+        Object[] values = chunk(chunk);
+        for (int i = 0; ; i++)
+        {
+            if (values[i] != null && offset-- == 0)
+                return (chunk << CHUNK_SHIFT) | i;
+        }
+    }
+
+    /**
+     * Returns the first occupied slot starting from the given one (inclusive) or -1 if there is none.
+     * */
+    public int nextSlot(int from)
+    {
+        int slot = Math.max(from, 0);
+        while (slot < slotCount)
+        {
+            Object[] values = chunk(slot >>> CHUNK_SHIFT);
+            if (values == null)
+            {
+                slot = (slot | CHUNK_MASK) + 1;
+                continue;
+            }
+
+            if (values[slot & CHUNK_MASK] != null)
+                return slot;
+
+            slot++;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the last occupied slot up to the given one (inclusive) or -1 if there is none.
+     * */
+    public int previousSlot(int from)
+    {
+        int slot = Math.min(from, slotCount - 1);
+        while (slot >= 0)
+        {
+            Object[] values = chunk(slot >>> CHUNK_SHIFT);
+            if (values == null)
+            {
+                slot = (slot & ~CHUNK_MASK) - 1;
+                continue;
+            }
+
+            if (values[slot & CHUNK_MASK] != null)
+                return slot;
+
+            slot--;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the number of elements stored in slots before the given one.
+     * */
+    public int rank(int slot)
+    {
+        if (slot <= 0)
+            return 0;
+        if (slot >= slotCount)
+            return size;
+
+        int chunk = slot >>> CHUNK_SHIFT;
+        int page = chunk >>> PAGE_SHIFT;
+        int result = 0;
+        for (int i = 0; i < page; i++)
+            result += pageSizes[i];
+        for (int i = page << PAGE_SHIFT; i < chunk; i++)
+            result += chunkSizes[page][i & PAGE_MASK];
+
+        Object[] values = chunk(chunk);
+        for (int i = 0; values != null && i < (slot & CHUNK_MASK); i++)
+        {
+            if (values[i] != null)
+                result++;
+        }
+
+        return result;
+    }
+
+    @Override
+    public Iterator<T> iterator()
+    {
+        return new Iterator<>()
+        {
+            private int next = nextSlot(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public T next()
+            {
+                if (next < 0)
+                    throw new NoSuchElementException();
+
+                T value = get(next);
+                next = nextSlot(next + 1);
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Returns the chunk, which must be within the allocated slots.
+     * */
+    private Object[] chunk(int chunk)
+    {
+        return pages[chunk >>> PAGE_SHIFT][chunk & PAGE_MASK];
+    }
+
+    /**
+     * Returns the chunks of the page, copying them and their sizes first if they may be shared.
+     * */
+    private Object[][] ownedPage(int page)
+    {
+        if (pageGenerations[page] != generation)
+        {
+            pages[page] = pages[page].clone();
+            chunkSizes[page] = chunkSizes[page].clone();
+            pageGenerations[page] = generation;
+        }
+
+        return pages[page];
+    }
+
+    private Object[] ownedChunk(int chunk)
+    {
+        Object[][] page = ownedPage(chunk >>> PAGE_SHIFT);
+        if (chunkGenerations[chunk] != generation)
+        {
+            page[chunk & PAGE_MASK] = page[chunk & PAGE_MASK].clone();
+            chunkGenerations[chunk] = generation;
+        }
+
+        return page[chunk & PAGE_MASK];
+    }
+
+    private void checkMutable()
+    {
+        if (frozen)
+            throw new UnsupportedOperationException("Snapshot can not be modified.");
+    }
+}
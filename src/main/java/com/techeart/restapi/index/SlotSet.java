@@ -0,0 +1,172 @@
+package com.techeart.restapi.index;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Set of user slots.
+ * <p>
+ * Slots are kept in an open addressing table of primitive ints with linear probing,
+ * so neither adding nor a membership test boxes them. The set is not thread safe.
+ * */
+public class SlotSet
+{
+    private static final int EMPTY = -1;
+    private static final int MIN_CAPACITY = 4;
+
+    private int[] table = newTable(MIN_CAPACITY);
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int slot)
+    {
+        int[] t = table;
+        int mask = t.length - 1;
+
+        /*bounded by the capacity, so that a lookup racing with a modification can not spin forever*/
+        int i = hash(slot) & mask;
+        for (int probes = 0; probes <= mask && t[i] != EMPTY; probes++)
+        {
+            if (t[i] == slot)
+                return true;
+
+            i = (i + 1) & mask;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns false if the slot was in the set already.
+     * */
+    public boolean add(int slot)
+    {
+        if (slot < 0)
+            throw new IllegalArgumentException("Slot must not be negative: " + slot);
+
+        int mask = table.length - 1;
+        int i = hash(slot) & mask;
+        while (table[i] != EMPTY)
+        {
+            if (table[i] == slot)
+                return false;
+
+            i = (i + 1) & mask;
+        }
+
+        table[i] = slot;
+
+        /*keeping load factor at 0.5 so probe sequences stay short*/
+        if (++size > table.length >> 1)
+            table = resize(table, table.length << 1);
+
+        return true;
+    }
+
+    /**
+     * Returns false if there was no such slot.
+     * */
+    public boolean remove(int slot)
+    {
+        int mask = table.length - 1;
+        int i = hash(slot) & mask;
+        while (table[i] != EMPTY)
+        {
+            if (table[i] == slot)
+            {
+                shiftBack(i);
+                size--;
+                return true;
+            }
+
+            i = (i + 1) & mask;
+        }
+
+        return false;
+    }
+
+    /**
+     * Passes the slots to the action in no particular order, until it returns false.
+     *
+     * @return false if the action stopped the walk
+     * */
+    public boolean forEachWhile(IntPredicate action)
+    {
+        for (int slot : table)
+        {
+            if (slot != EMPTY && !action.test(slot))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Backward shift deletion, as in {@link UserIdIndex}.
+     * */
+    private void shiftBack(int freed)
+    {
+        int mask = table.length - 1;
+        int i = freed;
+        while (true)
+        {
+            i = (i + 1) & mask;
+            if (table[i] == EMPTY)
+                break;
+
+            int home = hash(table[i]) & mask;
+            boolean movable = freed <= i ? (home <= freed || home > i) : (home <= freed && home > i);
+            if (movable)
+            {
+                table[freed] = table[i];
+                freed = i;
+            }
+        }
+
+        table[freed] = EMPTY;
+    }
+
+    private static int[] resize(int[] table, int capacity)
+    {
+        int[] resized = newTable(capacity);
+        int mask = capacity - 1;
+
+        for (int slot : table)
+        {
+            if (slot == EMPTY)
+                continue;
+
+            int j = hash(slot) & mask;
+            while (resized[j] != EMPTY)
+                j = (j + 1) & mask;
+
+            resized[j] = slot;
+        }
+
+        return resized;
+    }
+
+    private static int[] newTable(int capacity)
+    {
+        int[] table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    /**
+     * Slots are sequential, so they are scattered with the murmur3 finalizer.
+     * */
+    private static int hash(int slot)
+    {
+        int h = slot;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,226 @@
+package com.techeart.restapi.index;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * User slots kept in an order defined by the caller, such as an order of user properties.
+ * <p>
+ * The slots are split into sorted chunks of a bounded size, so adding or removing a slot moves
+ * at most a chunk of ints, and the slot at a position is found by summing chunk sizes instead
+ * of walking the slots before it. The index does not know the values it is ordered by: every
+ * modification is given a {@link Probe} comparing the modified entry with the stored slots.
+ * The index is not thread safe.
+ * */
+public class SortedSlots
+{
+    private static final int MAX_CHUNK_SIZE = 512;
+
+    private int[][] chunks = new int[][] { new int[MAX_CHUNK_SIZE] };
+    private int[] chunkSizes = new int[1];
+    private int chunkCount = 1;
+    private int size;
+
+    /**
+     * Compares one entry with the stored ones.
+     * */
+    @FunctionalInterface
+    public interface Probe
+    {
+        /**
+         * Returns a negative number, zero, or a positive number as the entry goes before,
+         * is the same as, or goes after the entry of the stored slot. The order must be total,
+         * i.e. only the entry of the same slot compares as zero.
+         * */
+        int compareTo(int slot);
+    }
+
+    /**
+     * Creates an index of the slots already in order.
+     * */
+    public static SortedSlots of(int[] sorted)
+    {
+        SortedSlots index = new SortedSlots();
+        int count = Math.max(1, (sorted.length + MAX_CHUNK_SIZE / 2 - 1) / (MAX_CHUNK_SIZE / 2));
+        index.chunks = new int[count][];
+        index.chunkSizes = new int[count];
+        index.chunkCount = count;
+        index.size = sorted.length;
+
+        /*chunks filled by half, leaving room for the following inserts*/
+        for (int c = 0; c < count; c++)
+        {
+            int from = Math.min(c * (MAX_CHUNK_SIZE / 2), sorted.length);
+            int to = Math.min(from + MAX_CHUNK_SIZE / 2, sorted.length);
+            index.chunks[c] = new int[MAX_CHUNK_SIZE];
+            System.arraycopy(sorted, from, index.chunks[c], 0, to - from);
+            index.chunkSizes[c] = to - from;
+        }
+
+        return index;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param probe compares the added entry with the stored ones
+     * */
+    public void add(int slot, Probe probe)
+    {
+        int c = findChunk(slot, probe);
+        int at = lowerBound(c, slot, probe);
+
+        if (chunkSizes[c] == MAX_CHUNK_SIZE)
+        {
+            split(c);
+            if (at > chunkSizes[c])
+            {
+                at -= chunkSizes[c];
+                c++;
+            }
+        }
+
+        int[] chunk = chunks[c];
+        System.arraycopy(chunk, at, chunk, at + 1, chunkSizes[c] - at);
+        chunk[at] = slot;
+        chunkSizes[c]++;
+        size++;
+    }
+
+    /**
+     * @param probe compares the removed entry, as it was when added, with the stored ones
+     * @return false if there was no such slot
+     * */
+    public boolean remove(int slot, Probe probe)
+    {
+        int c = findChunk(slot, probe);
+        int at = lowerBound(c, slot, probe);
+        if (at == chunkSizes[c] || chunks[c][at] != slot)
+            return false;
+
+        int[] chunk = chunks[c];
+        System.arraycopy(chunk, at + 1, chunk, at, chunkSizes[c] - at - 1);
+        chunkSizes[c]--;
+        size--;
+
+        if (chunkSizes[c] == 0 && chunkCount > 1)
+            removeChunk(c);
+
+        return true;
+    }
+
+    /**
+     * Passes the slots to the action in order, or in reverse order, starting with the slot
+     * at the given position of that order, until the action returns false.
+     * */
+    public void forEachWhile(int from, boolean reversed, IntPredicate action)
+    {
+        if (from < 0 || from >= size)
+            return;
+
+        /*position in the stored order*/
+        int rank = reversed ? size - 1 - from : from;
+        int c = 0;
+        while (rank >= chunkSizes[c])
+            rank -= chunkSizes[c++];
+
+        int step = reversed ? -1 : 1;
+        for (int i = rank; ; i += step)
+        {
+            if (i < 0 || i == chunkSizes[c])
+            {
+                c += step;
+                if (c < 0 || c == chunkCount)
+                    return;
+
+                i = reversed ? chunkSizes[c] - 1 : 0;
+            }
+
+            if (!action.test(chunks[c][i]))
+                return;
+        }
+    }
+
+    /**
+     * Returns the first chunk whose last entry does not go before the probed one,
+     * or the last chunk if they all do.
+     * */
+    private int findChunk(int slot, Probe probe)
+    {
+        int low = 0;
+        int high = chunkCount - 1;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            int size = chunkSizes[mid];
+            if (size > 0 && compare(slot, probe, chunks[mid][size - 1]) > 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+
+        return low;
+    }
+
+    /**
+     * Returns the position of the first entry of the chunk not going before the probed one.
+     * */
+    private int lowerBound(int c, int slot, Probe probe)
+    {
+        int[] chunk = chunks[c];
+        int low = 0;
+        int high = chunkSizes[c];
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (compare(slot, probe, chunk[mid]) > 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+
+        return low;
+    }
+
+    /**
+     * The entry of the probed slot itself may have changed since it was stored, so it is matched by the slot.
+     * */
+    private static int compare(int slot, Probe probe, int stored)
+    {
+        return stored == slot ? 0 : probe.compareTo(stored);
+    }
+
+    private void split(int c)
+    {
+        int half = chunkSizes[c] / 2;
+        int[] upper = new int[MAX_CHUNK_SIZE];
+        System.arraycopy(chunks[c], half, upper, 0, chunkSizes[c] - half);
+
+        insertChunk(c + 1, upper, chunkSizes[c] - half);
+        chunkSizes[c] = half;
+    }
+
+    private void insertChunk(int at, int[] chunk, int chunkSize)
+    {
+        if (chunkCount == chunks.length)
+        {
+            chunks = Arrays.copyOf(chunks, chunkCount << 1);
+            chunkSizes = Arrays.copyOf(chunkSizes, chunkCount << 1);
+        }
+
+        System.arraycopy(chunks, at, chunks, at + 1, chunkCount - at);
+        System.arraycopy(chunkSizes, at, chunkSizes, at + 1, chunkCount - at);
+        chunks[at] = chunk;
+        chunkSizes[at] = chunkSize;
+        chunkCount++;
+    }
+
+    private void removeChunk(int at)
+    {
+        System.arraycopy(chunks, at + 1, chunks, at, chunkCount - at - 1);
+        System.arraycopy(chunkSizes, at + 1, chunkSizes, at, chunkCount - at - 1);
+        chunks[--chunkCount] = null;
+    }
+}
@@ -0,0 +1,69 @@
+package com.techeart.restapi.index;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of canonical string instances with reference counting.
+ * <p>
+ * Equal values passed to {@link #acquire(String)} are replaced by a single shared instance,
+ * so repeating values (names, addresses) are stored once. A value is dropped from the dictionary
+ * when its last reference is {@link #release(String) released}.
+ * <p>
+ * The dictionary is thread safe: the references of a value are counted atomically,
+ * so writers of different users can share it without a common lock.
+ * */
+public class StringDictionary
+{
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Number of distinct values.
+     * */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the canonical instance equal to the value, counting one more reference to it.
+     * */
+    public String acquire(String value)
+    {
+        if (value == null)
+            return null;
+
+        Entry entry = entries.compute(value, (key, current) -> {
+            Entry acquired = current == null ? new Entry(key) : current;
+            acquired.references++;
+            return acquired;
+        });
+        return entry.value;
+    }
+
+    /**
+     * Counts one reference less to the value, dropping it after the last one.
+     * */
+    public void release(String value)
+    {
+        if (value == null)
+            return;
+
+        entries.computeIfPresent(value, (key, entry) -> --entry.references == 0 ? null : entry);
+    }
+
+    public void clear()
+    {
+        entries.clear();
+    }
+
+    private static final class Entry
+    {
+        private final String value;
+        private int references;
+
+        private Entry(String value)
+        {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.techeart.restapi.index;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Inverted index from the trigrams (three consecutive chars) of a text value to the slots
+ * of the users whose value has them, for substring searches.
+ * <p>
+ * Every substring of a value has only trigrams of that value, so the users whose value contains
+ * a fragment of at least three chars are among the slots present in the posting list of every
+ * trigram of the fragment. The lists are {@link SlotBitmap}s, so common trigrams take about
+ * a bit per user. Values are taken as given, callers normalize them and check the candidates.
+ * The index is not thread safe.
+ * */
+public class TrigramIndex
+{
+    public static final int GRAM_LENGTH = 3;
+
+    private final Map<Long, SlotBitmap> postings = new HashMap<>();
+
+    /**
+     * Number of distinct trigrams.
+     * */
+    public int size() {
+        return postings.size();
+    }
+
+    public void add(String value, int slot)
+    {
+        if (value == null)
+            return;
+
+        for (int i = 0; i + GRAM_LENGTH <= value.length(); i++)
+            postings.computeIfAbsent(gram(value, i), g -> new SlotBitmap()).add(slot);
+    }
+
+    public void remove(String value, int slot)
+    {
+        if (value == null)
+            return;
+
+        for (int i = 0; i + GRAM_LENGTH <= value.length(); i++)
+        {
+            Long gram = gram(value, i);
+            SlotBitmap slots = postings.get(gram);
+            if (slots != null && slots.remove(slot) && slots.size() == 0)
+                postings.remove(gram);
+        }
+    }
+
+    /**
+     * Returns the posting lists of the distinct trigrams of the fragment, shortest first, or null if
+     * the fragment is too short to have a trigram. A single empty list is returned if a trigram is
+     * missing, as no value contains the fragment then. The lists must not be modified.
+     * */
+    public SlotBitmap[] postings(String fragment)
+    {
+        if (fragment == null || fragment.length() < GRAM_LENGTH)
+            return null;
+
+        SlotBitmap[] lists = new SlotBitmap[fragment.length() - GRAM_LENGTH + 1];
+        int n = 0;
+        for (int i = 0; i < lists.length; i++)
+        {
+            SlotBitmap slots = postings.get(gram(fragment, i));
+            if (slots == null)
+                return new SlotBitmap[] { new SlotBitmap() };
+
+            /*a trigram repeated in the fragment has its list once*/
+            boolean seen = false;
+            for (int j = 0; j < n && !seen; j++)
+                seen = lists[j] == slots;
+
+            if (!seen)
+                lists[n++] = slots;
+        }
+
+        lists = Arrays.copyOf(lists, n);
+        Arrays.sort(lists, Comparator.comparingInt(SlotBitmap::size));
+        return lists;
+    }
+
+    public void clear()
+    {
+        postings.clear();
+    }
+
+    /**
+     * Packs the three chars at the position into a key.
+     * */
+    private static Long gram(String value, int at)
+    {
+        return (long) value.charAt(at) << 32 | (long) value.charAt(at + 1) << 16 | value.charAt(at + 2);
+    }
+}
@@ -0,0 +1,200 @@
+package com.techeart.restapi.index;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Hash index from user id to the slot the user is stored in.
+ * <p>
+ * Ids are kept as two primitive longs in an open addressing table with linear probing,
+ * so lookups neither box the keys nor call {@link UUID#equals(Object)}.
+ * <p>
+ * The index is not thread safe, but a lookup racing with a modification never fails:
+ * the arrays are replaced as a whole on resize, so at worst the lookup returns
+ * a wrong result, which callers detect by validating an optimistic read.
+ * */
+public class UserIdIndex
+{
+    public static final int NOT_FOUND = -1;
+
+    private static final int EMPTY = -1;
+    private static final int MIN_CAPACITY = 16;
+
+    private Table table = new Table(MIN_CAPACITY);
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the slot stored for the given id or {@link #NOT_FOUND}.
+     * */
+    public int get(UUID id)
+    {
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        Table t = table;
+
+        /*bounded by the capacity, so that a lookup racing with a modification can not spin forever*/
+        int i = hash(msb, lsb) & t.mask;
+        for (int probes = 0; probes <= t.mask && t.slots[i] != EMPTY; probes++)
+        {
+            if (t.msbs[i] == msb && t.lsbs[i] == lsb)
+                return t.slots[i];
+
+            i = (i + 1) & t.mask;
+        }
+
+        return NOT_FOUND;
+    }
+
+    /**
+     * Maps the given id to the slot, replacing the previous mapping if there was one.
+     * */
+    public void put(UUID id, int slot)
+    {
+        if (slot < 0)
+            throw new IllegalArgumentException("Slot must not be negative: " + slot);
+
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        Table t = table;
+
+        int i = hash(msb, lsb) & t.mask;
+        while (t.slots[i] != EMPTY)
+        {
+            if (t.msbs[i] == msb && t.lsbs[i] == lsb)
+            {
+                t.slots[i] = slot;
+                return;
+            }
+
+            i = (i + 1) & t.mask;
+        }
+
+        t.msbs[i] = msb;
+        t.lsbs[i] = lsb;
+        t.slots[i] = slot;
+
+        /*keeping load factor at 0.5 so probe sequences stay short*/
+        if (++size > (t.mask + 1) >> 1)
+            table = t.resize((t.mask + 1) << 1);
+    }
+
+    /**
+     * Removes the mapping of the given id.
+     * <p>
+     * Returns the slot that was mapped to the id or {@link #NOT_FOUND}.
+     * */
+    public int remove(UUID id)
+    {
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        Table t = table;
+
+        int i = hash(msb, lsb) & t.mask;
+        while (t.slots[i] != EMPTY)
+        {
+            if (t.msbs[i] == msb && t.lsbs[i] == lsb)
+            {
+                int removed = t.slots[i];
+                t.shiftBack(i);
+                size--;
+                return removed;
+            }
+
+            i = (i + 1) & t.mask;
+        }
+
+        return NOT_FOUND;
+    }
+
+    public void clear()
+    {
+        table = new Table(MIN_CAPACITY);
+        size = 0;
+    }
+
+    /**
+     * Ids are not guaranteed to be random (e.g. name based or imported ones)
+     * so both halves are mixed with the murmur3 finalizer.
+     * */
+    private static int hash(long msb, long lsb)
+    {
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93FE1A85EC9L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static final class Table
+    {
+        private final long[] msbs;
+        private final long[] lsbs;
+        private final int[] slots;
+        private final int mask;
+
+        private Table(int capacity)
+        {
+            msbs = new long[capacity];
+            lsbs = new long[capacity];
+            slots = new int[capacity];
+            Arrays.fill(slots, EMPTY);
+            mask = capacity - 1;
+        }
+
+        /**
+         * Backward shift deletion: moves the following entries of the probe sequence
+         * into the freed cell so that no tombstones are needed.
+         * */
+        private void shiftBack(int freed)
+        {
+            int i = freed;
+            while (true)
+            {
+                i = (i + 1) & mask;
+                if (slots[i] == EMPTY)
+                    break;
+
+                int home = hash(msbs[i], lsbs[i]) & mask;
+
+                /*entry may be moved only if its home cell is not between the freed cell and itself*/
+                boolean movable = freed <= i ? (home <= freed || home > i) : (home <= freed && home > i);
+                if (movable)
+                {
+                    msbs[freed] = msbs[i];
+                    lsbs[freed] = lsbs[i];
+                    slots[freed] = slots[i];
+                    freed = i;
+                }
+            }
+
+            slots[freed] = EMPTY;
+        }
+
+        private Table resize(int capacity)
+        {
+            Table resized = new Table(capacity);
+
+            for (int i = 0; i < slots.length; i++)
+            {
+                if (slots[i] == EMPTY)
+                    continue;
+
+                int j = hash(msbs[i], lsbs[i]) & resized.mask;
+                while (resized.slots[j] != EMPTY)
+                    j = (j + 1) & resized.mask;
+
+                resized.msbs[j] = msbs[i];
+                resized.lsbs[j] = lsbs[i];
+                resized.slots[j] = slots[i];
+            }
+
+            return resized;
+        }
+    }
+}
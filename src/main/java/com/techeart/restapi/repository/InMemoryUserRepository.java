@@ -0,0 +1,939 @@
+package com.techeart.restapi.repository;
+
+import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.index.BirthDateIndex;
+import com.techeart.restapi.index.EmailIndex;
+import com.techeart.restapi.index.SlotList;
+import com.techeart.restapi.index.StringDictionary;
+import com.techeart.restapi.index.UserIdIndex;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Default storage engine keeping all users on the Java heap.
+ * <p>
+ * Users are kept in insertion order in a {@link SlotList}, with a hash index on id,
+ * a unique index on email, a sorted index on birth date, the {@link UserSearchIndexes} and the {@link UserSortViews}. Names and addresses
+ * of stored users share their string instances through a {@link StringDictionary}.
+ * Pages and ranges are read from immutable snapshots published after every write.
+ * <p>
+ * A write is done in two steps. The work on its own records (reading them, applying a patch,
+ * claiming addresses, sharing text through the dictionary) runs under the id stripes of the records,
+ * in parallel with writes of other users. Only applying the prepared records to the shared ordered
+ * structures and publishing the snapshot is serialized, since snapshots need a single order of versions.
+ * */
+public class InMemoryUserRepository implements UserRepository
+{
+    private static final int STRIPES = 64;
+
+    private final SlotList<User> users = new SlotList<>();
+
+    /**
+     * Primary key index: user id to the slot of the user in 'users'.
+     * */
+    private final UserIdIndex idIndex = new UserIdIndex();
+
+    /**
+     * Unique index: normalized email address to the id of its owner.
+     * */
+    private final EmailIndex emailIndex = new EmailIndex();
+
+    /**
+     * Sorted index: birth date to the slots of users born on that day.
+     * */
+    private final BirthDateIndex birthDateIndex = new BirthDateIndex();
+
+    /**
+     * Hash indexes of email domains and names, used by searches.
+     * */
+    private final UserSearchIndexes searchIndexes;
+
+    /**
+     * Slots in the sort orders requested so far, read and built under the lock.
+     * */
+    private final UserSortViews sortViews = new UserSortViews(users::get);
+
+    /**
+     * Canonical instances of first names, last names and addresses, which repeat heavily.
+     * */
+    private final StringDictionary dictionary = new StringDictionary();
+
+    /**
+     * Serializes writers of 'users' and the indexes above (the email index and the dictionary are
+     * concurrent by themselves). Writers hold it only to apply records prepared under their stripes.
+     * <p>
+     * Readers never take it except for the id index, which is read optimistically.
+     * */
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Locks of user ids, by hash. A writer holds the stripes of the users it changes from the first read
+     * of their records to the end of the write, so no other writer changes them meanwhile.
+     * Stripes are always taken before the lock above, several of them in ascending order.
+     * */
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    {
+        for (int i = 0; i < stripes.length; i++)
+            stripes[i] = new ReentrantLock();
+    }
+
+    /**
+     * Immutable state of the users list published after every write.
+     * Pages and ranges read a single snapshot, so they never block writers
+     * and never see a list that is being modified.
+     * */
+    private volatile Snapshot snapshot = new Snapshot(0, users.snapshot(), birthDateIndex.snapshot(), UserPage.newEpoch());
+
+    private final List<UserChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile UserChangeListener commitHook = change -> { };
+
+    public InMemoryUserRepository()
+    {
+        this(true);
+    }
+
+    /**
+     * @param substringIndexes whether to index emails and addresses for substring searches, see {@link UserSearchIndexes}
+     * */
+    public InMemoryUserRepository(boolean substringIndexes)
+    {
+        this.searchIndexes = new UserSearchIndexes(substringIndexes);
+    }
+
+    @Override
+    public Optional<User> findById(UUID id)
+    {
+        /*optimistic read: retried under the read lock only if a writer was active meanwhile*/
+        long stamp = lock.tryOptimisticRead();
+        User user = snapshot.users().get(idIndex.get(id));
+
+        if (!lock.validate(stamp))
+        {
+            stamp = lock.readLock();
+            try
+            {
+                user = snapshot.users().get(idIndex.get(id));
+            }
+            finally
+            {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        return Optional.ofNullable(user);
+    }
+
+    @Override
+    public List<User> findAllById(List<UUID> ids)
+    {
+        /*a single optimistic read for all ids, so that they come from one version*/
+        long stamp = lock.tryOptimisticRead();
+        User[] result = readAll(ids);
+
+        if (!lock.validate(stamp))
+        {
+            stamp = lock.readLock();
+            try
+            {
+                result = readAll(ids);
+            }
+            finally
+            {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        return Arrays.asList(result);
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email)
+    {
+        UUID owner = emailIndex.getOwner(email);
+        return owner == null ? Optional.empty() : findById(owner);
+    }
+
+    @Override
+    public List<User> findByBirthDateBetween(long fromEpochDay, long toEpochDay)
+    {
+        List<User> result = new ArrayList<>();
+        Snapshot current = snapshot;
+
+        current.birthDates().forEachBetween(fromEpochDay, toEpochDay, slot -> result.add(current.users().get(slot)));
+
+        return result;
+    }
+
+    @Override
+    public UserSearchResult search(UserQuery query, int limit)
+    {
+        List<User> result = new ArrayList<>();
+        if (limit <= 0)
+            return new UserSearchResult(result, "none");
+
+        Snapshot current;
+        QueryPlan plan;
+
+        /*the hash indexes have no snapshots, so index plans are run under the read lock*/
+        long stamp = lock.readLock();
+        try
+        {
+            current = snapshot;
+            plan = searchIndexes.plan(query, birthDateIndex, users.size());
+            if (!plan.isScan())
+                plan.forEachCandidate(slot -> collect(result, users.get(slot), query, limit));
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+
+        /*a scan reads the snapshot taken with the plan, without blocking writers*/
+        if (plan.isScan())
+        {
+            for (User user : current.users())
+            {
+                if (!collect(result, user, query, limit))
+                    break;
+            }
+        }
+
+        return new UserSearchResult(result, plan.toString());
+    }
+
+    @Override
+    public List<User> findByNamePrefix(String prefix, int limit)
+    {
+        List<User> result = new ArrayList<>();
+        if (limit <= 0)
+            return result;
+
+        long stamp = lock.readLock();
+        try
+        {
+            searchIndexes.forEachNameStartingWith(prefix, slot -> result.add(users.get(slot)) && result.size() < limit);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+
+        return result;
+    }
+
+    @Override
+    public UserPage findPage(int offset, int limit)
+    {
+        Snapshot current = snapshot;
+        SlotList<User> from = current.users();
+
+        int count = Math.min(limit, from.size() - offset);
+        if (offset < 0 || count <= 0)
+            return UserPage.empty(offset, from.size(), current.version());
+
+        /*skipping straight to the first slot of the page*/
+        return readPage(current, offset, from.slotAt(offset), count);
+    }
+
+    @Override
+    public UserPage findPageAfter(long key, int limit)
+    {
+        Snapshot current = snapshot;
+        SlotList<User> from = current.users();
+
+        int first = from.nextSlot(UserPage.slot(current.epoch(), key) + 1);
+        int offset = first < 0 ? from.size() : from.rank(first);
+        int count = Math.min(limit, from.size() - offset);
+        if (first < 0 || count <= 0)
+            return UserPage.empty(offset, from.size(), current.version());
+
+        return readPage(current, offset, first, count);
+    }
+
+    @Override
+    public UserPage findPageBefore(long key, int limit)
+    {
+        Snapshot current = snapshot;
+        SlotList<User> from = current.users();
+
+        int last = from.previousSlot(UserPage.slot(current.epoch(), key) - 1);
+        if (last < 0 || limit <= 0)
+            return UserPage.empty(0, from.size(), current.version());
+
+        int end = from.rank(last) + 1;
+        int count = Math.min(limit, end);
+
+        int first = last;
+        for (int i = 1; i < count; i++)
+            first = from.previousSlot(first - 1);
+
+        return readPage(current, end - count, first, count);
+    }
+
+    @Override
+    public UserPage findSortedPage(SortOrder order, int offset, int limit)
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            if (sortViews.contains(order))
+                return readSortedPage(order, offset, limit);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+
+        /*built once under the write lock, then kept up to date by every write*/
+        stamp = lock.writeLock();
+        try
+        {
+            int[] slots = new int[users.size()];
+            int n = 0;
+            for (int slot = users.nextSlot(0); slot >= 0; slot = users.nextSlot(slot + 1))
+                slots[n++] = slot;
+
+            sortViews.build(order, slots);
+            return readSortedPage(order, offset, limit);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public WriteResult insert(User user)
+    {
+        /*the address is claimed atomically before taking the lock, so conflicting registrations fail fast*/
+        if (!emailIndex.claim(user.getEmail(), user.getId()))
+            return WriteResult.EMAIL_TAKEN;
+
+        List<UserChange> applied = new ArrayList<>(1);
+
+        ReentrantLock stripe = stripe(user.getId());
+        stripe.lock();
+        try
+        {
+            compact(user);
+
+            long stamp = lock.writeLock();
+            try
+            {
+                insertLocked(user, applied);
+            }
+            catch (RuntimeException e)
+            {
+                cancelInsert(user);
+                throw e;
+            }
+            finally
+            {
+                publishAndUnlock(applied, stamp);
+            }
+        }
+        finally
+        {
+            stripe.unlock();
+        }
+
+        return WriteResult.OK;
+    }
+
+    @Override
+    public List<WriteResult> insertAll(List<User> created)
+    {
+        List<WriteResult> results = new ArrayList<>(created.size());
+        List<User> claimed = new ArrayList<>(created.size());
+        for (User user : created)
+        {
+            if (emailIndex.claim(user.getEmail(), user.getId()))
+            {
+                claimed.add(user);
+                results.add(WriteResult.OK);
+            }
+            else
+            {
+                results.add(WriteResult.EMAIL_TAKEN);
+            }
+        }
+
+        if (claimed.isEmpty())
+            return results;
+
+        List<UserChange> applied = new ArrayList<>(claimed.size());
+
+        boolean[] held = lockStripes(claimed.stream().map(User::getId).toList());
+        try
+        {
+            claimed.forEach(this::compact);
+
+            long stamp = lock.writeLock();
+            try
+            {
+                for (User user : claimed)
+                    insertLocked(user, applied);
+            }
+            catch (RuntimeException e)
+            {
+                /*the users not stored give their addresses and text back*/
+                claimed.subList(applied.size(), claimed.size()).forEach(this::cancelInsert);
+                throw e;
+            }
+            finally
+            {
+                /*one snapshot for the whole batch*/
+                publishAndUnlock(applied, stamp);
+            }
+        }
+        finally
+        {
+            unlockStripes(held);
+        }
+
+        return results;
+    }
+
+    @Override
+    public WriteResult replace(User user)
+    {
+        if (user.getId() == null)
+            return prepareReplace(null, user);
+
+        ReentrantLock stripe = stripe(user.getId());
+        stripe.lock();
+        try
+        {
+            return replaceUnderStripe(findById(user.getId()).orElse(null), user);
+        }
+        finally
+        {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public WriteResult replace(UUID id, UnaryOperator<User> change)
+    {
+        /*reading and replacing under the same stripe, so concurrent changes of different fields are not lost*/
+        ReentrantLock stripe = stripe(id);
+        stripe.lock();
+        try
+        {
+            User original = findById(id).orElse(null);
+            if (original == null)
+                return WriteResult.NOT_FOUND;
+
+            return replaceUnderStripe(original, change.apply(original));
+        }
+        finally
+        {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public List<WriteResult> replaceAll(Map<UUID, UnaryOperator<User>> changes)
+    {
+        List<WriteResult> results = new ArrayList<>(changes.size());
+        List<UserChange> applied = new ArrayList<>(changes.size());
+        List<User> prepared = new ArrayList<>(changes.size());
+
+        boolean[] held = lockStripes(changes.keySet());
+        try
+        {
+            for (Map.Entry<UUID, UnaryOperator<User>> entry : changes.entrySet())
+            {
+                User original = findById(entry.getKey()).orElse(null);
+                User changed = original == null ? null : entry.getValue().apply(original);
+                WriteResult result = original == null ? WriteResult.NOT_FOUND : prepareReplace(original, changed);
+
+                /*prepared replacements are applied below, all under one write lock*/
+                if (result == WriteResult.OK)
+                    prepared.add(changed);
+                results.add(result);
+            }
+
+            if (prepared.isEmpty())
+                return results;
+
+            long stamp = lock.writeLock();
+            try
+            {
+                for (User user : prepared)
+                    replaceLocked(user, applied);
+            }
+            catch (RuntimeException e)
+            {
+                prepared.subList(applied.size(), prepared.size()).forEach(this::cancelReplace);
+                throw e;
+            }
+            finally
+            {
+                publishAndUnlock(applied, stamp);
+            }
+        }
+        finally
+        {
+            unlockStripes(held);
+        }
+
+        return results;
+    }
+
+    @Override
+    public WriteResult delete(UUID id)
+    {
+        List<UserChange> applied = new ArrayList<>(1);
+
+        ReentrantLock stripe = stripe(id);
+        stripe.lock();
+        try
+        {
+            long stamp = lock.writeLock();
+            try
+            {
+                return deleteLocked(id, applied);
+            }
+            finally
+            {
+                publishAndUnlock(applied, stamp);
+            }
+        }
+        finally
+        {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public List<WriteResult> deleteAll(Collection<UUID> ids)
+    {
+        List<WriteResult> results = new ArrayList<>(ids.size());
+        List<UserChange> applied = new ArrayList<>(ids.size());
+
+        boolean[] held = lockStripes(ids);
+        try
+        {
+            long stamp = lock.writeLock();
+            try
+            {
+                for (UUID id : ids)
+                    results.add(deleteLocked(id, applied));
+            }
+            finally
+            {
+                publishAndUnlock(applied, stamp);
+            }
+        }
+        finally
+        {
+            unlockStripes(held);
+        }
+
+        return results;
+    }
+
+    @Override
+    public long version()
+    {
+        return snapshot.version();
+    }
+
+    @Override
+    public UserSnapshot snapshot()
+    {
+        return snapshot;
+    }
+
+    @Override
+    public void restore(long version, Iterable<User> source)
+    {
+        boolean[] held = new boolean[stripes.length];
+        Arrays.fill(held, true);
+        lockStripes(held);
+
+        long stamp = lock.writeLock();
+        try
+        {
+            users.clear();
+            idIndex.clear();
+            emailIndex.clear();
+            birthDateIndex.clear();
+            searchIndexes.clear();
+            sortViews.clear();
+            dictionary.clear();
+
+            for (User user : source)
+            {
+                compact(user);
+                int slot = users.add(user);
+                idIndex.put(user.getId(), slot);
+                emailIndex.claim(user.getEmail(), user.getId());
+                indexBirthDate(user, slot);
+                searchIndexes.add(user, slot);
+            }
+
+            /*restored users take other slots*/
+            snapshot = new Snapshot(version, users.snapshot(), birthDateIndex.snapshot(), UserPage.newEpoch());
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+            unlockStripes(held);
+        }
+    }
+
+    @Override
+    public void addChangeListener(UserChangeListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void setCommitHook(UserChangeListener hook)
+    {
+        commitHook = hook;
+    }
+
+    private User[] readAll(List<UUID> ids)
+    {
+        SlotList<User> from = snapshot.users();
+        User[] result = new User[ids.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = from.get(idIndex.get(ids.get(i)));
+
+        return result;
+    }
+
+    /**
+     * Must be called under the lock, with the view of the order built.
+     * */
+    private UserPage readSortedPage(SortOrder order, int offset, int limit)
+    {
+        int count = Math.min(limit, users.size() - offset);
+        if (offset < 0 || count <= 0)
+            return UserPage.empty(offset, users.size(), snapshot.version());
+
+        List<User> data = new ArrayList<>(count);
+        sortViews.forEachWhile(order, offset, slot -> data.add(users.get(slot)) && data.size() < count);
+
+        return new UserPage(data, offset, users.size(), snapshot.version(), UserPage.NO_KEY, UserPage.NO_KEY);
+    }
+
+    /**
+     * Reads 'count' users starting at the given occupied slot, walking the following occupied slots.
+     * */
+    private static UserPage readPage(Snapshot current, int offset, int firstSlot, int count)
+    {
+        SlotList<User> from = current.users();
+        User[] data = new User[count];
+
+        int slot = firstSlot;
+        int lastSlot = firstSlot;
+        for (int i = 0; i < count; i++)
+        {
+            data[i] = from.get(slot);
+            lastSlot = slot;
+            slot = from.nextSlot(slot + 1);
+        }
+
+        return new UserPage(Arrays.asList(data), offset, from.size(), current.version(),
+                UserPage.key(current.epoch(), firstSlot), UserPage.key(current.epoch(), lastSlot));
+    }
+
+    /**
+     * Stores a user whose address is already claimed and whose text is compacted, without publishing the change.
+     * Must be called under the write lock.
+     * */
+    private void insertLocked(User user, List<UserChange> applied)
+    {
+        UserChange change = commit(applied, UserChange.Type.CREATE, user.getId(), user);
+
+        int slot = users.add(user);
+        idIndex.put(user.getId(), slot);
+        indexBirthDate(user, slot);
+        searchIndexes.add(user, slot);
+        sortViews.add(user, slot);
+        applied.add(change);
+    }
+
+    /**
+     * Prepares and applies the replacement of a user read under its stripe, which must be held.
+     * The user is not stored if 'previous' is null.
+     * */
+    private WriteResult replaceUnderStripe(User previous, User user)
+    {
+        WriteResult result = prepareReplace(previous, user);
+        if (result != WriteResult.OK)
+            return result;
+
+        List<UserChange> applied = new ArrayList<>(1);
+
+        long stamp = lock.writeLock();
+        try
+        {
+            replaceLocked(user, applied);
+        }
+        catch (RuntimeException e)
+        {
+            cancelReplace(user);
+            throw e;
+        }
+        finally
+        {
+            publishAndUnlock(applied, stamp);
+        }
+
+        return WriteResult.OK;
+    }
+
+    /**
+     * Checks a replacement and claims what it needs before the write lock is taken.
+     * Must be called holding the stripe of the user, which is not stored if 'previous' is null.
+     * After OK the replacement must be applied or cancelled.
+     * */
+    private WriteResult prepareReplace(User previous, User user)
+    {
+        /*
+         * updating value in list only if
+         * specified user id is found
+         * and there is no users with the same email and different id
+         * */
+
+        UUID emailOwner = emailIndex.getOwner(user.getEmail());
+        if (emailOwner != null && !emailOwner.equals(user.getId()))
+            return WriteResult.EMAIL_TAKEN;
+
+        if (previous == null)
+            return WriteResult.NOT_FOUND;
+
+        /*registrations claim addresses without any lock, so the claim itself is the final check*/
+        if (!emailIndex.claim(user.getEmail(), user.getId()))
+            return WriteResult.EMAIL_TAKEN;
+
+        /*acquiring before the previous text is released, so that unchanged values stay in the dictionary*/
+        compact(user);
+        return WriteResult.OK;
+    }
+
+    /**
+     * Applies a prepared replacement without publishing it. Must be called under the write lock.
+     * */
+    private void replaceLocked(User user, List<UserChange> applied)
+    {
+        int slot = idIndex.get(user.getId());
+        User previous = users.get(slot);
+        UserChange change = commit(applied, UserChange.Type.UPDATE, user.getId(), user);
+
+        users.set(slot, user);
+        release(previous);
+
+        /*moving the email ownership together with the record*/
+        if (!EmailIndex.isSameAddress(previous.getEmail(), user.getEmail()))
+            emailIndex.release(previous.getEmail(), previous.getId());
+
+        if (!Objects.equals(previous.getBirthDate(), user.getBirthDate()))
+        {
+            unindexBirthDate(previous, slot);
+            indexBirthDate(user, slot);
+        }
+        searchIndexes.replace(previous, user, slot);
+        sortViews.replace(previous, user, slot);
+        applied.add(change);
+    }
+
+    /**
+     * Gives back the address and the text held by a prepared insert which is not applied.
+     * */
+    private void cancelInsert(User user)
+    {
+        emailIndex.release(user.getEmail(), user.getId());
+        release(user);
+    }
+
+    /**
+     * Gives back the address and the text held by a prepared replacement which is not applied.
+     * Must be called under the write lock.
+     * */
+    private void cancelReplace(User user)
+    {
+        User previous = users.get(idIndex.get(user.getId()));
+        if (!EmailIndex.isSameAddress(previous.getEmail(), user.getEmail()))
+            emailIndex.release(user.getEmail(), user.getId());
+        release(user);
+    }
+
+    /**
+     * Must be called under the write lock.
+     * */
+    private WriteResult deleteLocked(UUID id, List<UserChange> applied)
+    {
+        int slot = idIndex.get(id);
+        if (slot < 0)
+            return WriteResult.NOT_FOUND;
+
+        UserChange change = commit(applied, UserChange.Type.DELETE, id, null);
+        idIndex.remove(id);
+        User removed = users.remove(slot);
+        emailIndex.release(removed.getEmail(), removed.getId());
+        unindexBirthDate(removed, slot);
+        searchIndexes.remove(removed, slot);
+        sortViews.remove(removed, slot);
+        release(removed);
+        applied.add(change);
+
+        return WriteResult.OK;
+    }
+
+    /**
+     * Creates the change following the applied ones and passes it to the commit hook,
+     * which cancels it by throwing. Must be called under the write lock, before the change is applied.
+     * */
+    private UserChange commit(List<UserChange> applied, UserChange.Type type, UUID id, User user)
+    {
+        UserChange change = new UserChange(snapshot.version() + applied.size() + 1, type, id, user);
+        commitHook.onChange(change);
+        return change;
+    }
+
+    /**
+     * Publishes the applied changes, also those of a write failed halfway, and releases the write lock.
+     * */
+    private void publishAndUnlock(List<UserChange> applied, long stamp)
+    {
+        try
+        {
+            publishSnapshot(applied);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Publishes several changes made under the write lock as one snapshot.
+     * Listeners still receive every change. Must be called under the write lock.
+     * */
+    private void publishSnapshot(List<UserChange> changes)
+    {
+        if (changes.isEmpty())
+            return;
+
+        snapshot = new Snapshot(changes.getLast().version(), users.snapshot(), birthDateIndex.snapshot(), snapshot.epoch());
+
+        for (int i = 0; i < changes.size() && !listeners.isEmpty(); i++)
+            notifyListeners(changes.get(i));
+    }
+
+    private ReentrantLock stripe(UUID id)
+    {
+        return stripes[stripeIndex(id)];
+    }
+
+    private static int stripeIndex(UUID id)
+    {
+        int hash = Objects.hashCode(id);
+        return (hash ^ hash >>> 16) & (STRIPES - 1);
+    }
+
+    private boolean[] lockStripes(Collection<UUID> ids)
+    {
+        boolean[] held = new boolean[stripes.length];
+        for (UUID id : ids)
+            held[stripeIndex(id)] = true;
+
+        lockStripes(held);
+        return held;
+    }
+
+    /**
+     * Takes the marked stripes in ascending order, so that writers of several users never deadlock.
+     * */
+    private void lockStripes(boolean[] held)
+    {
+        for (int i = 0; i < held.length; i++)
+        {
+            if (held[i])
+                stripes[i].lock();
+        }
+    }
+
+    private void unlockStripes(boolean[] held)
+    {
+        for (int i = 0; i < held.length; i++)
+        {
+            if (held[i])
+                stripes[i].unlock();
+        }
+    }
+
+    private void notifyListeners(UserChange change)
+    {
+        for (UserChangeListener listener : listeners)
+            listener.onChange(change);
+    }
+
+    /**
+     * Adds a user meeting the query to the result, returning false once the result is full.
+     * */
+    private static boolean collect(List<User> result, User user, UserQuery query, int limit)
+    {
+        if (user != null && query.matches(user))
+            result.add(user);
+
+        return result.size() < limit;
+    }
+
+    /**
+     * Replaces the repeating text of a user being stored with the canonical instances.
+     * */
+    private void compact(User user)
+    {
+        user.setFirstName(dictionary.acquire(user.getFirstName()));
+        user.setLastName(dictionary.acquire(user.getLastName()));
+        user.setAddress(dictionary.acquire(user.getAddress()));
+    }
+
+    private void release(User user)
+    {
+        dictionary.release(user.getFirstName());
+        dictionary.release(user.getLastName());
+        dictionary.release(user.getAddress());
+    }
+
+    private void indexBirthDate(User user, int slot)
+    {
+        if (user.getBirthDate() != null)
+            birthDateIndex.add(user.getBirthDate().toEpochDay(), slot);
+    }
+
+    private void unindexBirthDate(User user, int slot)
+    {
+        if (user.getBirthDate() != null)
+            birthDateIndex.remove(user.getBirthDate().toEpochDay(), slot);
+    }
+
+    /**
+     * @param version incremented on every write, identifies the state a response was built from
+     * @param epoch epoch of the page keys, see {@link UserPage}
+     * */
+    private record Snapshot(long version, SlotList<User> users, BirthDateIndex birthDates, int epoch) implements UserSnapshot
+    {
+        @Override
+        public int size() {
+            return users.size();
+        }
+
+        @Override
+        public Iterator<User> iterator() {
+            return users.iterator();
+        }
+    }
+}
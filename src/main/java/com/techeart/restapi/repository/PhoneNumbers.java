@@ -0,0 +1,62 @@
+package com.techeart.restapi.repository;
+
+/**
+ * Packs phone numbers made of digits into a single long.
+ * <p>
+ * The digits are stored as a number shifted left by 5 bits, the low bits keeping the count of digits,
+ * so that leading zeros survive. Numbers that can not be packed this way (other characters,
+ * more than 17 digits) are reported as {@link #NOT_PACKABLE} and must be stored as text.
+ * */
+public final class PhoneNumbers
+{
+    public static final long NULL = -1;
+    public static final long NOT_PACKABLE = -2;
+
+    private static final int MAX_DIGITS = 17;
+    private static final int LENGTH_BITS = 5;
+
+    private PhoneNumbers() { }
+
+    public static long pack(String phoneNumber)
+    {
+        if (phoneNumber == null)
+            return NULL;
+
+        int length = phoneNumber.length();
+        if (length == 0 || length > MAX_DIGITS)
+            return NOT_PACKABLE;
+
+        long value = 0;
+        for (int i = 0; i < length; i++)
+        {
+            char c = phoneNumber.charAt(i);
+            if (c < '0' || c > '9')
+                return NOT_PACKABLE;
+
+            value = value * 10 + (c - '0');
+        }
+
+        return value << LENGTH_BITS | length;
+    }
+
+    /**
+     * Returns null for {@link #NULL}. Must not be called with {@link #NOT_PACKABLE}.
+     * */
+    public static String unpack(long packed)
+    {
+        if (packed == NULL)
+            return null;
+
+        int length = (int) (packed & ((1 << LENGTH_BITS) - 1));
+        char[] digits = new char[length];
+
+        long value = packed >>> LENGTH_BITS;
+        for (int i = length - 1; i >= 0; i--)
+        {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+
+        return new String(digits);
+    }
+}
@@ -0,0 +1,69 @@
+package com.techeart.restapi.repository;
+
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * The way a {@link UserQuery} is answered, made by {@link UserSearchIndexes#plan}.
+ * <p>
+ * An index plan walks the slots of the most selective index (the driver) and skips the slots
+ * missing from the other usable hash and trigram indexes before any user is read. A scan plan reads
+ * every user. Either way, the users read are checked against the whole query.
+ * <p>
+ * The description names the steps with the number of entries of every index, e.g.
+ * {@code index(lastName:12) & index(emailDomain:3400) -> filter(hasPhone)}.
+ * */
+public final class QueryPlan
+{
+    private final String description;
+    private final Driver driver;
+    private final List<IntPredicate> intersected;
+
+    /**
+     * @param intersected membership tests of the indexes every candidate slot has to be in
+     * */
+    QueryPlan(String description, Driver driver, List<IntPredicate> intersected)
+    {
+        this.description = description;
+        this.driver = driver;
+        this.intersected = intersected;
+    }
+
+    /**
+     * Whether all users have to be read, no index being usable.
+     * */
+    public boolean isScan() {
+        return driver == null;
+    }
+
+    /**
+     * Passes the candidate slots of an index plan to the action, in the order of the driving index,
+     * until it returns false. Must be called while the indexes are not modified.
+     * */
+    public void forEachCandidate(IntPredicate action)
+    {
+        driver.forEachWhile(slot -> !isCandidate(slot) || action.test(slot));
+    }
+
+    private boolean isCandidate(int slot)
+    {
+        for (IntPredicate index : intersected)
+        {
+            if (!index.test(slot))
+                return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+
+    @FunctionalInterface
+    interface Driver
+    {
+        void forEachWhile(IntPredicate action);
+    }
+}
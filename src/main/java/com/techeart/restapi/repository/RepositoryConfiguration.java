@@ -0,0 +1,46 @@
+package com.techeart.restapi.repository;
+
+import com.techeart.restapi.repository.columnar.ColumnarUserRepository;
+import com.techeart.restapi.repository.durable.DurableUserRepository;
+import com.techeart.restapi.repository.mapped.MappedUserRepository;
+import com.techeart.restapi.service.ConfigurationService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Creates the storage engine selected by the 'app.storageEngine' property, with substring indexes
+ * if 'app.storageSubstringIndexes' is set, made durable if 'app.storageDurable' is set. The mmap engine
+ * keeps its own files, which the recovery of a durable engine would overwrite in place, so it can not be made durable.
+ * */
+@Configuration
+public class RepositoryConfiguration
+{
+    public static final String ENGINE_MEMORY = "memory";
+    public static final String ENGINE_MAPPED = "mmap";
+    public static final String ENGINE_COLUMNAR = "columnar";
+
+    @Bean
+    public UserRepository userRepository(ConfigurationService config) throws IOException
+    {
+        if (config.isStorageDurable() && ENGINE_MAPPED.equals(config.getStorageEngine()))
+            throw new IllegalStateException("The " + ENGINE_MAPPED + " engine persists its own files and can not be made durable.");
+
+        boolean substrings = config.isStorageSubstringIndexes();
+        UserRepository engine = switch (config.getStorageEngine())
+        {
+            case ENGINE_MEMORY -> new InMemoryUserRepository(substrings);
+            case ENGINE_MAPPED -> new MappedUserRepository(Path.of(config.getStorageDir()), substrings);
+            case ENGINE_COLUMNAR -> new ColumnarUserRepository(substrings);
+            default -> throw new IllegalStateException("Unknown storage engine: " + config.getStorageEngine());
+        };
+
+        if (!config.isStorageDurable())
+            return engine;
+
+        return new DurableUserRepository(engine, Path.of(config.getStorageDir()),
+                config.getStorageFsyncBatch(), config.getStorageFsyncIntervalMs(), config.getStorageSnapshotInterval());
+    }
+}
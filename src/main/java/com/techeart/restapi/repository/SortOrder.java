@@ -0,0 +1,123 @@
+package com.techeart.restapi.repository;
+
+import com.techeart.restapi.api.model.User;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Order of users by one or more of their properties, written as in the 'sort' request parameter:
+ * property names separated by commas, each prefixed by '-' to sort descending, e.g. {@code lastName,-birthDate}.
+ * <p>
+ * Names are compared case-insensitively. Users equal by all keys keep their insertion order,
+ * which is reversed if the first key is descending.
+ * */
+public record SortOrder(List<Key> keys)
+{
+    public enum Field
+    {
+        EMAIL("email", Comparator.comparing(User::getEmail, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))),
+        FIRST_NAME("firstName", Comparator.comparing(User::getFirstName, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))),
+        LAST_NAME("lastName", Comparator.comparing(User::getLastName, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))),
+        BIRTH_DATE("birthDate", Comparator.comparing(User::getBirthDate, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        private final String property;
+        private final Comparator<User> comparator;
+
+        Field(String property, Comparator<User> comparator)
+        {
+            this.property = property;
+            this.comparator = comparator;
+        }
+
+        public String getProperty() { return property; }
+    }
+
+    public record Key(Field field, boolean descending)
+    {
+        @Override
+        public String toString() {
+            return (descending ? "-" : "") + field.getProperty();
+        }
+    }
+
+    /**
+     * Parses a sort parameter. Only the properties of {@link Field} can be sorted by, each at most once.
+     *
+     * @throws IllegalArgumentException if the parameter is not a valid order
+     * */
+    public static SortOrder parse(String value)
+    {
+        if (value == null || value.isBlank())
+            throw new IllegalArgumentException("Sort order can not be empty.");
+
+        List<Key> keys = new ArrayList<>();
+        for (String part : value.split(",", -1))
+        {
+            String name = part.trim();
+            boolean descending = name.startsWith("-");
+            Field field = find(descending ? name.substring(1) : name);
+
+            if (field == null)
+                throw new IllegalArgumentException("Can't sort by '" + name + "'.");
+            if (keys.stream().anyMatch(k -> k.field() == field))
+                throw new IllegalArgumentException("Property '" + field.getProperty() + "' is sorted by more than once.");
+
+            keys.add(new Key(field, descending));
+        }
+
+        return new SortOrder(List.copyOf(keys));
+    }
+
+    /**
+     * Whether this order is the reverse of its {@link #ascendingFirst()} form.
+     * */
+    public boolean isReversed() {
+        return keys.getFirst().descending();
+    }
+
+    /**
+     * Returns the order whose reverse this one is, if the first key is descending, or this order otherwise.
+     * An order and its reverse are read from the same sorted view.
+     * */
+    public SortOrder ascendingFirst()
+    {
+        if (!isReversed())
+            return this;
+
+        return new SortOrder(keys.stream().map(k -> new Key(k.field(), !k.descending())).toList());
+    }
+
+    /**
+     * Compares users by the keys only, users equal by all of them compare as zero.
+     * */
+    public int compare(User a, User b)
+    {
+        for (Key key : keys)
+        {
+            int result = key.field().comparator.compare(a, b);
+            if (result != 0)
+                return key.descending() ? -result : result;
+        }
+
+        return 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.join(",", keys.stream().map(Key::toString).toList());
+    }
+
+    private static Field find(String property)
+    {
+        for (Field field : Field.values())
+        {
+            if (field.getProperty().equals(property))
+                return field;
+        }
+
+        return null;
+    }
+}
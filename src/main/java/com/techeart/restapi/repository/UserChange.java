@@ -0,0 +1,21 @@
+package com.techeart.restapi.repository;
+
+import com.techeart.restapi.api.model.User;
+
+import java.util.UUID;
+
+/**
+ * Single successful write of a repository.
+ *
+ * @param version version of the data created by the write
+ * @param user the stored user, null for {@link Type#DELETE}
+ * */
+public record UserChange(long version, Type type, UUID id, User user)
+{
+    public enum Type
+    {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+}
@@ -0,0 +1,15 @@
+package com.techeart.restapi.repository;
+
+/**
+ * Receives the writes of a repository.
+ * <p>
+ * Listeners are called by the writing thread, in version order, while the repository
+ * still holds its write lock. They must be fast and must not call back into
+ * the repository's write methods. An exception thrown by a listener is passed
+ * on to the writer, but the change itself stays applied.
+ * */
+@FunctionalInterface
+public interface UserChangeListener
+{
+    void onChange(UserChange change);
+}
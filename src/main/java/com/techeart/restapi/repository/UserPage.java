@@ -0,0 +1,74 @@
+package com.techeart.restapi.repository;
+
+import com.techeart.restapi.api.model.User;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Users of a single page.
+ * <p>
+ * Keys identify the position of a user in insertion order. They do not change while the user
+ * is stored, so a page following or preceding a key ({@link UserRepository#findPageAfter(long, int)})
+ * is not shifted by users added or deleted elsewhere.
+ * <p>
+ * A key is made of the slot of the user and the epoch of the engine's slots: [epoch: 32 bits][slot: 31 bits].
+ * An engine starts a new epoch whenever its users move to other slots (on startup, restore or
+ * compaction), so a key of an earlier epoch is rejected instead of pointing to another user.
+ *
+ * @param offset position of the first user of the page in insertion order
+ * @param total total number of users in the version the page was read from
+ * @param version version of the data the page was read from
+ * @param firstKey key of the first user of the page, {@link #NO_KEY} if the page is empty
+ * @param lastKey key of the last user of the page, {@link #NO_KEY} if the page is empty
+ * */
+public record UserPage(List<User> users, int offset, int total, long version, long firstKey, long lastKey)
+{
+    public static final long NO_KEY = -1;
+
+    private static final int SLOT_BITS = 31;
+
+    public static UserPage empty(int offset, int total, long version)
+    {
+        return new UserPage(List.of(), offset, total, version, NO_KEY, NO_KEY);
+    }
+
+    public boolean hasPrevious() {
+        return offset > 0;
+    }
+
+    public boolean hasNext() {
+        return offset + users.size() < total;
+    }
+
+    /**
+     * Returns a random positive epoch, so that epochs of different engines and runs differ.
+     * */
+    public static int newEpoch()
+    {
+        return ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE);
+    }
+
+    public static long key(int epoch, int slot)
+    {
+        return (long) epoch << SLOT_BITS | slot;
+    }
+
+    /**
+     * Returns the slot of a key made in the epoch: -1 for {@link #NO_KEY}
+     * and {@link Integer#MAX_VALUE} for {@link Long#MAX_VALUE}.
+     *
+     * @throws IllegalArgumentException if the key was made in another epoch
+     * */
+    public static int slot(int epoch, long key)
+    {
+        if (key == NO_KEY)
+            return -1;
+        if (key == Long.MAX_VALUE)
+            return Integer.MAX_VALUE;
+        if (key >>> SLOT_BITS != epoch)
+            throw new IllegalArgumentException("Key " + key + " does not belong to the current slots.");
+
+        return (int) (key & ((1L << SLOT_BITS) - 1));
+    }
+}
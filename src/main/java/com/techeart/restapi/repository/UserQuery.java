@@ -0,0 +1,102 @@
+package com.techeart.restapi.repository;
+
+import com.techeart.restapi.api.model.User;
+
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * Criteria of a user search. Every criterion is optional and a user has to meet all given ones.
+ * <p>
+ * The email domain and the names are compared case-insensitively and as whole values,
+ * the birth date range is inclusive.
+ *
+ * @param hasPhone whether the user must (true) or must not (false) have a phone number
+ * @param hasAddress whether the user must (true) or must not (false) have an address
+ * @param emailContains fragment the email must contain, case-insensitive
+ * @param addressContains fragment the address must contain, case-insensitive
+ * */
+public record UserQuery(String emailDomain, String firstName, String lastName,
+                        LocalDate minBirthDate, LocalDate maxBirthDate,
+                        Boolean hasPhone, Boolean hasAddress,
+                        String emailContains, String addressContains)
+{
+    public boolean isEmpty()
+    {
+        return emailDomain == null && firstName == null && lastName == null
+                && minBirthDate == null && maxBirthDate == null
+                && hasPhone == null && hasAddress == null
+                && emailContains == null && addressContains == null;
+    }
+
+    public boolean hasBirthDateRange() {
+        return minBirthDate != null || maxBirthDate != null;
+    }
+
+    public long fromEpochDay() {
+        return minBirthDate == null ? Long.MIN_VALUE : minBirthDate.toEpochDay();
+    }
+
+    public long toEpochDay() {
+        return maxBirthDate == null ? Long.MAX_VALUE : maxBirthDate.toEpochDay();
+    }
+
+    public boolean matches(User user)
+    {
+        if (emailDomain != null && !normalize(emailDomain).equals(domainOf(user.getEmail())))
+            return false;
+        if (firstName != null && !normalize(firstName).equals(normalize(user.getFirstName())))
+            return false;
+        if (lastName != null && !normalize(lastName).equals(normalize(user.getLastName())))
+            return false;
+        if (emailContains != null && !contains(user.getEmail(), emailContains))
+            return false;
+        if (addressContains != null && !contains(user.getAddress(), addressContains))
+            return false;
+
+        if (hasBirthDateRange())
+        {
+            if (user.getBirthDate() == null)
+                return false;
+
+            long day = user.getBirthDate().toEpochDay();
+            if (day < fromEpochDay() || day > toEpochDay())
+                return false;
+        }
+
+        if (hasPhone != null && hasPhone != isPresent(user.getPhoneNumber()))
+            return false;
+
+        return hasAddress == null || hasAddress == isPresent(user.getAddress());
+    }
+
+    /**
+     * Returns the key a name or domain is indexed and compared by.
+     * */
+    public static String normalize(String value)
+    {
+        return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the normalized part of the address after the last '@', or null if there is none.
+     * */
+    public static String domainOf(String email)
+    {
+        if (email == null)
+            return null;
+
+        int at = email.lastIndexOf('@');
+        return at < 0 ? null : normalize(email.substring(at + 1));
+    }
+
+    private static boolean contains(String value, String fragment)
+    {
+        return value != null && normalize(value).contains(normalize(fragment));
+    }
+
+    private static boolean isPresent(String value)
+    {
+        return value != null && !value.isBlank();
+    }
+}
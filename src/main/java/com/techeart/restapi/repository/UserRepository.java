@@ -0,0 +1,152 @@
+package com.techeart.restapi.repository;
+
+import com.techeart.restapi.api.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+
+/**
+ * Storage of users.
+ * <p>
+ * Implementations must be safe for concurrent use. Every successful write creates
+ * a new version of the stored data; multi-user reads (pages and ranges) are served
+ * from a single version and must not block writers.
+ * */
+public interface UserRepository
+{
+    Optional<User> findById(UUID id);
+
+    /**
+     * Finds several users at once, reading a single version of the data.
+     *
+     * @return the user of every id in the order of the ids, null for the ids not found
+     * */
+    List<User> findAllById(List<UUID> ids);
+
+    /**
+     * Finds the owner of the address. Addresses are compared case-insensitively.
+     * */
+    Optional<User> findByEmail(String email);
+
+    /**
+     * Returns users with a birth date within the given inclusive range of epoch days,
+     * ordered by birth date.
+     * */
+    List<User> findByBirthDateBetween(long fromEpochDay, long toEpochDay);
+
+    /**
+     * Finds at most 'limit' users meeting all criteria of the query, planned by {@link UserSearchIndexes}.
+     * Users found through an index come in the order of that index, scanned users in insertion order.
+     * */
+    UserSearchResult search(UserQuery query, int limit);
+
+    /**
+     * Finds at most 'limit' users whose first or last name starts with the prefix, case-insensitively.
+     * Users come in alphabetical order of the matching name.
+     * */
+    List<User> findByNamePrefix(String prefix, int limit);
+
+    /**
+     * Returns up to 'limit' users starting at the given position in insertion order.
+     * */
+    UserPage findPage(int offset, int limit);
+
+    /**
+     * Returns up to 'limit' users following the user with the given key in insertion order.
+     * {@link UserPage#NO_KEY} starts from the first user. The key does not need to belong to a stored user.
+     *
+     * @throws IllegalArgumentException if the key was made before the users moved to other slots
+     * */
+    UserPage findPageAfter(long key, int limit);
+
+    /**
+     * Returns up to 'limit' users preceding the user with the given key in insertion order.
+     * {@link Long#MAX_VALUE} ends with the last user.
+     *
+     * @throws IllegalArgumentException if the key was made before the users moved to other slots
+     * */
+    UserPage findPageBefore(long key, int limit);
+
+    /**
+     * Returns up to 'limit' users starting at the given position in the order, read from the
+     * {@link UserSortViews} of the engine. The page has no keys, sorted pages are addressed by offset.
+     * */
+    UserPage findSortedPage(SortOrder order, int offset, int limit);
+
+    /**
+     * Stores a new user. The user must already have an id.
+     * <p>
+     * Returns {@link WriteResult#EMAIL_TAKEN} if the address belongs to another user.
+     * */
+    WriteResult insert(User user);
+
+    /**
+     * Stores new users in a single write, in the given order. The users must already have ids.
+     * <p>
+     * Returns the result of every user: {@link WriteResult#EMAIL_TAKEN} if the address belongs to another user,
+     * including one stored earlier by the same call. Listeners are notified of every stored user.
+     * */
+    List<WriteResult> insertAll(List<User> users);
+
+    /**
+     * Replaces the stored user having the same id.
+     * */
+    WriteResult replace(User user);
+
+    /**
+     * Replaces the stored user with the result of the change, atomically:
+     * no other write happens between reading and replacing the user.
+     * The change must not modify the id.
+     * */
+    WriteResult replace(UUID id, UnaryOperator<User> change);
+
+    /**
+     * Applies the changes to several users in a single write, in the iteration order of the map.
+     *
+     * @return the result of every change, in the same order
+     * */
+    List<WriteResult> replaceAll(Map<UUID, UnaryOperator<User>> changes);
+
+    /**
+     * Returns {@link WriteResult#NOT_FOUND} if there is no user with the id.
+     * */
+    WriteResult delete(UUID id);
+
+    /**
+     * Deletes several users in a single write.
+     *
+     * @return the result of every id, in the order of the ids
+     * */
+    List<WriteResult> deleteAll(Collection<UUID> ids);
+
+    /**
+     * Returns the version of the latest stored data.
+     * */
+    long version();
+
+    /**
+     * Returns the latest stored data. The snapshot is not affected by later writes.
+     * */
+    UserSnapshot snapshot();
+
+    /**
+     * Replaces all stored data with the given users, setting the version.
+     * Listeners are not notified.
+     * */
+    void restore(long version, Iterable<User> users);
+
+    /**
+     * Registers a listener of all the following successful writes.
+     * */
+    void addChangeListener(UserChangeListener listener);
+
+    /**
+     * Sets the hook called with each change under the write lock, before the change is applied.
+     * A hook that throws cancels its change, while the earlier changes of the same write stay applied.
+     * */
+    void setCommitHook(UserChangeListener hook);
+}
@@ -0,0 +1,282 @@
+package com.techeart.restapi.repository;
+
+import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.index.BirthDateIndex;
+import com.techeart.restapi.index.KeyIndex;
+import com.techeart.restapi.index.SlotBitmap;
+import com.techeart.restapi.index.SlotSet;
+import com.techeart.restapi.index.TrigramIndex;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * Secondary indexes of a storage engine used by searches only: email domain, first name and last name,
+ * each a {@link KeyIndex} of normalized values, and a {@link TrigramIndex} of both the normalized email
+ * and address for substring criteria. Together with the birth date index of the engine they are
+ * the indexes a {@link QueryPlan} can use. The name indexes are ordered, so they also serve
+ * prefix searches of names.
+ * <p>
+ * The trigram indexes take about 100 B of heap per user, more than the other indexes together.
+ * Without them substring criteria are only filters, so such searches scan unless another criterion is indexed.
+ * <p>
+ * Not thread safe: engines modify the indexes under their write lock and plan under their read lock.
+ * */
+public class UserSearchIndexes
+{
+    private final KeyIndex emailDomains = new KeyIndex();
+    private final KeyIndex firstNames = KeyIndex.ordered();
+    private final KeyIndex lastNames = KeyIndex.ordered();
+    private final TrigramIndex emails;
+    private final TrigramIndex addresses;
+
+    public UserSearchIndexes()
+    {
+        this(true);
+    }
+
+    /**
+     * @param substrings whether to keep the trigram indexes of emails and addresses
+     * */
+    public UserSearchIndexes(boolean substrings)
+    {
+        this.emails = substrings ? new TrigramIndex() : null;
+        this.addresses = substrings ? new TrigramIndex() : null;
+    }
+
+    public void add(User user, int slot)
+    {
+        emailDomains.add(UserQuery.domainOf(user.getEmail()), slot);
+        firstNames.add(UserQuery.normalize(user.getFirstName()), slot);
+        lastNames.add(UserQuery.normalize(user.getLastName()), slot);
+        if (emails != null)
+        {
+            emails.add(UserQuery.normalize(user.getEmail()), slot);
+            addresses.add(UserQuery.normalize(user.getAddress()), slot);
+        }
+    }
+
+    public void remove(User user, int slot)
+    {
+        emailDomains.remove(UserQuery.domainOf(user.getEmail()), slot);
+        firstNames.remove(UserQuery.normalize(user.getFirstName()), slot);
+        lastNames.remove(UserQuery.normalize(user.getLastName()), slot);
+        if (emails != null)
+        {
+            emails.remove(UserQuery.normalize(user.getEmail()), slot);
+            addresses.remove(UserQuery.normalize(user.getAddress()), slot);
+        }
+    }
+
+    /**
+     * Moves the entries of a replaced user, touching only the indexes whose key changed.
+     * */
+    public void replace(User previous, User user, int slot)
+    {
+        replace(emailDomains, UserQuery.domainOf(previous.getEmail()), UserQuery.domainOf(user.getEmail()), slot);
+        replace(firstNames, UserQuery.normalize(previous.getFirstName()), UserQuery.normalize(user.getFirstName()), slot);
+        replace(lastNames, UserQuery.normalize(previous.getLastName()), UserQuery.normalize(user.getLastName()), slot);
+        if (emails != null)
+        {
+            replace(emails, UserQuery.normalize(previous.getEmail()), UserQuery.normalize(user.getEmail()), slot);
+            replace(addresses, UserQuery.normalize(previous.getAddress()), UserQuery.normalize(user.getAddress()), slot);
+        }
+    }
+
+    public void clear()
+    {
+        emailDomains.clear();
+        firstNames.clear();
+        lastNames.clear();
+        if (emails != null)
+        {
+            emails.clear();
+            addresses.clear();
+        }
+    }
+
+    /**
+     * Picks the index with the fewest entries matching the query to drive the search
+     * and intersects it with the other usable hash and trigram indexes. Users are scanned only
+     * if the query has no indexed criterion; a substring criterion is indexed when it has
+     * at least {@value TrigramIndex#GRAM_LENGTH} chars.
+     *
+     * @param birthDates birth date index of the engine
+     * @param total number of stored users
+     * */
+    public QueryPlan plan(UserQuery query, BirthDateIndex birthDates, int total)
+    {
+        List<Access> accesses = new ArrayList<>(6);
+        List<String> filters = new ArrayList<>();
+        addKeyAccess(accesses, "emailDomain", emailDomains, UserQuery.normalize(query.emailDomain()));
+        addKeyAccess(accesses, "firstName", firstNames, UserQuery.normalize(query.firstName()));
+        addKeyAccess(accesses, "lastName", lastNames, UserQuery.normalize(query.lastName()));
+        addTrigramAccess(accesses, filters, "emailContains", emails, UserQuery.normalize(query.emailContains()));
+        addTrigramAccess(accesses, filters, "addressContains", addresses, UserQuery.normalize(query.addressContains()));
+
+        if (query.hasBirthDateRange())
+        {
+            long from = query.fromEpochDay();
+            long to = query.toEpochDay();
+            accesses.add(new Access("birthDate", birthDates.countBetween(from, to), null,
+                    action -> birthDates.forEachBetweenWhile(from, to, action)));
+        }
+
+        StringBuilder description = new StringBuilder();
+        QueryPlan.Driver driver = null;
+        List<IntPredicate> intersected = new ArrayList<>();
+
+        if (accesses.isEmpty())
+        {
+            description.append("scan(").append(total).append(')');
+        }
+        else
+        {
+            accesses.sort(Comparator.comparingInt(Access::count));
+            driver = accesses.getFirst().driver();
+            description.append(accesses.getFirst());
+
+            for (Access access : accesses.subList(1, accesses.size()))
+            {
+                /*only hash and trigram indexes answer whether they hold a slot*/
+                if (access.membership() != null)
+                {
+                    intersected.add(access.membership());
+                    description.append(" & ").append(access);
+                }
+                else
+                {
+                    filters.add(access.name());
+                }
+            }
+        }
+
+        if (query.hasPhone() != null)
+            filters.add("hasPhone");
+        if (query.hasAddress() != null)
+            filters.add("hasAddress");
+
+        if (!filters.isEmpty())
+            description.append(" -> filter(").append(String.join(", ", filters)).append(')');
+
+        return new QueryPlan(description.toString(), driver, intersected);
+    }
+
+    /**
+     * Passes the slots of users whose first or last name starts with the prefix (case-insensitive)
+     * to the action, until it returns false. Names come in alphabetical order, so shorter and exact
+     * matches come first; every user is passed once.
+     * */
+    public void forEachNameStartingWith(String prefix, IntPredicate action)
+    {
+        String key = UserQuery.normalize(prefix);
+        Iterator<Map.Entry<String, SlotBitmap>> first = firstNames.withPrefix(key);
+        Iterator<Map.Entry<String, SlotBitmap>> last = lastNames.withPrefix(key);
+        Map.Entry<String, SlotBitmap> a = first.hasNext() ? first.next() : null;
+        Map.Entry<String, SlotBitmap> b = last.hasNext() ? last.next() : null;
+
+        /*a user may match by both names*/
+        SlotSet passed = new SlotSet();
+        IntPredicate once = slot -> !passed.add(slot) || action.test(slot);
+
+        /*merging both name orders*/
+        while (a != null || b != null)
+        {
+            Map.Entry<String, SlotBitmap> entry;
+            if (b == null || (a != null && a.getKey().compareTo(b.getKey()) <= 0))
+            {
+                entry = a;
+                a = first.hasNext() ? first.next() : null;
+            }
+            else
+            {
+                entry = b;
+                b = last.hasNext() ? last.next() : null;
+            }
+
+            if (!entry.getValue().forEachWhile(once))
+                return;
+        }
+    }
+
+    private static void addKeyAccess(List<Access> accesses, String name, KeyIndex index, String key)
+    {
+        if (key == null)
+            return;
+
+        SlotBitmap slots = index.get(key);
+
+        /*slot order, the insertion order of the users, walked only as far as the action asks*/
+        QueryPlan.Driver driver = action -> {
+            if (slots != null)
+                slots.forEachWhile(action);
+        };
+
+        accesses.add(new Access(name, slots == null ? 0 : slots.size(), slots == null ? slot -> false : slots::contains, driver));
+    }
+
+    /**
+     * Adds the access by the posting lists of the trigrams of the fragment, or a filter if it is too short
+     * or substrings are not indexed.
+     * The count is the length of the shortest list, an upper bound of the matching users.
+     * */
+    private static void addTrigramAccess(List<Access> accesses, List<String> filters, String name,
+                                         TrigramIndex index, String fragment)
+    {
+        if (fragment == null)
+            return;
+
+        SlotBitmap[] lists = index == null ? null : index.postings(fragment);
+        if (lists == null)
+        {
+            filters.add(name);
+            return;
+        }
+
+        IntPredicate membership = slot -> {
+            for (SlotBitmap slots : lists)
+            {
+                if (!slots.contains(slot))
+                    return false;
+            }
+
+            return true;
+        };
+
+        /*the shortest list is walked in slot order, the others are probed*/
+        QueryPlan.Driver driver = action -> lists[0].forEachWhile(slot -> !membership.test(slot) || action.test(slot));
+        accesses.add(new Access(name, lists[0].size(), membership, driver));
+    }
+
+    private static void replace(KeyIndex index, String previous, String key, int slot)
+    {
+        if (Objects.equals(previous, key))
+            return;
+
+        index.remove(previous, slot);
+        index.add(key, slot);
+    }
+
+    private static void replace(TrigramIndex index, String previous, String value, int slot)
+    {
+        if (Objects.equals(previous, value))
+            return;
+
+        index.remove(previous, slot);
+        index.add(value, slot);
+    }
+
+    /**
+     * A way to find candidates of one criterion.
+     *
+     * @param count number of entries matching the criterion
+     * @param membership whether a slot matches, null for an ordered index which can not tell
+     * */
+    private record Access(String name, int count, IntPredicate membership, QueryPlan.Driver driver)
+    {
+        @Override
+        public String toString() {
+            return "index(" + name + ":" + count + ")";
+        }
+    }
+}
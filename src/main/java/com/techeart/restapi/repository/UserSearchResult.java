@@ -0,0 +1,11 @@
+package com.techeart.restapi.repository;
+
+import com.techeart.restapi.api.model.User;
+
+import java.util.List;
+
+/**
+ * @param users users meeting the query, in the order of the plan
+ * @param plan description of the plan the users were found by, see {@link QueryPlan}
+ * */
+public record UserSearchResult(List<User> users, String plan) {  }
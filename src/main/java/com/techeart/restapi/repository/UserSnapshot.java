@@ -0,0 +1,22 @@
+package com.techeart.restapi.repository;
+
+import com.techeart.restapi.api.model.User;
+
+/**
+ * Immutable state of a repository at one version, iterating users in insertion order.
+ * <p>
+ * A snapshot may be iterable only once and may hold resources of its repository
+ * until it is iterated to the end or closed.
+ * */
+public interface UserSnapshot extends Iterable<User>, AutoCloseable
+{
+    long version();
+
+    int size();
+
+    /**
+     * Releases the snapshot before it is iterated to the end. Closing twice has no effect.
+     * */
+    @Override
+    default void close() { }
+}
@@ -0,0 +1,151 @@
+package com.techeart.restapi.repository;
+
+import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.index.SortedSlots;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Users of a storage engine in the {@link SortOrder}s requested so far, each a {@link SortedSlots}
+ * ordered by the sort keys and then by slot.
+ * <p>
+ * A view is built on the first request of its order and from then on updated by every write,
+ * like the other indexes, so a sorted page reads only its own users. An order whose first key
+ * is descending is read backwards from the view of its reverse. At most {@link #MAX_VIEWS} views
+ * are kept, the least recently used one is dropped for a new one.
+ * <p>
+ * Not thread safe: engines modify and build the views under their write lock and read them under their read lock.
+ * */
+public class UserSortViews
+{
+    public static final int MAX_VIEWS = 16;
+
+    /**
+     * Users of the engine by slot, including the slots being modified.
+     * */
+    private final IntFunction<User> users;
+
+    private final Map<SortOrder, View> views = new HashMap<>();
+    private final AtomicLong uses = new AtomicLong();
+
+    public UserSortViews(IntFunction<User> users)
+    {
+        this.users = users;
+    }
+
+    public boolean contains(SortOrder order)
+    {
+        return views.containsKey(order.ascendingFirst());
+    }
+
+    /**
+     * Creates the view of the order from the given slots of all stored users.
+     * */
+    public void build(SortOrder order, int[] slots)
+    {
+        SortOrder key = order.ascendingFirst();
+        if (views.containsKey(key))
+            return;
+
+        if (views.size() == MAX_VIEWS)
+            views.values().stream().min(Comparator.comparingLong(v -> v.lastUsed)).ifPresent(v -> views.remove(v.order));
+
+        /*every user read once, rather than at every comparison*/
+        User[] values = new User[slots.length];
+        Integer[] positions = new Integer[slots.length];
+        for (int i = 0; i < slots.length; i++)
+        {
+            values[i] = users.apply(slots[i]);
+            positions[i] = i;
+        }
+
+        Arrays.sort(positions, (a, b) -> {
+            int result = key.compare(values[a], values[b]);
+            return result != 0 ? result : Integer.compare(slots[a], slots[b]);
+        });
+
+        int[] sorted = new int[slots.length];
+        for (int i = 0; i < sorted.length; i++)
+            sorted[i] = slots[positions[i]];
+
+        views.put(key, new View(key, SortedSlots.of(sorted)));
+    }
+
+    /**
+     * Passes the slots of the users in the order to the action, starting with the user at the given offset,
+     * until it returns false.
+     *
+     * @return false if there is no view of the order
+     * */
+    public boolean forEachWhile(SortOrder order, int offset, IntPredicate action)
+    {
+        View view = views.get(order.ascendingFirst());
+        if (view == null)
+            return false;
+
+        view.lastUsed = uses.incrementAndGet();
+        view.slots.forEachWhile(offset, order.isReversed(), action);
+        return true;
+    }
+
+    public void add(User user, int slot)
+    {
+        for (View view : views.values())
+            view.slots.add(slot, probe(view.order, user, slot));
+    }
+
+    public void remove(User user, int slot)
+    {
+        for (View view : views.values())
+            view.slots.remove(slot, probe(view.order, user, slot));
+    }
+
+    /**
+     * Moves the entries of a replaced user, touching only the views whose keys changed.
+     * */
+    public void replace(User previous, User user, int slot)
+    {
+        for (View view : views.values())
+        {
+            if (view.order.compare(previous, user) == 0)
+                continue;
+
+            view.slots.remove(slot, probe(view.order, previous, slot));
+            view.slots.add(slot, probe(view.order, user, slot));
+        }
+    }
+
+    /**
+     * Drops all views, they are built again on request.
+     * */
+    public void clear()
+    {
+        views.clear();
+    }
+
+    private SortedSlots.Probe probe(SortOrder order, User user, int slot)
+    {
+        return stored -> {
+            int result = order.compare(user, users.apply(stored));
+            return result != 0 ? result : Integer.compare(slot, stored);
+        };
+    }
+
+    private static final class View
+    {
+        private final SortOrder order;
+        private final SortedSlots slots;
+
+        /*set by readers holding the read lock only*/
+        private volatile long lastUsed;
+
+        private View(SortOrder order, SortedSlots slots)
+        {
+            this.order = order;
+            this.slots = slots;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.techeart.restapi.repository;
+
+public enum WriteResult
+{
+    OK,
+
+    /**
+     * No user found on given id.
+     * */
+    NOT_FOUND,
+
+    /**
+     * Email address is already used by another user.
+     * */
+    EMAIL_TAKEN
+}
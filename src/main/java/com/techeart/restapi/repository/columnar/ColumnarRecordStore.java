@@ -0,0 +1,282 @@
+package com.techeart.restapi.repository.columnar;
+
+import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.repository.PhoneNumbers;
+import com.techeart.restapi.repository.record.RecordStore;
+import com.techeart.restapi.repository.record.RegionBuffer;
+import com.techeart.restapi.repository.record.TextDictionary;
+import com.techeart.restapi.repository.record.TextStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Records kept column by column in direct (off-heap) memory.
+ * <p>
+ * Every field has its own column indexed by slot: ids as two longs, birth dates as int epoch days,
+ * phone numbers packed into longs. Names and addresses, which repeat heavily, are int codes
+ * of a {@link TextDictionary}; emails (unique) are long references (offset and length) into
+ * the same UTF-8 text store. Text replaced or deleted is freed in the store and its bytes are
+ * reused by later text. A record takes 57 bytes plus its unique text, none of which is seen
+ * by the garbage collector.
+ * */
+final class ColumnarRecordStore implements RecordStore
+{
+    /*1 MiB regions of the columns, 8 MiB regions of the text*/
+    private static final int COLUMN_REGION_SHIFT = 20;
+    private static final int TEXT_REGION_SHIFT = 23;
+
+    private static final byte STATE_FREE = 0;
+    private static final byte STATE_LIVE = 1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    /*text references are [offset: 40 bits][length: 24 bits], the length is bounded by the text region size*/
+    private static final int LENGTH_BITS = 24;
+    private static final long NULL_TEXT = -1;
+
+    private final RegionBuffer states = RegionBuffer.direct(COLUMN_REGION_SHIFT);
+    private final RegionBuffer idMsbs = RegionBuffer.direct(COLUMN_REGION_SHIFT);
+    private final RegionBuffer idLsbs = RegionBuffer.direct(COLUMN_REGION_SHIFT);
+    private final RegionBuffer birthDays = RegionBuffer.direct(COLUMN_REGION_SHIFT);
+    private final RegionBuffer phones = RegionBuffer.direct(COLUMN_REGION_SHIFT);
+    private final RegionBuffer emails = RegionBuffer.direct(COLUMN_REGION_SHIFT);
+    private final RegionBuffer firstNames = RegionBuffer.direct(COLUMN_REGION_SHIFT);
+    private final RegionBuffer lastNames = RegionBuffer.direct(COLUMN_REGION_SHIFT);
+    private final RegionBuffer addresses = RegionBuffer.direct(COLUMN_REGION_SHIFT);
+    private final RegionBuffer phoneTexts = RegionBuffer.direct(COLUMN_REGION_SHIFT);
+
+    private final RegionBuffer[] longColumns = { idMsbs, idLsbs, phones, emails, phoneTexts };
+    private final RegionBuffer[] intColumns = { birthDays, firstNames, lastNames, addresses };
+
+    private final RegionBuffer textMemory = RegionBuffer.direct(TEXT_REGION_SHIFT);
+    private final TextStore text = new TextStore(textMemory, 0, 0);
+    private final TextDictionary dictionary = new TextDictionary(text);
+
+    private final RegionBuffer[] allBuffers = { states, idMsbs, idLsbs, birthDays, phones,
+            emails, firstNames, lastNames, addresses, phoneTexts, textMemory };
+
+    private int count;
+    private long version;
+
+    @Override
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @Override
+    public int append(User user)
+    {
+        int slot = count;
+        try
+        {
+            states.ensureCapacity(slot + 1L);
+            for (RegionBuffer column : intColumns)
+                column.ensureCapacity((slot + 1L) * Integer.BYTES);
+            for (RegionBuffer column : longColumns)
+                column.ensureCapacity((slot + 1L) * Long.BYTES);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        write(slot, user, null);
+
+        /*the record becomes visible only once it is complete*/
+        states.putByte(slot, STATE_LIVE);
+        count++;
+
+        return slot;
+    }
+
+    /**
+     * Writes all fields of the record. Text equal to the previous one is not stored again.
+     * */
+    @Override
+    public void write(int slot, User user, User previous)
+    {
+        long position = (long) slot * Long.BYTES;
+        long intPosition = (long) slot * Integer.BYTES;
+        long phone = PhoneNumbers.pack(user.getPhoneNumber());
+
+        idMsbs.putLong(position, user.getId().getMostSignificantBits());
+        idLsbs.putLong(position, user.getId().getLeastSignificantBits());
+        birthDays.putInt(intPosition, user.getBirthDate() == null ? NO_DATE : (int) user.getBirthDate().toEpochDay());
+        phones.putLong(position, phone);
+
+        writeCode(firstNames, intPosition, user.getFirstName(), previous);
+        writeCode(lastNames, intPosition, user.getLastName(), previous);
+        writeCode(addresses, intPosition, user.getAddress(), previous);
+
+        writeText(emails, position, user.getEmail(), previous == null ? null : previous.getEmail());
+        writeText(phoneTexts, position, phone == PhoneNumbers.NOT_PACKABLE ? user.getPhoneNumber() : null,
+                previous == null ? null : previous.getPhoneNumber());
+    }
+
+    @Override
+    public void free(int slot)
+    {
+        states.putByte(slot, STATE_FREE);
+
+        long position = (long) slot * Long.BYTES;
+        long intPosition = (long) slot * Integer.BYTES;
+        dictionary.release(firstNames.getInt(intPosition));
+        dictionary.release(lastNames.getInt(intPosition));
+        dictionary.release(addresses.getInt(intPosition));
+        freeText(emails, position);
+        freeText(phoneTexts, position);
+    }
+
+    /**
+     * Moves the live records to the lowest slots, in slot order. Their text stays where it is.
+     * */
+    @Override
+    public int compact()
+    {
+        int live = 0;
+        for (int slot = 0; slot < count; slot++)
+        {
+            if (!isLive(slot))
+                continue;
+
+            if (slot != live)
+            {
+                for (RegionBuffer column : intColumns)
+                    column.putInt((long) live * Integer.BYTES, column.getInt((long) slot * Integer.BYTES));
+                for (RegionBuffer column : longColumns)
+                    column.putLong((long) live * Long.BYTES, column.getLong((long) slot * Long.BYTES));
+
+                states.putByte(live, STATE_LIVE);
+                states.putByte(slot, STATE_FREE);
+            }
+            live++;
+        }
+
+        count = live;
+        return count;
+    }
+
+    @Override
+    public boolean isLive(int slot)
+    {
+        return slot >= 0 && slot < count && states.getByte(slot) == STATE_LIVE;
+    }
+
+    @Override
+    public User read(int slot)
+    {
+        if (!isLive(slot))
+            return null;
+
+        long position = (long) slot * Long.BYTES;
+        long intPosition = (long) slot * Integer.BYTES;
+        int birthDay = birthDays.getInt(intPosition);
+        long phone = phones.getLong(position);
+
+        return new User(new UUID(idMsbs.getLong(position), idLsbs.getLong(position)),
+                readText(emails, position),
+                dictionary.get(firstNames.getInt(intPosition)),
+                dictionary.get(lastNames.getInt(intPosition)),
+                birthDay == NO_DATE ? null : LocalDate.ofEpochDay(birthDay),
+                dictionary.get(addresses.getInt(intPosition)),
+                phone == PhoneNumbers.NOT_PACKABLE ? readText(phoneTexts, position) : PhoneNumbers.unpack(phone));
+    }
+
+    @Override
+    public void reset(long version)
+    {
+        count = 0;
+        text.clear();
+        dictionary.clear();
+        this.version = version;
+    }
+
+    /**
+     * Releases the memory of all columns.
+     * */
+    @Override
+    public void close() throws IOException
+    {
+        for (RegionBuffer buffer : allBuffers)
+            buffer.close();
+    }
+
+    /**
+     * Off-heap bytes allocated by all columns and the text.
+     * */
+    long allocatedBytes()
+    {
+        long total = 0;
+        for (RegionBuffer buffer : allBuffers)
+            total += buffer.capacity();
+
+        return total;
+    }
+
+    /**
+     * Stores the dictionary code of the text, releasing the code it replaces.
+     * */
+    private void writeCode(RegionBuffer column, long position, String value, User previous)
+    {
+        int code = dictionary.acquire(value);
+
+        /*a new record has no previous code, whatever the memory contains*/
+        if (previous != null)
+            dictionary.release(column.getInt(position));
+
+        column.putInt(position, code);
+    }
+
+    /**
+     * Stores the text, freeing the text it replaces. A new record has no previous text,
+     * whatever the memory contains, and neither has a record whose previous value was null.
+     * */
+    private void writeText(RegionBuffer column, long position, String value, String previous)
+    {
+        /*unchanged text keeps its bytes, so partial updates do not touch the text store*/
+        if (value != null && value.equals(previous) && column.getLong(position) != NULL_TEXT)
+            return;
+
+        if (previous != null)
+            freeText(column, position);
+
+        if (value == null)
+        {
+            column.putLong(position, NULL_TEXT);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long offset = text.write(bytes);
+        column.putLong(position, offset << LENGTH_BITS | bytes.length);
+    }
+
+    private void freeText(RegionBuffer column, long position)
+    {
+        long reference = column.getLong(position);
+        if (reference != NULL_TEXT)
+            text.free(reference >>> LENGTH_BITS, (int) (reference & ((1 << LENGTH_BITS) - 1)));
+    }
+
+    private String readText(RegionBuffer column, long position)
+    {
+        long reference = column.getLong(position);
+        if (reference == NULL_TEXT)
+            return null;
+
+        return text.read(reference >>> LENGTH_BITS, (int) (reference & ((1 << LENGTH_BITS) - 1)));
+    }
+}
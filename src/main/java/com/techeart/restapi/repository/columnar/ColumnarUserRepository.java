@@ -0,0 +1,41 @@
+package com.techeart.restapi.repository.columnar;
+
+import com.techeart.restapi.repository.record.RecordUserRepository;
+
+/**
+ * Storage engine keeping users column by column in off-heap memory.
+ * <p>
+ * See {@link ColumnarRecordStore} for the layout. Nothing is persisted, like with the default engine,
+ * but the users take a fraction of its memory and do not add to garbage collection work.
+ * */
+public class ColumnarUserRepository extends RecordUserRepository
+{
+    private final ColumnarRecordStore store;
+
+    public ColumnarUserRepository()
+    {
+        this(true);
+    }
+
+    /**
+     * @param substringIndexes whether to index emails and addresses for substring searches
+     * */
+    public ColumnarUserRepository(boolean substringIndexes)
+    {
+        this(new ColumnarRecordStore(), substringIndexes);
+    }
+
+    private ColumnarUserRepository(ColumnarRecordStore store, boolean substringIndexes)
+    {
+        super(store, substringIndexes);
+        this.store = store;
+    }
+
+    /**
+     * Off-heap bytes allocated for the users.
+     * */
+    public long allocatedBytes()
+    {
+        return store.allocatedBytes();
+    }
+}
@@ -0,0 +1,347 @@
+package com.techeart.restapi.repository.durable;
+
+import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.repository.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * Makes another storage engine durable with a write-ahead log and periodic snapshots.
+ * <p>
+ * Every write of the engine is appended to the log by the writing thread, in version order,
+ * from the engine's commit hook: before the engine applies the change and before readers or
+ * listeners can see it. A change that fails to be logged is not applied, and after such
+ * a failure the log rejects all writes until the repository is reopened. The log is forced
+ * to the disk after a batch of records and periodically by a background thread.
+ * <p>
+ * After every 'snapshotInterval' writes the log is rotated and the snapshot of that
+ * version is written in the background, after which the older snapshots and log segments
+ * are deleted. On startup the latest snapshot is loaded and only the log records
+ * newer than it are replayed. Snapshots are streamed user by user both ways, so neither
+ * writing nor loading one holds a copy of all users.
+ * */
+public class DurableUserRepository implements UserRepository, AutoCloseable
+{
+    private static final Logger log = LoggerFactory.getLogger(DurableUserRepository.class);
+
+    private final UserRepository delegate;
+    private final Path directory;
+    private final int snapshotInterval;
+
+    private final WriteAheadLog writeAheadLog;
+
+    /**
+     * Number of writes since the last snapshot. Changed only by commit hook calls, which are serialized.
+     * */
+    private int changesSinceSnapshot;
+
+    private volatile UserChangeListener commitHook = change -> { };
+
+    private final ScheduledExecutorService syncer;
+    private final ExecutorService snapshotWriter;
+
+    /**
+     * @param delegate empty engine the stored data is loaded into
+     * @param fsyncBatch number of records after which the log is forced to the disk, 1 to force on every write
+     * @param fsyncIntervalMs period of forcing the log to the disk, 0 to disable
+     * @param snapshotInterval number of writes between snapshots, 0 to disable
+     * */
+    public DurableUserRepository(UserRepository delegate, Path directory,
+                                 int fsyncBatch, long fsyncIntervalMs, int snapshotInterval) throws IOException
+    {
+        this(delegate, directory, firstVersion -> new WriteAheadLog(directory, firstVersion, fsyncBatch),
+                fsyncIntervalMs, snapshotInterval);
+    }
+
+    DurableUserRepository(UserRepository delegate, Path directory, LogOpener logOpener,
+                          long fsyncIntervalMs, int snapshotInterval) throws IOException
+    {
+        this.delegate = delegate;
+        this.directory = directory;
+        this.snapshotInterval = snapshotInterval;
+
+        Files.createDirectories(directory);
+        recover();
+
+        writeAheadLog = logOpener.open(delegate.version() + 1);
+        delegate.setCommitHook(this::logChange);
+
+        syncer = Executors.newSingleThreadScheduledExecutor(daemon("users-log-sync"));
+        if (fsyncIntervalMs > 0)
+            syncer.scheduleWithFixedDelay(this::syncLog, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+
+        snapshotWriter = Executors.newSingleThreadExecutor(daemon("users-snapshot-writer"));
+    }
+
+    @Override
+    public Optional<User> findById(UUID id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public List<User> findAllById(List<UUID> ids) {
+        return delegate.findAllById(ids);
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return delegate.findByEmail(email);
+    }
+
+    @Override
+    public List<User> findByBirthDateBetween(long fromEpochDay, long toEpochDay) {
+        return delegate.findByBirthDateBetween(fromEpochDay, toEpochDay);
+    }
+
+    @Override
+    public UserSearchResult search(UserQuery query, int limit) {
+        return delegate.search(query, limit);
+    }
+
+    @Override
+    public List<User> findByNamePrefix(String prefix, int limit) {
+        return delegate.findByNamePrefix(prefix, limit);
+    }
+
+    @Override
+    public UserPage findPage(int offset, int limit) {
+        return delegate.findPage(offset, limit);
+    }
+
+    @Override
+    public UserPage findPageAfter(long key, int limit) {
+        return delegate.findPageAfter(key, limit);
+    }
+
+    @Override
+    public UserPage findPageBefore(long key, int limit) {
+        return delegate.findPageBefore(key, limit);
+    }
+
+    @Override
+    public UserPage findSortedPage(SortOrder order, int offset, int limit) {
+        return delegate.findSortedPage(order, offset, limit);
+    }
+
+    @Override
+    public WriteResult insert(User user) {
+        return delegate.insert(user);
+    }
+
+    @Override
+    public List<WriteResult> insertAll(List<User> users) {
+        return delegate.insertAll(users);
+    }
+
+    @Override
+    public WriteResult replace(User user) {
+        return delegate.replace(user);
+    }
+
+    @Override
+    public WriteResult replace(UUID id, UnaryOperator<User> change) {
+        return delegate.replace(id, change);
+    }
+
+    @Override
+    public List<WriteResult> replaceAll(Map<UUID, UnaryOperator<User>> changes) {
+        return delegate.replaceAll(changes);
+    }
+
+    @Override
+    public WriteResult delete(UUID id) {
+        return delegate.delete(id);
+    }
+
+    @Override
+    public List<WriteResult> deleteAll(Collection<UUID> ids) {
+        return delegate.deleteAll(ids);
+    }
+
+    @Override
+    public long version() {
+        return delegate.version();
+    }
+
+    @Override
+    public UserSnapshot snapshot() {
+        return delegate.snapshot();
+    }
+
+    /**
+     * Not supported: the data of a durable repository is restored only from its own files.
+     * */
+    @Override
+    public void restore(long version, Iterable<User> users)
+    {
+        throw new UnsupportedOperationException("Durable repository is restored from its storage directory.");
+    }
+
+    @Override
+    public void addChangeListener(UserChangeListener listener) {
+        delegate.addChangeListener(listener);
+    }
+
+    /**
+     * The hook is called before the change is logged, so a change it cancels is not logged either.
+     * */
+    @Override
+    public void setCommitHook(UserChangeListener hook) {
+        commitHook = hook;
+    }
+
+    /**
+     * Writes the snapshot of the current version right away.
+     * */
+    public void writeSnapshot() throws IOException
+    {
+        writeSnapshot(delegate.snapshot());
+    }
+
+    /**
+     * Waits for the pending snapshot, then forces the log to the disk and closes it.
+     * */
+    @Override
+    public void close() throws IOException
+    {
+        syncer.shutdownNow();
+        snapshotWriter.shutdown();
+        try
+        {
+            snapshotWriter.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        writeAheadLog.close();
+    }
+
+    private void recover() throws IOException
+    {
+        SnapshotStore.Loaded snapshot = SnapshotStore.loadLatest(directory);
+        if (snapshot != null)
+            delegate.restore(snapshot.version(), snapshot.users());
+
+        long restored = delegate.version();
+        long replayed = WriteAheadLog.replay(directory, restored, this::apply);
+
+        log.info("Loaded users of version {} from the snapshot and {} changes from the log", restored, replayed - restored);
+    }
+
+    private void apply(UserChange change)
+    {
+        WriteResult result = switch (change.type())
+        {
+            case CREATE -> delegate.insert(change.user());
+            case UPDATE -> delegate.replace(change.user());
+            case DELETE -> delegate.delete(change.id());
+        };
+
+        if (result != WriteResult.OK || delegate.version() != change.version())
+            throw new IllegalStateException("Logged change of version " + change.version() + " can not be applied: " + result);
+    }
+
+    /**
+     * Commit hook of the delegate, called under its write lock before the change is applied.
+     * Throwing cancels the change.
+     * */
+    private void logChange(UserChange change)
+    {
+        commitHook.onChange(change);
+
+        try
+        {
+            if (snapshotInterval > 0 && changesSinceSnapshot >= snapshotInterval)
+            {
+                /*
+                 * the new segment starts with this change, so the previous ones can be deleted once
+                 * a snapshot of the version before it or any later one is written. The snapshot is taken
+                 * by the writer thread: the delegate may need its read lock for it, while the write lock is held here
+                 * */
+                writeAheadLog.rotate(change.version());
+                changesSinceSnapshot = 0;
+
+                long previous = change.version() - 1;
+                snapshotWriter.execute(() -> {
+                    try
+                    {
+                        writeSnapshot(delegate.snapshot());
+                    }
+                    catch (IOException e)
+                    {
+                        log.error("Failed to write the snapshot following version " + previous, e);
+                    }
+                });
+            }
+
+            writeAheadLog.append(change);
+            changesSinceSnapshot++;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to log the change of version " + change.version(), e);
+        }
+    }
+
+    /**
+     * Streams the snapshot of the engine to a file, closing it even if the write fails.
+     * */
+    private synchronized void writeSnapshot(UserSnapshot snapshot) throws IOException
+    {
+        try (snapshot)
+        {
+            SnapshotStore.write(directory, snapshot);
+        }
+
+        SnapshotStore.deleteOlderThan(directory, snapshot.version());
+        WriteAheadLog.deleteSegmentsUpTo(directory, snapshot.version());
+    }
+
+    private void syncLog()
+    {
+        try
+        {
+            writeAheadLog.sync();
+        }
+        catch (IOException e)
+        {
+            log.error("Failed to force the log to the disk", e);
+        }
+    }
+
+    /**
+     * Opens the log segment starting with the given version.
+     * */
+    @FunctionalInterface
+    interface LogOpener
+    {
+        WriteAheadLog open(long firstVersion) throws IOException;
+    }
+
+    private static ThreadFactory daemon(String name)
+    {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,254 @@
+package com.techeart.restapi.repository.durable;
+
+import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.repository.UserSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshot files of the repository, one per snapshotted version.
+ * <p>
+ * A file is [magic][format][version][user count][users...][CRC32 of everything before it].
+ * Files are written under a temporary name and renamed when complete, so a crash
+ * while writing never damages the previous snapshot.
+ * <p>
+ * Users are streamed both ways: written one by one as the snapshot of the engine yields them,
+ * and loaded one by one from a file whose checksum was verified by a first pass.
+ * */
+final class SnapshotStore
+{
+    private static final Logger log = LoggerFactory.getLogger(SnapshotStore.class);
+
+    private static final int MAGIC = 0x55534E50;
+    private static final int FORMAT = 1;
+
+    private static final String FILE_PREFIX = "snapshot-";
+    private static final String FILE_SUFFIX = ".bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private SnapshotStore() { }
+
+    static void write(Path directory, UserSnapshot snapshot) throws IOException
+    {
+        Path target = directory.resolve(fileName(snapshot.version()));
+        Path temp = directory.resolve(fileName(snapshot.version()) + TEMP_SUFFIX);
+
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            BufferedOutputStream buffered = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            CheckedOutputStream checked = new CheckedOutputStream(buffered, new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeLong(snapshot.version());
+            out.writeInt(snapshot.size());
+            int written = 0;
+            for (User user : snapshot)
+            {
+                UserCodec.write(out, user);
+                written++;
+            }
+
+            if (written != snapshot.size())
+                throw new IOException("Snapshot of version " + snapshot.version() + " has " + snapshot.size()
+                        + " users, but " + written + " were read");
+
+            new DataOutputStream(buffered).writeInt((int) checked.getChecksum().getValue());
+            buffered.flush();
+            channel.force(true);
+        }
+
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(directory);
+    }
+
+    /**
+     * Finds the newest readable snapshot, skipping damaged ones. Returns null if there is none.
+     * */
+    static Loaded loadLatest(Path directory) throws IOException
+    {
+        List<Path> files = listFiles(directory);
+        files.sort(Comparator.comparing(Path::getFileName).reversed());
+
+        for (Path file : files)
+        {
+            try
+            {
+                return verify(file);
+            }
+            catch (IOException e)
+            {
+                log.warn("Skipping unreadable snapshot {}: {}", file, e.getMessage());
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Deletes the snapshots older than the given version and unfinished temporary files.
+     * */
+    static void deleteOlderThan(Path directory, long version) throws IOException
+    {
+        String newest = fileName(version);
+
+        try (Stream<Path> files = Files.list(directory))
+        {
+            for (Path file : (Iterable<Path>) files::iterator)
+            {
+                String name = file.getFileName().toString();
+                boolean old = name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX) && name.compareTo(newest) < 0;
+                boolean unfinished = name.startsWith(FILE_PREFIX) && name.endsWith(TEMP_SUFFIX);
+
+                if (old || unfinished)
+                    Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Decodes the whole file without keeping the users, checking its checksum.
+     * */
+    private static Loaded verify(Path file) throws IOException
+    {
+        try (InputStream buffered = new BufferedInputStream(Files.newInputStream(file), 1 << 16))
+        {
+            CheckedInputStream checked = new CheckedInputStream(buffered, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+
+            long version = readHeader(in);
+            int count = in.readInt();
+            for (int i = 0; i < count; i++)
+                UserCodec.read(in);
+
+            int expected = (int) checked.getChecksum().getValue();
+            if (new DataInputStream(buffered).readInt() != expected)
+                throw new IOException("Checksum mismatch");
+
+            return new Loaded(version, file);
+        }
+    }
+
+    private static long readHeader(DataInputStream in) throws IOException
+    {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT)
+            throw new IOException("Unknown file format");
+
+        return in.readLong();
+    }
+
+    private static List<Path> listFiles(Path directory) throws IOException
+    {
+        try (Stream<Path> files = Files.list(directory))
+        {
+            return new ArrayList<>(files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+            }).toList());
+        }
+    }
+
+    private static String fileName(long version)
+    {
+        /*zero padded, so snapshots are also ordered by name*/
+        return String.format("%s%020d%s", FILE_PREFIX, version, FILE_SUFFIX);
+    }
+
+    /**
+     * Makes the rename itself durable. Not every platform can open a directory, which is not an error.
+     * */
+    private static void syncDirectory(Path directory)
+    {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ))
+        {
+            channel.force(true);
+        }
+        catch (IOException e)
+        {
+            /*the rename is still atomic, only its durability is left to the file system*/
+        }
+    }
+
+    /**
+     * A verified snapshot file.
+     * */
+    record Loaded(long version, Path file)
+    {
+        /**
+         * Reads the users of the file one by one, the file is open until the last one is read.
+         * */
+        Iterable<User> users()
+        {
+            return () -> {
+                try
+                {
+                    DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+                    readHeader(in);
+                    return new UserIterator(in, in.readInt());
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException("Failed to read the snapshot " + file, e);
+                }
+            };
+        }
+    }
+
+    private static final class UserIterator implements Iterator<User>
+    {
+        private final DataInputStream in;
+        private int remaining;
+
+        private UserIterator(DataInputStream in, int count) throws IOException
+        {
+            this.in = in;
+            this.remaining = count;
+            if (remaining == 0)
+                in.close();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public User next()
+        {
+            if (remaining == 0)
+                throw new NoSuchElementException();
+
+            try
+            {
+                User user = UserCodec.read(in);
+                if (--remaining == 0)
+                    in.close();
+
+                return user;
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Failed to read a verified snapshot", e);
+            }
+        }
+    }
+}
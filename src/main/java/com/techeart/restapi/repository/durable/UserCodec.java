@@ -0,0 +1,90 @@
+package com.techeart.restapi.repository.durable;
+
+import com.techeart.restapi.api.model.User;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Binary form of a user shared by the log and snapshot files.
+ * <p>
+ * Strings are stored as UTF-8 bytes prefixed with their length (-1 for null),
+ * the birth date as an epoch day preceded by a presence flag. Users are read from a record buffer
+ * or a file, which know their remaining size, so a corrupted length is rejected before its bytes are allocated.
+ * */
+public final class UserCodec
+{
+    private static final int NULL_LENGTH = -1;
+
+    private UserCodec() { }
+
+    public static void write(DataOutput out, User user) throws IOException
+    {
+        writeId(out, user.getId());
+        writeString(out, user.getEmail());
+        writeString(out, user.getFirstName());
+        writeString(out, user.getLastName());
+
+        out.writeBoolean(user.getBirthDate() != null);
+        if (user.getBirthDate() != null)
+            out.writeLong(user.getBirthDate().toEpochDay());
+
+        writeString(out, user.getAddress());
+        writeString(out, user.getPhoneNumber());
+    }
+
+    public static User read(DataInputStream in) throws IOException
+    {
+        UUID id = readId(in);
+        String email = readString(in);
+        String firstName = readString(in);
+        String lastName = readString(in);
+        LocalDate birthDate = in.readBoolean() ? LocalDate.ofEpochDay(in.readLong()) : null;
+        String address = readString(in);
+        String phoneNumber = readString(in);
+
+        return new User(id, email, firstName, lastName, birthDate, address, phoneNumber);
+    }
+
+    public static void writeId(DataOutput out, UUID id) throws IOException
+    {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    public static UUID readId(DataInput in) throws IOException
+    {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException
+    {
+        if (value == null)
+        {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        if (length == NULL_LENGTH)
+            return null;
+        if (length < 0 || length > in.available())
+            throw new IOException("Corrupted string length: " + length);
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
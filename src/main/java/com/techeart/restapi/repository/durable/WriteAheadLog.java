@@ -0,0 +1,291 @@
+package com.techeart.restapi.repository.durable;
+
+import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.repository.UserChange;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of repository changes, split into segment files.
+ * <p>
+ * Each segment is named after the version of its first record. A record is
+ * [payload length][CRC32 of payload][payload], the payload being the change type,
+ * its version and the user (or only the id for deletions).
+ * <p>
+ * Records are buffered and forced to the disk after every 'fsyncBatch' records
+ * or by an explicit {@link #sync()}, so at most the unsynced records are lost on a crash.
+ * A record torn by a crash fails its checksum and ends the replay of its segment.
+ * <p>
+ * A failed write leaves the segment in an unknown state, so after the first failure
+ * every following call fails as well.
+ * */
+class WriteAheadLog implements Closeable
+{
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final int MAX_RECORD_SIZE = 64 << 20;
+
+    private final Path directory;
+    private final int fsyncBatch;
+
+    private FileChannel channel;
+    private DataOutputStream out;
+
+    /**
+     * Number of records written since the last fsync.
+     * */
+    private int unsynced;
+
+    private final RecordBuffer record = new RecordBuffer();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * First failure of a write to the segment, null while there was none.
+     * */
+    private IOException failure;
+
+    /**
+     * Starts a new segment beginning with the record of the given version.
+     * */
+    WriteAheadLog(Path directory, long firstVersion, int fsyncBatch) throws IOException
+    {
+        this.directory = directory;
+        this.fsyncBatch = Math.max(fsyncBatch, 1);
+        openSegment(firstVersion);
+    }
+
+    synchronized void append(UserChange change) throws IOException
+    {
+        checkNotFailed();
+        try
+        {
+            write(change);
+        }
+        catch (IOException e)
+        {
+            throw fail(e);
+        }
+    }
+
+    private void write(UserChange change) throws IOException
+    {
+        record.reset();
+        recordOut.writeByte(change.type().ordinal());
+        recordOut.writeLong(change.version());
+        if (change.type() == UserChange.Type.DELETE)
+            UserCodec.writeId(recordOut, change.id());
+        else
+            UserCodec.write(recordOut, change.user());
+
+        crc.reset();
+        crc.update(record.buffer(), 0, record.size());
+
+        out.writeInt(record.size());
+        out.writeInt((int) crc.getValue());
+        out.write(record.buffer(), 0, record.size());
+
+        if (++unsynced >= fsyncBatch)
+            force();
+    }
+
+    /**
+     * Forces all appended records to the disk.
+     * */
+    synchronized void sync() throws IOException
+    {
+        checkNotFailed();
+        try
+        {
+            force();
+        }
+        catch (IOException e)
+        {
+            throw fail(e);
+        }
+    }
+
+    /**
+     * Syncs and closes the current segment and starts a new one.
+     * */
+    synchronized void rotate(long firstVersion) throws IOException
+    {
+        checkNotFailed();
+        try
+        {
+            force();
+            out.close();
+            openSegment(firstVersion);
+        }
+        catch (IOException e)
+        {
+            throw fail(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (failure == null)
+            force();
+        out.close();
+    }
+
+    /**
+     * Passes all logged changes newer than 'afterVersion' to the action, in version order.
+     * <p>
+     * Returns the version of the last applied change ('afterVersion' if there was none).
+     * */
+    static long replay(Path directory, long afterVersion, Consumer<UserChange> action) throws IOException
+    {
+        long last = afterVersion;
+
+        for (Segment segment : listSegments(directory))
+        {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.path()), 1 << 16)))
+            {
+                UserChange change;
+                while ((change = readRecord(in)) != null)
+                {
+                    if (change.version() <= last)
+                        continue;
+                    if (change.version() != last + 1)
+                        throw new IOException("Log has no records between versions " + last + " and " + change.version());
+
+                    action.accept(change);
+                    last = change.version();
+                }
+            }
+        }
+
+        return last;
+    }
+
+    /**
+     * Deletes the segments containing only changes up to the given version.
+     * */
+    static void deleteSegmentsUpTo(Path directory, long version) throws IOException
+    {
+        List<Segment> segments = listSegments(directory);
+
+        /*a segment ends right before the first record of the next one*/
+        for (int i = 0; i + 1 < segments.size() && segments.get(i + 1).firstVersion() <= version + 1; i++)
+            Files.deleteIfExists(segments.get(i).path());
+    }
+
+    /**
+     * Returns null at the end of the segment or at a torn record.
+     * */
+    private static UserChange readRecord(DataInputStream in) throws IOException
+    {
+        try
+        {
+            int size = in.readInt();
+            int checksum = in.readInt();
+            if (size <= 0 || size > MAX_RECORD_SIZE)
+                return null;
+
+            byte[] payload = new byte[size];
+            in.readFully(payload);
+
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum)
+                return null;
+
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+            UserChange.Type type = UserChange.Type.values()[data.readByte()];
+            long version = data.readLong();
+
+            if (type == UserChange.Type.DELETE)
+                return new UserChange(version, type, UserCodec.readId(data), null);
+
+            User user = UserCodec.read(data);
+            return new UserChange(version, type, user.getId(), user);
+        }
+        catch (EOFException e)
+        {
+            return null;
+        }
+    }
+
+    private static List<Segment> listSegments(Path directory) throws IOException
+    {
+        List<Segment> segments = new ArrayList<>();
+
+        try (Stream<Path> files = Files.list(directory))
+        {
+            files.forEach(path -> {
+                String name = path.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                {
+                    String version = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+                    segments.add(new Segment(Long.parseLong(version), path));
+                }
+            });
+        }
+
+        segments.sort((a, b) -> Long.compare(a.firstVersion(), b.firstVersion()));
+        return segments;
+    }
+
+    private void force() throws IOException
+    {
+        if (unsynced == 0)
+            return;
+
+        out.flush();
+        channel.force(false);
+        unsynced = 0;
+    }
+
+    private void checkNotFailed() throws IOException
+    {
+        if (failure != null)
+            throw new IOException("Log is not writable after an earlier failure", failure);
+    }
+
+    private IOException fail(IOException e)
+    {
+        failure = e;
+        return e;
+    }
+
+    private void openSegment(long firstVersion) throws IOException
+    {
+        /*zero padded, so segments are also ordered by name*/
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstVersion, SEGMENT_SUFFIX));
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+        unsynced = 0;
+    }
+
+    private record Segment(long firstVersion, Path path) { }
+
+    /**
+     * Exposes its array, so records are checksummed and written without copying.
+     * */
+    private static final class RecordBuffer extends ByteArrayOutputStream
+    {
+        private RecordBuffer()
+        {
+            super(256);
+        }
+
+        private byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.techeart.restapi.repository.mapped;
+
+import com.techeart.restapi.repository.record.RegionBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File mapped into memory region by region.
+ * */
+final class MappedFile extends RegionBuffer
+{
+    private final FileChannel channel;
+
+    MappedFile(Path path, int regionShift) throws IOException
+    {
+        super(regionShift);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        /*mapping the whole existing file, at least one region*/
+        ensureCapacity(Math.max(channel.size(), 1));
+    }
+
+    @Override
+    protected ByteBuffer allocate(int region) throws IOException
+    {
+        /*mapping past the end of the file extends it*/
+        return channel.map(FileChannel.MapMode.READ_WRITE, region * regionSize(), regionSize());
+    }
+
+    @Override
+    public void force()
+    {
+        for (ByteBuffer region : regions())
+            ((MappedByteBuffer) region).force();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        force();
+        super.close();
+        channel.close();
+    }
+}
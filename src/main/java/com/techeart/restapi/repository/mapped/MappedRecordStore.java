@@ -0,0 +1,317 @@
+package com.techeart.restapi.repository.mapped;
+
+import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.repository.PhoneNumbers;
+import com.techeart.restapi.repository.record.RecordStore;
+import com.techeart.restapi.repository.record.TextStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Records kept in memory-mapped files.
+ * <p>
+ * Users are fixed-width records addressed by slot in 'users.dat': id, birth date and
+ * phone number are stored in place, the other text fields as references into 'strings.dat'.
+ * <p>
+ * Text of replaced and deleted records is freed and reused by later text. The free lists
+ * live only in memory: on opening, they are rebuilt from the references of the live records.
+ * Deleted records are removed by {@link #compact()}, which the engine runs on opening and
+ * once they outnumber the live ones. Like every write to the files, compaction is not atomic:
+ * a crash in its middle may leave a record in two slots.
+ * */
+final class MappedRecordStore implements RecordStore
+{
+    static final String RECORDS_FILE = "users.dat";
+    static final String STRINGS_FILE = "strings.dat";
+
+    /*text is aligned to 8 bytes, so that freed text can hold the link of its free list*/
+    private static final int FORMAT = 1;
+    private static final int RECORDS_MAGIC = 0x55524543;
+    private static final int STRINGS_MAGIC = 0x55535452;
+
+    /*64 MiB regions, both files align their data so that nothing crosses a region*/
+    private static final int REGION_SHIFT = 26;
+
+    /*the header takes the place of one record, so records stay aligned to their size*/
+    private static final int RECORD_SIZE = 128;
+    private static final int HEADER_SIZE = RECORD_SIZE;
+
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_FORMAT = 4;
+    private static final int HEADER_VERSION = 8;
+    private static final int HEADER_COUNT = 16;
+
+    /*the strings file has the same header, with the end of the stored text in place of the version*/
+    private static final int HEADER_STRINGS_END = 8;
+
+    /*record layout, string references are [offset: long][length: int]*/
+    private static final int STATE = 0;
+    private static final int ID_MSB = 8;
+    private static final int ID_LSB = 16;
+    private static final int BIRTH_DATE = 24;
+    private static final int PHONE = 32;
+    private static final int EMAIL = 40;
+    private static final int FIRST_NAME = 52;
+    private static final int LAST_NAME = 64;
+    private static final int ADDRESS = 76;
+    private static final int PHONE_TEXT = 88;
+    private static final int[] STRING_REFERENCES = { EMAIL, FIRST_NAME, LAST_NAME, ADDRESS, PHONE_TEXT };
+
+    private static final int STATE_FREE = 0;
+    private static final int STATE_LIVE = 1;
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final int NULL_LENGTH = -1;
+
+    private final MappedFile records;
+    private final MappedFile strings;
+    private final TextStore text;
+
+    private int count;
+
+    /**
+     * Opens the files in the directory, creating them if they do not exist.
+     * */
+    MappedRecordStore(Path directory) throws IOException
+    {
+        Files.createDirectories(directory);
+        records = new MappedFile(directory.resolve(RECORDS_FILE), REGION_SHIFT);
+        strings = new MappedFile(directory.resolve(STRINGS_FILE), REGION_SHIFT);
+
+        if (records.getInt(HEADER_MAGIC) == 0)
+        {
+            text = new TextStore(strings, HEADER_SIZE, HEADER_SIZE);
+            reset(0);
+            return;
+        }
+
+        if (records.getInt(HEADER_MAGIC) != RECORDS_MAGIC || records.getInt(HEADER_FORMAT) != FORMAT
+                || strings.getInt(HEADER_MAGIC) != STRINGS_MAGIC || strings.getInt(HEADER_FORMAT) != FORMAT)
+            throw new IOException("Unknown format of the storage files in " + directory);
+
+        count = records.getInt(HEADER_COUNT);
+        text = new TextStore(strings, HEADER_SIZE, strings.getLong(HEADER_STRINGS_END));
+
+        for (int slot = 0; slot < count; slot++)
+        {
+            if (!isLive(slot))
+                continue;
+
+            for (int reference : STRING_REFERENCES)
+            {
+                long position = position(slot) + reference;
+                int length = records.getInt(position + 8);
+                if (length != NULL_LENGTH)
+                    text.mark(records.getLong(position), length);
+            }
+        }
+        text.freeUnmarked();
+    }
+
+    @Override
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public long version() {
+        return records.getLong(HEADER_VERSION);
+    }
+
+    @Override
+    public void setVersion(long version) {
+        records.putLong(HEADER_VERSION, version);
+    }
+
+    @Override
+    public int append(User user)
+    {
+        int slot = count;
+        try
+        {
+            records.ensureCapacity(position(slot + 1));
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        write(slot, user, null);
+
+        /*the record becomes visible only once it is complete*/
+        records.putInt(position(slot) + STATE, STATE_LIVE);
+        records.putInt(HEADER_COUNT, ++count);
+
+        return slot;
+    }
+
+    /**
+     * Writes all fields of the record. Text equal to the previous one is not stored again.
+     * */
+    @Override
+    public void write(int slot, User user, User previous)
+    {
+        long position = position(slot);
+        long phone = PhoneNumbers.pack(user.getPhoneNumber());
+
+        records.putLong(position + ID_MSB, user.getId().getMostSignificantBits());
+        records.putLong(position + ID_LSB, user.getId().getLeastSignificantBits());
+        records.putLong(position + BIRTH_DATE, user.getBirthDate() == null ? NO_DATE : user.getBirthDate().toEpochDay());
+        records.putLong(position + PHONE, phone);
+
+        writeString(position + EMAIL, user.getEmail(), previous == null ? null : previous.getEmail());
+        writeString(position + FIRST_NAME, user.getFirstName(), previous == null ? null : previous.getFirstName());
+        writeString(position + LAST_NAME, user.getLastName(), previous == null ? null : previous.getLastName());
+        writeString(position + ADDRESS, user.getAddress(), previous == null ? null : previous.getAddress());
+        writeString(position + PHONE_TEXT, phone == PhoneNumbers.NOT_PACKABLE ? user.getPhoneNumber() : null,
+                previous == null ? null : previous.getPhoneNumber());
+    }
+
+    @Override
+    public void free(int slot)
+    {
+        records.putInt(position(slot) + STATE, STATE_FREE);
+
+        for (int reference : STRING_REFERENCES)
+            freeString(position(slot) + reference);
+    }
+
+    /**
+     * Moves the live records to the lowest slots, in slot order. Their text stays where it is.
+     * */
+    @Override
+    public int compact()
+    {
+        int live = 0;
+        for (int slot = 0; slot < count; slot++)
+        {
+            if (!isLive(slot))
+                continue;
+
+            if (slot != live)
+            {
+                long from = position(slot);
+                long to = position(live);
+                for (int field = ID_MSB; field < RECORD_SIZE; field += Long.BYTES)
+                    records.putLong(to + field, records.getLong(from + field));
+
+                records.putInt(to + STATE, STATE_LIVE);
+                records.putInt(from + STATE, STATE_FREE);
+            }
+            live++;
+        }
+
+        count = live;
+        records.putInt(HEADER_COUNT, count);
+        return count;
+    }
+
+    @Override
+    public boolean isLive(int slot)
+    {
+        return slot >= 0 && slot < count && records.getInt(position(slot) + STATE) == STATE_LIVE;
+    }
+
+    @Override
+    public User read(int slot)
+    {
+        if (!isLive(slot))
+            return null;
+
+        long position = position(slot);
+        UUID id = new UUID(records.getLong(position + ID_MSB), records.getLong(position + ID_LSB));
+        long birthDate = records.getLong(position + BIRTH_DATE);
+        long phone = records.getLong(position + PHONE);
+
+        return new User(id,
+                readString(position + EMAIL),
+                readString(position + FIRST_NAME),
+                readString(position + LAST_NAME),
+                birthDate == NO_DATE ? null : LocalDate.ofEpochDay(birthDate),
+                readString(position + ADDRESS),
+                phone == PhoneNumbers.NOT_PACKABLE ? readString(position + PHONE_TEXT) : PhoneNumbers.unpack(phone));
+    }
+
+    @Override
+    public void reset(long version)
+    {
+        records.putInt(HEADER_MAGIC, RECORDS_MAGIC);
+        records.putInt(HEADER_FORMAT, FORMAT);
+        records.putInt(HEADER_COUNT, 0);
+        records.putLong(HEADER_VERSION, version);
+        strings.putInt(HEADER_MAGIC, STRINGS_MAGIC);
+        strings.putInt(HEADER_FORMAT, FORMAT);
+        strings.putLong(HEADER_STRINGS_END, HEADER_SIZE);
+
+        count = 0;
+        text.clear();
+    }
+
+    /**
+     * Writes the modified pages to the disk and closes the files.
+     * */
+    @Override
+    public void close() throws IOException
+    {
+        records.close();
+        strings.close();
+    }
+
+    /**
+     * End of the memory taken from the strings file so far.
+     * */
+    long stringsEnd()
+    {
+        return text.end();
+    }
+
+    /**
+     * Stores the text, freeing the text it replaces. A new record has no previous text,
+     * whatever the file contains, and neither has a field whose previous value was null.
+     * */
+    private void writeString(long reference, String value, String previous)
+    {
+        /*unchanged text keeps its bytes, so partial updates do not touch the strings file*/
+        if (value != null && value.equals(previous) && records.getInt(reference + 8) != NULL_LENGTH)
+            return;
+
+        if (previous != null)
+            freeString(reference);
+
+        if (value == null)
+        {
+            records.putInt(reference + 8, NULL_LENGTH);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long offset = text.write(bytes);
+        strings.putLong(HEADER_STRINGS_END, text.end());
+
+        records.putLong(reference, offset);
+        records.putInt(reference + 8, bytes.length);
+    }
+
+    private void freeString(long reference)
+    {
+        int length = records.getInt(reference + 8);
+        if (length != NULL_LENGTH)
+            text.free(records.getLong(reference), length);
+    }
+
+    private String readString(long reference)
+    {
+        int length = records.getInt(reference + 8);
+        return length == NULL_LENGTH ? null : text.read(records.getLong(reference), length);
+    }
+
+    private static long position(int slot)
+    {
+        return HEADER_SIZE + (long) slot * RECORD_SIZE;
+    }
+}
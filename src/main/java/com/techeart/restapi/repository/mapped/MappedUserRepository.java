@@ -0,0 +1,32 @@
+package com.techeart.restapi.repository.mapped;
+
+import com.techeart.restapi.repository.record.RecordUserRepository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Storage engine keeping users in memory-mapped files, so that the table is cached
+ * by the operating system instead of the Java heap.
+ * <p>
+ * See {@link MappedRecordStore} for the file layout. The files survive restarts,
+ * the indexes are rebuilt from them when the engine is created.
+ * */
+public class MappedUserRepository extends RecordUserRepository
+{
+    /**
+     * Opens the files in the directory, creating them if they do not exist.
+     * */
+    public MappedUserRepository(Path directory) throws IOException
+    {
+        this(directory, true);
+    }
+
+    /**
+     * @param substringIndexes whether to index emails and addresses for substring searches
+     * */
+    public MappedUserRepository(Path directory, boolean substringIndexes) throws IOException
+    {
+        super(new MappedRecordStore(directory), substringIndexes);
+    }
+}
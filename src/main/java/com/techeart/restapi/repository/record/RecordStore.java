@@ -0,0 +1,63 @@
+package com.techeart.restapi.repository.record;
+
+import com.techeart.restapi.api.model.User;
+
+import java.io.Closeable;
+
+/**
+ * Users stored as records addressed by slot, outside of the object heap.
+ * <p>
+ * Slots are allocated in increasing order and reused only by {@link #compact()}. Writes are serialized by
+ * {@link RecordUserRepository}, while reads may run concurrently with a write:
+ * a read racing with a write may return an inconsistent user or throw a runtime exception,
+ * but must never block, loop or allocate unbounded memory.
+ * */
+public interface RecordStore extends Closeable
+{
+    /**
+     * Number of slots ever allocated.
+     * */
+    int count();
+
+    /**
+     * Version stored by the last {@link #setVersion(long)}.
+     * */
+    long version();
+
+    void setVersion(long version);
+
+    /**
+     * Stores the user in a new slot and returns the slot. The record is visible to reads only once complete.
+     * */
+    int append(User user);
+
+    /**
+     * Overwrites the live record in the slot.
+     *
+     * @param previous the user currently stored in the slot, lets unchanged fields be kept
+     * */
+    void write(int slot, User user, User previous);
+
+    /**
+     * Makes the slot empty.
+     * */
+    void free(int slot);
+
+    boolean isLive(int slot);
+
+    /**
+     * Returns the user stored in the slot or null if the slot is empty or out of range.
+     * */
+    User read(int slot);
+
+    /**
+     * Moves the live records to the lowest slots, keeping their order, and returns the new count.
+     * All slots known to the caller are invalid afterwards.
+     * */
+    int compact();
+
+    /**
+     * Empties the store and sets the version.
+     * */
+    void reset(long version);
+}
@@ -0,0 +1,997 @@
+package com.techeart.restapi.repository.record;
+
+import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.index.BirthDateIndex;
+import com.techeart.restapi.index.EmailIndex;
+import com.techeart.restapi.index.UserIdIndex;
+import com.techeart.restapi.repository.*;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Storage engine keeping users as records of a {@link RecordStore}, outside of the object heap.
+ * {@link User} objects are created only when users are read.
+ * <p>
+ * Only the indexes live on the heap, as primitive arrays: id to slot, email digest to slot,
+ * birth date to slot, plus the {@link UserSearchIndexes} of email domains and names and the {@link UserSortViews}. They are rebuilt by scanning the records when the engine is created.
+ * Slots are allocated in insertion order, so the slot order is the insertion order. Slots of deleted
+ * users are reclaimed by compacting the store, which keeps that order: when the engine is created,
+ * and once the deleted slots outnumber the live users. Compaction moves users to other slots,
+ * so it indexes all users again; it waits while a streaming snapshot is open.
+ * <p>
+ * Writers are serialized by a lock and modify records in place. Readers run optimistically
+ * and retry under the read lock only if a write happened meanwhile, so a page or a range
+ * is always read from a single version.
+ * */
+public class RecordUserRepository implements UserRepository, AutoCloseable
+{
+    /*live users per chunk of slots, lets pages skip whole chunks*/
+    private static final int CHUNK_SHIFT = 10;
+
+    /*deleted slots needed for a compaction, besides outnumbering the live users*/
+    private static final int MIN_COMPACTED_SLOTS = 1 << 16;
+
+    private final RecordStore store;
+
+    private final UserIdIndex idIndex = new UserIdIndex();
+
+    /**
+     * Unique index: digest of the normalized email address to the slot of its owner.
+     * Keeping 128-bit digests instead of the addresses keeps the index free of objects.
+     * */
+    private final UserIdIndex emailIndex = new UserIdIndex();
+
+    private final BirthDateIndex birthDateIndex = new BirthDateIndex();
+
+    private final UserSearchIndexes searchIndexes;
+
+    private final UserSortViews sortViews;
+
+    private final StampedLock lock = new StampedLock();
+
+    private int size;
+    private int[] chunkSizes = new int[16];
+    private volatile long version;
+
+    /**
+     * Epoch of the page keys, renewed whenever users move to other slots. See {@link UserPage}.
+     * */
+    private volatile int epoch;
+
+    private final List<UserChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile UserChangeListener commitHook = change -> { };
+
+    /**
+     * Snapshots not read to the end yet. Held weakly, so an abandoned snapshot does not keep collecting users.
+     * Added and removed under the read lock, walked by writers under the write lock.
+     * */
+    private final List<WeakReference<StreamingSnapshot>> openSnapshots = new CopyOnWriteArrayList<>();
+
+    /**
+     * Indexes the records already in the store.
+     * */
+    public RecordUserRepository(RecordStore store)
+    {
+        this(store, true);
+    }
+
+    /**
+     * Indexes the records already in the store.
+     *
+     * @param substringIndexes whether to index emails and addresses for substring searches, see {@link UserSearchIndexes}
+     * */
+    public RecordUserRepository(RecordStore store, boolean substringIndexes)
+    {
+        this.store = store;
+        this.searchIndexes = new UserSearchIndexes(substringIndexes);
+        this.version = store.version();
+        this.sortViews = new UserSortViews(store::read);
+
+        compact();
+    }
+
+    @Override
+    public Optional<User> findById(UUID id)
+    {
+        return Optional.ofNullable(read(() -> store.read(idIndex.get(id))));
+    }
+
+    @Override
+    public List<User> findAllById(List<UUID> ids)
+    {
+        return read(() -> {
+            User[] result = new User[ids.size()];
+            for (int i = 0; i < result.length; i++)
+                result[i] = store.read(idIndex.get(ids.get(i)));
+
+            return Arrays.asList(result);
+        });
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email)
+    {
+        if (email == null)
+            return Optional.empty();
+
+        UUID key = emailKey(email);
+        User owner = read(() -> store.read(emailIndex.get(key)));
+
+        /*a digest collision is not a match*/
+        return owner != null && EmailIndex.isSameAddress(owner.getEmail(), email) ? Optional.of(owner) : Optional.empty();
+    }
+
+    @Override
+    public List<User> findByBirthDateBetween(long fromEpochDay, long toEpochDay)
+    {
+        return read(() -> {
+            List<User> result = new ArrayList<>();
+            birthDateIndex.forEachBetween(fromEpochDay, toEpochDay, slot -> result.add(store.read(slot)));
+            return result;
+        });
+    }
+
+    @Override
+    public UserSearchResult search(UserQuery query, int limit)
+    {
+        List<User> result = new ArrayList<>();
+        if (limit <= 0)
+            return new UserSearchResult(result, "none");
+
+        /*not optimistic: the hash indexes of the plan must not change while they are walked*/
+        long stamp = lock.readLock();
+        try
+        {
+            QueryPlan plan = searchIndexes.plan(query, birthDateIndex, size);
+            if (!plan.isScan())
+            {
+                plan.forEachCandidate(slot -> collect(result, store.read(slot), query, limit));
+            }
+            else
+            {
+                for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1))
+                {
+                    if (!collect(result, store.read(slot), query, limit))
+                        break;
+                }
+            }
+
+            return new UserSearchResult(result, plan.toString());
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<User> findByNamePrefix(String prefix, int limit)
+    {
+        List<User> result = new ArrayList<>();
+        if (limit <= 0)
+            return result;
+
+        long stamp = lock.readLock();
+        try
+        {
+            searchIndexes.forEachNameStartingWith(prefix, slot -> result.add(store.read(slot)) && result.size() < limit);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+
+        return result;
+    }
+
+    @Override
+    public UserPage findPage(int offset, int limit)
+    {
+        return read(() -> {
+            int count = Math.min(limit, size - offset);
+            if (offset < 0 || count <= 0)
+                return UserPage.empty(offset, size, version);
+
+            return readPage(offset, slotAt(offset), count);
+        });
+    }
+
+    @Override
+    public UserPage findPageAfter(long key, int limit)
+    {
+        return read(() -> {
+            int first = nextSlot(UserPage.slot(epoch, key) + 1);
+            int offset = first < 0 ? size : rank(first);
+            int count = Math.min(limit, size - offset);
+            if (first < 0 || count <= 0)
+                return UserPage.empty(offset, size, version);
+
+            return readPage(offset, first, count);
+        });
+    }
+
+    @Override
+    public UserPage findPageBefore(long key, int limit)
+    {
+        return read(() -> {
+            int last = previousSlot(UserPage.slot(epoch, key) - 1);
+            if (last < 0 || limit <= 0)
+                return UserPage.empty(0, size, version);
+
+            int end = rank(last) + 1;
+            int count = Math.min(limit, end);
+
+            int first = last;
+            for (int i = 1; i < count; i++)
+                first = previousSlot(first - 1);
+
+            return readPage(end - count, first, count);
+        });
+    }
+
+    @Override
+    public UserPage findSortedPage(SortOrder order, int offset, int limit)
+    {
+        /*not optimistic: the chunks of a view must not change while they are walked*/
+        long stamp = lock.readLock();
+        try
+        {
+            if (sortViews.contains(order))
+                return readSortedPage(order, offset, limit);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+
+        /*built once under the write lock, then kept up to date by every write*/
+        stamp = lock.writeLock();
+        try
+        {
+            int[] slots = new int[size];
+            int n = 0;
+            for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1))
+                slots[n++] = slot;
+
+            sortViews.build(order, slots);
+            return readSortedPage(order, offset, limit);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public WriteResult insert(User user)
+    {
+        List<UserChange> applied = new ArrayList<>(1);
+
+        long stamp = lock.writeLock();
+        try
+        {
+            return insertLocked(user, applied);
+        }
+        finally
+        {
+            publishAndUnlock(applied, stamp);
+        }
+    }
+
+    @Override
+    public List<WriteResult> insertAll(List<User> users)
+    {
+        List<WriteResult> results = new ArrayList<>(users.size());
+        List<UserChange> applied = new ArrayList<>(users.size());
+
+        long stamp = lock.writeLock();
+        try
+        {
+            /*stored one by one, so a repeated address is found as well*/
+            for (User user : users)
+                results.add(insertLocked(user, applied));
+
+            return results;
+        }
+        finally
+        {
+            publishAndUnlock(applied, stamp);
+        }
+    }
+
+    @Override
+    public WriteResult replace(User user)
+    {
+        List<UserChange> applied = new ArrayList<>(1);
+
+        long stamp = lock.writeLock();
+        try
+        {
+            return replaceLocked(user, applied);
+        }
+        finally
+        {
+            publishAndUnlock(applied, stamp);
+        }
+    }
+
+    @Override
+    public WriteResult replace(UUID id, UnaryOperator<User> change)
+    {
+        List<UserChange> applied = new ArrayList<>(1);
+
+        long stamp = lock.writeLock();
+        try
+        {
+            User original = store.read(idIndex.get(id));
+            if (original == null)
+                return WriteResult.NOT_FOUND;
+
+            return replaceLocked(change.apply(original), applied);
+        }
+        finally
+        {
+            publishAndUnlock(applied, stamp);
+        }
+    }
+
+    @Override
+    public List<WriteResult> replaceAll(Map<UUID, UnaryOperator<User>> changes)
+    {
+        List<WriteResult> results = new ArrayList<>(changes.size());
+        List<UserChange> applied = new ArrayList<>(changes.size());
+
+        long stamp = lock.writeLock();
+        try
+        {
+            for (Map.Entry<UUID, UnaryOperator<User>> entry : changes.entrySet())
+            {
+                User original = store.read(idIndex.get(entry.getKey()));
+                results.add(original == null ? WriteResult.NOT_FOUND : replaceLocked(entry.getValue().apply(original), applied));
+            }
+
+            return results;
+        }
+        finally
+        {
+            publishAndUnlock(applied, stamp);
+        }
+    }
+
+    @Override
+    public WriteResult delete(UUID id)
+    {
+        List<UserChange> applied = new ArrayList<>(1);
+
+        long stamp = lock.writeLock();
+        try
+        {
+            return deleteLocked(id, applied);
+        }
+        finally
+        {
+            publishAndUnlock(applied, stamp);
+        }
+    }
+
+    @Override
+    public List<WriteResult> deleteAll(Collection<UUID> ids)
+    {
+        List<WriteResult> results = new ArrayList<>(ids.size());
+        List<UserChange> applied = new ArrayList<>(ids.size());
+
+        long stamp = lock.writeLock();
+        try
+        {
+            for (UUID id : ids)
+                results.add(deleteLocked(id, applied));
+
+            return results;
+        }
+        finally
+        {
+            publishAndUnlock(applied, stamp);
+        }
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Returns a snapshot reading the records chunk by chunk, each chunk under a short read lock,
+     * so writers keep running while it is read. Until the snapshot has read a slot, a writer
+     * changing the slot hands it the previous user, so the snapshot still reads its own version:
+     * only the users changed meanwhile are kept on the heap. The snapshot can be iterated once.
+     * */
+    @Override
+    public UserSnapshot snapshot()
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            StreamingSnapshot snapshot = new StreamingSnapshot(version, size, store.count());
+            openSnapshots.add(new WeakReference<>(snapshot));
+            return snapshot;
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void restore(long version, Iterable<User> users)
+    {
+        long stamp = lock.writeLock();
+        try
+        {
+            store.reset(version);
+            size = 0;
+            chunkSizes = new int[16];
+            idIndex.clear();
+            emailIndex.clear();
+            birthDateIndex.clear();
+            searchIndexes.clear();
+            sortViews.clear();
+
+            /*the slots of the open snapshots are gone*/
+            for (WeakReference<StreamingSnapshot> reference : openSnapshots)
+            {
+                StreamingSnapshot snapshot = reference.get();
+                if (snapshot != null)
+                    snapshot.restored = true;
+            }
+            openSnapshots.clear();
+
+            for (User user : users)
+                index(user, store.append(user));
+
+            this.version = version;
+            epoch = UserPage.newEpoch();
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void addChangeListener(UserChangeListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void setCommitHook(UserChangeListener hook)
+    {
+        commitHook = hook;
+    }
+
+    /**
+     * Closes the record store, waiting for the running writes.
+     * */
+    @Override
+    public void close() throws IOException
+    {
+        long stamp = lock.writeLock();
+        try
+        {
+            store.close();
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Runs the reader without locking and validates that no write happened meanwhile,
+     * otherwise runs it again under the read lock.
+     * */
+    private <T> T read(Supplier<T> reader)
+    {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0)
+        {
+            try
+            {
+                T result = reader.get();
+                if (lock.validate(stamp))
+                    return result;
+            }
+            catch (RuntimeException e)
+            {
+                /*a record read while being written may be inconsistent in any way*/
+                if (lock.validate(stamp))
+                    throw e;
+            }
+        }
+
+        stamp = lock.readLock();
+        try
+        {
+            return reader.get();
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Stores the user unless the address is taken, without publishing the change. Must be called under the write lock.
+     * */
+    private WriteResult insertLocked(User user, List<UserChange> applied)
+    {
+        if (user.getEmail() != null && emailIndex.get(emailKey(user.getEmail())) != UserIdIndex.NOT_FOUND)
+            return WriteResult.EMAIL_TAKEN;
+
+        UserChange change = commit(applied, UserChange.Type.CREATE, user.getId(), user);
+        index(user, store.append(user));
+        applied.add(change);
+
+        return WriteResult.OK;
+    }
+
+    /**
+     * Applies the replacement without publishing it. Must be called under the write lock.
+     * */
+    private WriteResult replaceLocked(User user, List<UserChange> applied)
+    {
+        int slot = user.getId() == null ? UserIdIndex.NOT_FOUND : idIndex.get(user.getId());
+        int emailOwner = user.getEmail() == null ? UserIdIndex.NOT_FOUND : emailIndex.get(emailKey(user.getEmail()));
+
+        if (emailOwner != UserIdIndex.NOT_FOUND && emailOwner != slot)
+            return WriteResult.EMAIL_TAKEN;
+        if (slot < 0)
+            return WriteResult.NOT_FOUND;
+
+        UserChange change = commit(applied, UserChange.Type.UPDATE, user.getId(), user);
+        User previous = store.read(slot);
+        preserve(slot, previous);
+        store.write(slot, user, previous);
+
+        if (!EmailIndex.isSameAddress(previous.getEmail(), user.getEmail()))
+        {
+            if (previous.getEmail() != null)
+                emailIndex.remove(emailKey(previous.getEmail()));
+            if (user.getEmail() != null)
+                emailIndex.put(emailKey(user.getEmail()), slot);
+        }
+
+        if (!Objects.equals(previous.getBirthDate(), user.getBirthDate()))
+        {
+            if (previous.getBirthDate() != null)
+                birthDateIndex.remove(previous.getBirthDate().toEpochDay(), slot);
+            if (user.getBirthDate() != null)
+                birthDateIndex.add(user.getBirthDate().toEpochDay(), slot);
+        }
+        searchIndexes.replace(previous, user, slot);
+        sortViews.replace(previous, user, slot);
+        applied.add(change);
+
+        return WriteResult.OK;
+    }
+
+    /**
+     * Must be called under the write lock.
+     * */
+    private WriteResult deleteLocked(UUID id, List<UserChange> applied)
+    {
+        int slot = idIndex.get(id);
+        if (slot < 0)
+            return WriteResult.NOT_FOUND;
+
+        UserChange change = commit(applied, UserChange.Type.DELETE, id, null);
+        idIndex.remove(id);
+        User removed = store.read(slot);
+        preserve(slot, removed);
+        store.free(slot);
+
+        if (removed.getEmail() != null)
+            emailIndex.remove(emailKey(removed.getEmail()));
+        if (removed.getBirthDate() != null)
+            birthDateIndex.remove(removed.getBirthDate().toEpochDay(), slot);
+        searchIndexes.remove(removed, slot);
+        sortViews.remove(removed, slot);
+        chunkSizes[slot >>> CHUNK_SHIFT]--;
+        size--;
+        applied.add(change);
+
+        return WriteResult.OK;
+    }
+
+    /**
+     * Creates the change following the applied ones and passes it to the commit hook,
+     * which cancels it by throwing. Must be called under the write lock, before the change is applied.
+     * */
+    private UserChange commit(List<UserChange> applied, UserChange.Type type, UUID id, User user)
+    {
+        UserChange change = new UserChange(version + applied.size() + 1, type, id, user);
+        commitHook.onChange(change);
+        return change;
+    }
+
+    /**
+     * Publishes the applied changes, also those of a write failed halfway, and releases the write lock.
+     * */
+    private void publishAndUnlock(List<UserChange> applied, long stamp)
+    {
+        try
+        {
+            publish(applied);
+            compactIfSparse();
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Publishes several changes with a single update of the store version.
+     * Must be called under the write lock.
+     * */
+    private void publish(List<UserChange> changes)
+    {
+        if (changes.isEmpty())
+            return;
+
+        long last = changes.getLast().version();
+        store.setVersion(last);
+        version = last;
+
+        for (int i = 0; i < changes.size() && !listeners.isEmpty(); i++)
+            notifyListeners(changes.get(i));
+    }
+
+    /**
+     * Hands the user about to be overwritten in the slot to the open snapshots.
+     * Must be called under the write lock.
+     * */
+    private void preserve(int slot, User user)
+    {
+        for (WeakReference<StreamingSnapshot> reference : openSnapshots)
+        {
+            StreamingSnapshot snapshot = reference.get();
+            if (snapshot == null)
+                openSnapshots.remove(reference);
+            else
+                snapshot.preserve(slot, user);
+        }
+    }
+
+    /**
+     * Compacts the store once its deleted slots outnumber the live users. Must be called under the write lock.
+     * */
+    private void compactIfSparse()
+    {
+        int deleted = store.count() - size;
+        if (deleted < MIN_COMPACTED_SLOTS || deleted < size)
+            return;
+
+        /*open snapshots read the slots as they are*/
+        openSnapshots.removeIf(reference -> reference.get() == null);
+        if (openSnapshots.isEmpty())
+            compact();
+    }
+
+    /**
+     * Moves the users to the lowest slots and indexes them again. Must be called under the write lock
+     * or by the constructor.
+     * */
+    private void compact()
+    {
+        store.compact();
+        epoch = UserPage.newEpoch();
+
+        size = 0;
+        chunkSizes = new int[16];
+        idIndex.clear();
+        emailIndex.clear();
+        birthDateIndex.clear();
+        searchIndexes.clear();
+        sortViews.clear();
+
+        for (int slot = 0; slot < store.count(); slot++)
+            index(store.read(slot), slot);
+    }
+
+    private void notifyListeners(UserChange change)
+    {
+        for (UserChangeListener listener : listeners)
+            listener.onChange(change);
+    }
+
+    private void index(User user, int slot)
+    {
+        idIndex.put(user.getId(), slot);
+        if (user.getEmail() != null)
+            emailIndex.put(emailKey(user.getEmail()), slot);
+        if (user.getBirthDate() != null)
+            birthDateIndex.add(user.getBirthDate().toEpochDay(), slot);
+        searchIndexes.add(user, slot);
+        sortViews.add(user, slot);
+
+        int chunk = slot >>> CHUNK_SHIFT;
+        if (chunk >= chunkSizes.length)
+            chunkSizes = Arrays.copyOf(chunkSizes, Math.max(chunkSizes.length << 1, chunk + 1));
+        chunkSizes[chunk]++;
+        size++;
+    }
+
+    /**
+     * Must be called under the lock, with the view of the order built.
+     * */
+    private UserPage readSortedPage(SortOrder order, int offset, int limit)
+    {
+        int count = Math.min(limit, size - offset);
+        if (offset < 0 || count <= 0)
+            return UserPage.empty(offset, size, version);
+
+        List<User> data = new ArrayList<>(count);
+        sortViews.forEachWhile(order, offset, slot -> data.add(store.read(slot)) && data.size() < count);
+
+        return new UserPage(data, offset, size, version, UserPage.NO_KEY, UserPage.NO_KEY);
+    }
+
+    /**
+     * Reads 'count' users starting at the given live slot. Must be called by a reader.
+     * */
+    private UserPage readPage(int offset, int firstSlot, int count)
+    {
+        User[] data = new User[count];
+        int i = 0;
+        int slot = firstSlot;
+        for (; i < count && slot < store.count(); slot++)
+        {
+            User user = store.read(slot);
+            if (user != null)
+                data[i++] = user;
+        }
+
+        if (i < count)
+            throw new IllegalStateException("Users changed while reading the page");
+
+        return new UserPage(Arrays.asList(data), offset, size, version,
+                UserPage.key(epoch, firstSlot), UserPage.key(epoch, slot - 1));
+    }
+
+    /**
+     * Returns the first live slot starting from the given one (inclusive) or -1 if there is none.
+     * */
+    private int nextSlot(int from)
+    {
+        for (int slot = Math.max(from, 0); slot < store.count(); slot++)
+        {
+            if (store.isLive(slot))
+                return slot;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the last live slot up to the given one (inclusive) or -1 if there is none.
+     * */
+    private int previousSlot(int from)
+    {
+        for (int slot = Math.min(from, store.count() - 1); slot >= 0; slot--)
+        {
+            /*skipping chunks without users*/
+            if (chunkSizes[slot >>> CHUNK_SHIFT] == 0)
+                slot &= ~((1 << CHUNK_SHIFT) - 1);
+            else if (store.isLive(slot))
+                return slot;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the number of users in slots before the given one.
+     * */
+    private int rank(int slot)
+    {
+        int chunk = slot >>> CHUNK_SHIFT;
+        int result = 0;
+        for (int i = 0; i < chunk; i++)
+            result += chunkSizes[i];
+
+        for (int s = chunk << CHUNK_SHIFT; s < slot; s++)
+        {
+            if (store.isLive(s))
+                result++;
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds a user meeting the query to the result, returning false once the result is full.
+     * */
+    private static boolean collect(List<User> result, User user, UserQuery query, int limit)
+    {
+        if (user != null && query.matches(user))
+            result.add(user);
+
+        return result.size() < limit;
+    }
+
+    /**
+     * Returns the slot of the user at the given position in slot order.
+     * */
+    private int slotAt(int offset)
+    {
+        int chunk = 0;
+        while (offset >= chunkSizes[chunk])
+            offset -= chunkSizes[chunk++];
+
+        int slot = chunk << CHUNK_SHIFT;
+        for (int end = slot + (1 << CHUNK_SHIFT); slot < end; slot++)
+        {
+            if (store.isLive(slot) && offset-- == 0)
+                return slot;
+        }
+
+        throw new IllegalStateException("Chunk " + chunk + " has less users than counted");
+    }
+
+    private static UUID emailKey(String email)
+    {
+        return UUID.nameUUIDFromBytes(EmailIndex.normalize(email).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Users of the slots below 'end' at one version, see {@link #snapshot()}.
+     * The mutable state is guarded by the lock of the engine.
+     * */
+    private final class StreamingSnapshot implements UserSnapshot
+    {
+        /*slots read under one read lock*/
+        private static final int CHUNK = 1 << CHUNK_SHIFT;
+
+        private final long version;
+        private final int size;
+        private final int end;
+
+        /*users of the slots not read yet as they were at the version, for slots changed since*/
+        private final Map<Integer, User> preserved = new HashMap<>();
+        private int next;
+        private boolean restored;
+        private boolean iterated;
+
+        private StreamingSnapshot(long version, int size, int end)
+        {
+            this.version = version;
+            this.size = size;
+            this.end = end;
+        }
+
+        @Override
+        public long version() {
+            return version;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<User> iterator()
+        {
+            if (iterated)
+                throw new IllegalStateException("Snapshot can be iterated only once.");
+            iterated = true;
+
+            return new Iterator<>()
+            {
+                private final List<User> chunk = new ArrayList<>();
+                private int position;
+
+                @Override
+                public boolean hasNext()
+                {
+                    while (position == chunk.size())
+                    {
+                        if (!readChunk(chunk))
+                            return false;
+                        position = 0;
+                    }
+
+                    return true;
+                }
+
+                @Override
+                public User next()
+                {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+
+                    return chunk.get(position++);
+                }
+            };
+        }
+
+        @Override
+        public void close()
+        {
+            long stamp = lock.readLock();
+            try
+            {
+                release();
+            }
+            finally
+            {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Replaces the users in the list with the ones of the next chunk of slots, returning false at the end.
+         * */
+        private boolean readChunk(List<User> users)
+        {
+            users.clear();
+
+            long stamp = lock.readLock();
+            try
+            {
+                if (restored)
+                    throw new IllegalStateException("Users were restored while the snapshot was read.");
+
+                if (next >= end)
+                {
+                    release();
+                    return false;
+                }
+
+                int to = Math.min(end, next + CHUNK);
+                for (int slot = next; slot < to; slot++)
+                {
+                    User user = preserved.isEmpty() ? null : preserved.remove(slot);
+                    if (user == null)
+                        user = store.read(slot);
+                    if (user != null)
+                        users.add(user);
+                }
+
+                next = to;
+                return true;
+            }
+            finally
+            {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Keeps the user of a slot not read yet, unless the slot was changed before. Called under the write lock.
+         * */
+        private void preserve(int slot, User user)
+        {
+            if (slot >= next && slot < end)
+                preserved.putIfAbsent(slot, user);
+        }
+
+        /**
+         * Must be called under the lock.
+         * */
+        private void release()
+        {
+            openSnapshots.removeIf(reference -> reference.get() == this || reference.get() == null);
+            preserved.clear();
+            next = end;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.techeart.restapi.repository.record;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Memory outside of the object heap, allocated in regions of equal size and addressed by long positions.
+ * <p>
+ * The memory grows by whole regions. Values must not cross a region boundary,
+ * which callers guarantee by aligning their data to the region size.
+ * <p>
+ * Absolute reads are safe from any thread; growing and writing must be serialized by the caller.
+ * */
+public abstract class RegionBuffer implements Closeable
+{
+    private final int regionShift;
+    private final long regionMask;
+
+    /**
+     * Replaced as a whole when the memory grows, so readers always see a complete array.
+     * */
+    private volatile ByteBuffer[] regions = new ByteBuffer[0];
+
+    protected RegionBuffer(int regionShift)
+    {
+        this.regionShift = regionShift;
+        this.regionMask = (1L << regionShift) - 1;
+    }
+
+    /**
+     * Returns a buffer allocated with {@link ByteBuffer#allocateDirect(int)}.
+     * */
+    public static RegionBuffer direct(int regionShift)
+    {
+        return new RegionBuffer(regionShift)
+        {
+            @Override
+            protected ByteBuffer allocate(int region) {
+                return ByteBuffer.allocateDirect((int) regionSize());
+            }
+        };
+    }
+
+    /**
+     * Creates the memory of the given region, with the size of {@link #regionSize()}.
+     * */
+    protected abstract ByteBuffer allocate(int region) throws IOException;
+
+    public long regionSize() {
+        return regionMask + 1;
+    }
+
+    /**
+     * Total size of the allocated regions.
+     * */
+    public long capacity() {
+        return (long) regions.length << regionShift;
+    }
+
+    /**
+     * Allocates more regions, so that positions below 'bytes' can be accessed.
+     * */
+    public void ensureCapacity(long bytes) throws IOException
+    {
+        ByteBuffer[] current = regions;
+        int count = (int) ((bytes + regionMask) >>> regionShift);
+        if (count <= current.length)
+            return;
+
+        ByteBuffer[] grown = Arrays.copyOf(current, count);
+        for (int i = current.length; i < count; i++)
+            grown[i] = allocate(i);
+
+        regions = grown;
+    }
+
+    public byte getByte(long position) {
+        return region(position).get(offset(position));
+    }
+
+    public int getInt(long position) {
+        return region(position).getInt(offset(position));
+    }
+
+    public long getLong(long position) {
+        return region(position).getLong(offset(position));
+    }
+
+    public void putByte(long position, byte value) {
+        region(position).put(offset(position), value);
+    }
+
+    public void putInt(long position, int value) {
+        region(position).putInt(offset(position), value);
+    }
+
+    public void putLong(long position, long value) {
+        region(position).putLong(offset(position), value);
+    }
+
+    public void read(long position, byte[] target) {
+        region(position).get(offset(position), target);
+    }
+
+    public void write(long position, byte[] source) {
+        region(position).put(offset(position), source);
+    }
+
+    /**
+     * Writes the modified memory to its backing storage, if it has one.
+     * */
+    public void force() { }
+
+    /**
+     * Releases the regions. The buffer must not be used afterwards.
+     * */
+    @Override
+    public void close() throws IOException
+    {
+        regions = new ByteBuffer[0];
+    }
+
+    protected ByteBuffer[] regions() {
+        return regions;
+    }
+
+    private ByteBuffer region(long position) {
+        return regions[(int) (position >>> regionShift)];
+    }
+
+    private int offset(long position) {
+        return (int) (position & regionMask);
+    }
+}
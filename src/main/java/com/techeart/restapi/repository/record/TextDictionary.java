@@ -0,0 +1,205 @@
+package com.techeart.restapi.repository.record;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Dictionary of distinct texts kept in a {@link TextStore}, addressed by int codes.
+ * <p>
+ * Records store the 4-byte code instead of a reference to their own copy of the text,
+ * so a value repeated by many users is stored once. Codes are reference counted:
+ * once a text is no longer used by any record, its bytes are freed in the store
+ * and its code is reused for the next new text.
+ * <p>
+ * Writes must be serialized by the caller. {@link #get(int)} may run concurrently with a write;
+ * it then may return a wrong text or throw, which optimistic readers detect by validation.
+ * */
+public final class TextDictionary
+{
+    public static final int NULL_CODE = -1;
+
+    private static final int EMPTY = -1;
+    private static final int LENGTH_BITS = 24;
+
+    private final TextStore text;
+
+    /*per code: text reference ([offset: 40 bits][length: 24 bits]), hash and number of records using it*/
+    private long[] references = new long[16];
+    private int[] hashes = new int[16];
+    private int[] counts = new int[16];
+    private int codeCount;
+
+    private int[] freeCodes = new int[16];
+    private int freeCount;
+
+    /*open addressing table of codes, load factor 0.5*/
+    private int[] table = newTable(32);
+    private int size;
+
+    public TextDictionary(TextStore text)
+    {
+        this.text = text;
+    }
+
+    /**
+     * Number of distinct texts in use.
+     * */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the code of the text, storing the text if it is new, and counts one more use of it.
+     * */
+    public int acquire(String value)
+    {
+        if (value == null)
+            return NULL_CODE;
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytes);
+        int mask = table.length - 1;
+
+        int i = hash & mask;
+        while (table[i] != EMPTY)
+        {
+            int code = table[i];
+            if (hashes[code] == hash && value.equals(get(code)))
+            {
+                counts[code]++;
+                return code;
+            }
+
+            i = (i + 1) & mask;
+        }
+
+        int code = newCode();
+        references[code] = text.write(bytes) << LENGTH_BITS | bytes.length;
+        hashes[code] = hash;
+        counts[code] = 1;
+        table[i] = code;
+
+        if (++size > table.length >> 1)
+            resize(table.length << 1);
+
+        return code;
+    }
+
+    /**
+     * Counts one use of the code less, freeing the code after the last one.
+     * */
+    public void release(int code)
+    {
+        if (code == NULL_CODE || --counts[code] > 0)
+            return;
+
+        int mask = table.length - 1;
+        int i = hashes[code] & mask;
+        while (table[i] != code)
+            i = (i + 1) & mask;
+
+        shiftBack(i);
+        size--;
+
+        long reference = references[code];
+        text.free(reference >>> LENGTH_BITS, (int) (reference & ((1 << LENGTH_BITS) - 1)));
+
+        if (freeCount == freeCodes.length)
+            freeCodes = Arrays.copyOf(freeCodes, freeCount << 1);
+        freeCodes[freeCount++] = code;
+    }
+
+    /**
+     * Returns the text of the code, null for {@link #NULL_CODE}.
+     * */
+    public String get(int code)
+    {
+        if (code == NULL_CODE)
+            return null;
+
+        long reference = references[code];
+        return text.read(reference >>> LENGTH_BITS, (int) (reference & ((1 << LENGTH_BITS) - 1)));
+    }
+
+    public void clear()
+    {
+        codeCount = 0;
+        freeCount = 0;
+        size = 0;
+        table = newTable(32);
+    }
+
+    private int newCode()
+    {
+        if (freeCount > 0)
+            return freeCodes[--freeCount];
+
+        if (codeCount == references.length)
+        {
+            /*counts and hashes are grown first: a concurrent reader only uses the references*/
+            counts = Arrays.copyOf(counts, codeCount << 1);
+            hashes = Arrays.copyOf(hashes, codeCount << 1);
+            references = Arrays.copyOf(references, codeCount << 1);
+        }
+
+        return codeCount++;
+    }
+
+    /**
+     * Backward shift deletion, like in {@link com.techeart.restapi.index.UserIdIndex}.
+     * */
+    private void shiftBack(int freed)
+    {
+        int mask = table.length - 1;
+        int i = freed;
+        while (true)
+        {
+            i = (i + 1) & mask;
+            if (table[i] == EMPTY)
+                break;
+
+            int home = hashes[table[i]] & mask;
+            boolean movable = freed <= i ? (home <= freed || home > i) : (home <= freed && home > i);
+            if (movable)
+            {
+                table[freed] = table[i];
+                freed = i;
+            }
+        }
+
+        table[freed] = EMPTY;
+    }
+
+    private void resize(int capacity)
+    {
+        int[] resized = newTable(capacity);
+        int mask = capacity - 1;
+
+        for (int code : table)
+        {
+            if (code == EMPTY)
+                continue;
+
+            int i = hashes[code] & mask;
+            while (resized[i] != EMPTY)
+                i = (i + 1) & mask;
+            resized[i] = code;
+        }
+
+        table = resized;
+    }
+
+    private static int hash(byte[] bytes)
+    {
+        /*spreading the bits of the polynomial hash, the table uses only the low ones*/
+        int h = Arrays.hashCode(bytes) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int[] newTable(int capacity)
+    {
+        int[] table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+}
@@ -0,0 +1,255 @@
+package com.techeart.restapi.repository.record;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * UTF-8 text in a {@link RegionBuffer}, addressed by offset and length.
+ * <p>
+ * Every text takes an extent of a size class: whole 8-byte units up to 128 bytes, then four
+ * classes per doubling, so an extent wastes at most a quarter of its size. Freed extents are
+ * kept in a list per class and reused by the next text of their class, or split for a text of a smaller
+ * class if its own list is empty; a list links its extents through their first 8 bytes.
+ * New extents are taken from the end, and an extent never crosses
+ * a region boundary: if it does not fit into the rest of the current region, it starts the next one.
+ * <p>
+ * The free lists are not stored: the owner of stored text rebuilds them after reopening it,
+ * by marking the texts still in use and freeing the rest with {@link #freeUnmarked()}.
+ * */
+public final class TextStore
+{
+    private static final int UNIT_SHIFT = 3;
+    private static final int EXACT_CLASSES = 16;
+    private static final long NO_EXTENT = -1;
+
+    private final RegionBuffer buffer;
+    private final long start;
+    private long end;
+
+    /*per size class: offset of the first free extent, linked to the next one by its first 8 bytes*/
+    private final long[] freeExtents = new long[EXACT_CLASSES + 4 * Long.SIZE];
+
+    /*one bit per 8-byte unit from the start, set for units of texts in use while the free lists are rebuilt*/
+    private long[] marks;
+
+    /**
+     * @param start offset of the first text, the memory before it is left to the owner; must be 8-byte aligned
+     * @param end offset right after the last stored text
+     * */
+    public TextStore(RegionBuffer buffer, long start, long end)
+    {
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+        Arrays.fill(freeExtents, NO_EXTENT);
+    }
+
+    /**
+     * Offset right after the last extent.
+     * */
+    public long end() {
+        return end;
+    }
+
+    /**
+     * Stores the bytes and returns their offset, reusing a freed extent if there is one.
+     * */
+    public long write(byte[] bytes)
+    {
+        int sizeClass = sizeClass(bytes.length);
+        long extent = extentSize(sizeClass);
+        if (extent > buffer.regionSize() - start)
+            throw new IllegalArgumentException("Text of " + bytes.length + " bytes is too long to be stored.");
+
+        int freeClass = sizeClass;
+        while (freeClass < freeExtents.length && freeExtents[freeClass] == NO_EXTENT)
+            freeClass++;
+
+        long offset;
+        if (freeClass < freeExtents.length)
+        {
+            offset = freeExtents[freeClass];
+            freeExtents[freeClass] = buffer.getLong(offset);
+            freeRange(offset + extent, offset + extentSize(freeClass));
+        }
+        else
+        {
+            offset = align(end);
+            long gap = offset;
+            if ((offset & (buffer.regionSize() - 1)) + extent > buffer.regionSize())
+                offset = (offset | (buffer.regionSize() - 1)) + 1;
+
+            try
+            {
+                buffer.ensureCapacity(offset + extent);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+
+            end = offset + extent;
+
+            /*the rest of the previous region is left to smaller texts*/
+            freeRange(gap, offset);
+        }
+
+        buffer.write(offset, bytes);
+        return offset;
+    }
+
+    /**
+     * Stores the text and returns its offset.
+     * */
+    public long write(String text)
+    {
+        return write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Makes the extent of a stored text reusable. The text must not be read afterwards.
+     * */
+    public void free(long offset, int length)
+    {
+        push(sizeClass(length), offset);
+    }
+
+    /**
+     * Marks the extent of a text in use, before {@link #freeUnmarked()}.
+     * */
+    public void mark(long offset, int length)
+    {
+        long[] marked = marks();
+        long first = (offset - start) >>> UNIT_SHIFT;
+        long last = first + (extentSize(sizeClass(length)) >>> UNIT_SHIFT);
+        for (long unit = first; unit < last; unit++)
+            marked[(int) (unit >>> 6)] |= 1L << unit;
+    }
+
+    /**
+     * Frees all memory up to the end not taken by the marked texts.
+     * */
+    public void freeUnmarked()
+    {
+        long[] marked = marks();
+        long units = (end - start) >>> UNIT_SHIFT;
+        long regionUnits = buffer.regionSize() >>> UNIT_SHIFT;
+        long startUnit = start >>> UNIT_SHIFT;
+
+        long unit = 0;
+        while (unit < units)
+        {
+            if (isMarked(marked, unit))
+            {
+                unit++;
+                continue;
+            }
+
+            /*a gap ends at the next marked unit or at the end of its region*/
+            long regionEnd = ((startUnit + unit) / regionUnits + 1) * regionUnits - startUnit;
+            long gapEnd = unit + 1;
+            while (gapEnd < units && gapEnd < regionEnd && !isMarked(marked, gapEnd))
+                gapEnd++;
+
+            freeRange(start + (unit << UNIT_SHIFT), start + (gapEnd << UNIT_SHIFT));
+            unit = gapEnd;
+        }
+
+        marks = null;
+    }
+
+    /**
+     * Reads a stored text. The reference is checked before anything is allocated,
+     * since an optimistic read may see a reference that is being written.
+     * */
+    public String read(long offset, int length)
+    {
+        if (length < 0 || offset < start || offset + length > end)
+            throw new IllegalStateException("Invalid text reference: " + offset + ", " + length);
+
+        byte[] bytes = new byte[length];
+        buffer.read(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Forgets all stored text. The memory is reused by the following texts.
+     * */
+    public void clear()
+    {
+        end = start;
+        Arrays.fill(freeExtents, NO_EXTENT);
+        marks = null;
+    }
+
+    /**
+     * Returns the size class of a text of the given length. Every extent has at least
+     * one unit, which holds the link to the next free extent of its class.
+     * */
+    static int sizeClass(int length)
+    {
+        int units = Math.max(1, (length + (1 << UNIT_SHIFT) - 1) >>> UNIT_SHIFT);
+        if (units <= EXACT_CLASSES)
+            return units - 1;
+
+        /*the two bits below the highest one of (units - 1) select one of four classes of the doubling*/
+        int shift = 31 - Integer.numberOfLeadingZeros(units - 1) - 2;
+        int quarter = ((units - 1) >>> shift) - 4;
+        return EXACT_CLASSES + (shift - 2) * 4 + quarter;
+    }
+
+    /**
+     * Returns the size in bytes of the extents of the class.
+     * */
+    static long extentSize(int sizeClass)
+    {
+        if (sizeClass < EXACT_CLASSES)
+            return (long) (sizeClass + 1) << UNIT_SHIFT;
+
+        int shift = (sizeClass - EXACT_CLASSES) / 4 + 2;
+        int quarter = (sizeClass - EXACT_CLASSES) % 4;
+        return (long) (quarter + 5) << (shift + UNIT_SHIFT);
+    }
+
+    /**
+     * Frees the memory between the offsets, within one region, as extents of the largest classes fitting into it.
+     * */
+    private void freeRange(long from, long to)
+    {
+        while (from < to)
+        {
+            int sizeClass = sizeClass((int) Math.min(to - from, Integer.MAX_VALUE));
+            if (extentSize(sizeClass) > to - from)
+                sizeClass--;
+
+            push(sizeClass, from);
+            from += extentSize(sizeClass);
+        }
+    }
+
+    private void push(int sizeClass, long offset)
+    {
+        buffer.putLong(offset, freeExtents[sizeClass]);
+        freeExtents[sizeClass] = offset;
+    }
+
+    private long[] marks()
+    {
+        if (marks == null)
+            marks = new long[(int) ((((end - start) >>> UNIT_SHIFT) + 63) >>> 6)];
+
+        return marks;
+    }
+
+    private static boolean isMarked(long[] marked, long unit)
+    {
+        return (marked[(int) (unit >>> 6)] & 1L << unit) != 0;
+    }
+
+    private static long align(long offset)
+    {
+        return (offset + (1 << UNIT_SHIFT) - 1) & -(1L << UNIT_SHIFT);
+    }
+}
@@ -0,0 +1,124 @@
+package com.techeart.restapi.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Birth date bounds of ages in whole years, as of the current day of the clock.
+ * <p>
+ * The bounds of every age up to {@link #MAX_AGE} are computed once a day, on the first use after
+ * midnight in the zone of the clock. Age checks and age range queries compare birth dates with
+ * the cached bounds instead of computing periods, so they allocate nothing.
+ * */
+@Service
+public class AgeCutoffs
+{
+    public static final int MAX_AGE = 150;
+
+    private final Clock clock;
+    private volatile Day day;
+
+    @Autowired
+    public AgeCutoffs(Clock clock)
+    {
+        this.clock = clock;
+        this.day = computeDay();
+    }
+
+    public LocalDate today() {
+        return current().latest()[0];
+    }
+
+    /**
+     * Returns the latest birth date of a person being at least the given age.
+     * */
+    public LocalDate bornOnOrBefore(int age)
+    {
+        return current().latest()[Objects.checkIndex(age, MAX_AGE + 1)];
+    }
+
+    /**
+     * Returns the earliest birth date of a person being at most the given age.
+     * */
+    public LocalDate bornOnOrAfter(int age)
+    {
+        return current().earliest()[Objects.checkIndex(age, MAX_AGE + 1)];
+    }
+
+    public boolean isAtLeast(LocalDate birthDate, int age)
+    {
+        return birthDate.toEpochDay() <= current().latestDays()[Objects.checkIndex(age, MAX_AGE + 1)];
+    }
+
+    /**
+     * Returns the age of a person born on the date, at most {@link #MAX_AGE}, or -1 if the date is after today.
+     * */
+    public int ageOf(LocalDate birthDate)
+    {
+        long[] latestDays = current().latestDays();
+        long born = birthDate.toEpochDay();
+        if (born > latestDays[0])
+            return -1;
+
+        /*the greatest age whose latest birth day is not before the birth, the days descend with the age*/
+        int low = 0;
+        int high = MAX_AGE;
+        while (low < high)
+        {
+            int mid = (low + high + 1) >>> 1;
+            if (born <= latestDays[mid])
+                low = mid;
+            else
+                high = mid - 1;
+        }
+
+        return low;
+    }
+
+    private Day current()
+    {
+        Day current = day;
+        if (clock.millis() < current.expiresAt())
+            return current;
+
+        /*threads crossing midnight together compute equal days, any of them may stay*/
+        current = computeDay();
+        day = current;
+        return current;
+    }
+
+    private Day computeDay()
+    {
+        LocalDate today = LocalDate.now(clock);
+        long expiresAt = today.plusDays(1).atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+
+        /*one more latest date than ages, the day after it is the earliest date of the last age*/
+        LocalDate[] latest = new LocalDate[MAX_AGE + 2];
+        long[] latestDays = new long[MAX_AGE + 2];
+        for (int age = 0; age < latest.length; age++)
+        {
+            latest[age] = today.minusYears(age);
+            latestDays[age] = latest[age].toEpochDay();
+        }
+
+        LocalDate[] earliest = new LocalDate[MAX_AGE + 1];
+        for (int age = 0; age < earliest.length; age++)
+            earliest[age] = latest[age + 1].plusDays(1);
+
+        return new Day(expiresAt, latest, latestDays, earliest);
+    }
+
+    /**
+     * Bounds of a day.
+     *
+     * @param expiresAt epoch millis of the next midnight
+     * @param latest latest birth dates of the ages, today first
+     * @param latestDays the same dates as epoch days
+     * @param earliest earliest birth dates of the ages
+     * */
+    private record Day(long expiresAt, LocalDate[] latest, long[] latestDays, LocalDate[] earliest) {  }
+}
@@ -21,4 +21,52 @@ public class ConfigurationService
     @Value("${app.paginationMaxLimit}")
     private int paginationMaxLimit;
     public int getPaginationMaxLimit() { return paginationMaxLimit; }
+
+    @Value("${app.batchMaxSize}")
+    private int batchMaxSize;
+    public int getBatchMaxSize() { return batchMaxSize; }
+
+    @Value("${app.lookupMaxIds}")
+    private int lookupMaxIds;
+    public int getLookupMaxIds() { return lookupMaxIds; }
+
+    @Value("${app.changeLogSize}")
+    private int changeLogSize;
+    public int getChangeLogSize() { return changeLogSize; }
+
+    @Value("${app.changeStreamSize}")
+    private int changeStreamSize;
+    public int getChangeStreamSize() { return changeStreamSize; }
+
+    @Value("${app.userJsonCacheSize}")
+    private int userJsonCacheSize;
+    public int getUserJsonCacheSize() { return userJsonCacheSize; }
+
+    @Value("${app.storageEngine}")
+    private String storageEngine;
+    public String getStorageEngine() { return storageEngine; }
+
+    @Value("${app.storageSubstringIndexes}")
+    private boolean storageSubstringIndexes;
+    public boolean isStorageSubstringIndexes() { return storageSubstringIndexes; }
+
+    @Value("${app.storageDurable}")
+    private boolean storageDurable;
+    public boolean isStorageDurable() { return storageDurable; }
+
+    @Value("${app.storageDir}")
+    private String storageDir;
+    public String getStorageDir() { return storageDir; }
+
+    @Value("${app.storageFsyncBatch}")
+    private int storageFsyncBatch;
+    public int getStorageFsyncBatch() { return storageFsyncBatch; }
+
+    @Value("${app.storageFsyncIntervalMs}")
+    private long storageFsyncIntervalMs;
+    public long getStorageFsyncIntervalMs() { return storageFsyncIntervalMs; }
+
+    @Value("${app.storageSnapshotInterval}")
+    private int storageSnapshotInterval;
+    public int getStorageSnapshotInterval() { return storageSnapshotInterval; }
 }
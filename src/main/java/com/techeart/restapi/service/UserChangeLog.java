@@ -0,0 +1,154 @@
+package com.techeart.restapi.service;
+
+import com.techeart.restapi.api.exception.ApiRequestException;
+import com.techeart.restapi.repository.UserChange;
+import com.techeart.restapi.repository.UserRepository;
+import jakarta.annotation.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * The latest changes of the repository, so that clients can sync the users changed since a version
+ * instead of loading all of them again.
+ * <p>
+ * Changes are kept in a ring of {@code app.changeLogSize} entries, appended by the writing thread
+ * of the repository. Changes older than the ring, or than the start of the application, are not
+ * available; a client behind them has to reload all users.
+ * */
+@Service
+public class UserChangeLog
+{
+    private final UserRepository repository;
+    private final ConfigurationService config;
+
+    private final StampedLock lock = new StampedLock();
+    private final UserChange[] ring;
+
+    /**
+     * Count of changes ever appended, the sequence of the next one.
+     * */
+    private long head;
+
+    /**
+     * Version of the latest change dropped from the ring. All changes after it are kept.
+     * */
+    private long evictedVersion;
+
+    @Autowired
+    public UserChangeLog(UserRepository repository, ConfigurationService config)
+    {
+        this.repository = repository;
+        this.config = config;
+        this.ring = new UserChange[Math.max(1, config.getChangeLogSize())];
+
+        repository.addChangeListener(this::append);
+        /*read after the registration, so that no change after it is missed*/
+        this.evictedVersion = repository.version();
+    }
+
+    /**
+     * Returns the changes after the given version, oldest first.
+     *
+     * @param limit max count of changes to return, limited as the page size is
+     * @throws ApiRequestException 410 if the changes right after the version are not kept anymore
+     * */
+    public Changes since(long version, @Nullable Integer limit) throws ApiRequestException
+    {
+        int lim = Math.min(limit == null ? config.getPaginationDefaultLimit() : limit, config.getPaginationMaxLimit());
+        if (version > repository.version())
+            throw new ApiRequestException(HttpStatus.GONE, "Unknown version " + version + ", reload the users.");
+
+        /*optimistic read: retried under the read lock only if a change was appended meanwhile*/
+        long stamp = lock.tryOptimisticRead();
+        Changes changes = stamp == 0 ? null : read(version, lim);
+
+        if (!lock.validate(stamp))
+        {
+            stamp = lock.readLock();
+            try
+            {
+                changes = read(version, lim);
+            }
+            finally
+            {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        if (changes == null)
+            throw new ApiRequestException(HttpStatus.GONE,
+                    "Changes since version " + version + " are no longer available, reload the users.");
+
+        return changes;
+    }
+
+    /**
+     * @return null if changes after the version were dropped already
+     * */
+    private Changes read(long version, int limit)
+    {
+        if (version < evictedVersion)
+            return null;
+
+        long end = head;
+        long oldest = Math.max(0, end - ring.length);
+
+        /*the first change after the version: versions grow with the sequence*/
+        long low = oldest;
+        long high = end;
+        while (low < high)
+        {
+            long middle = (low + high) >>> 1;
+            /*null only in an inconsistent optimistic read, which is repeated*/
+            UserChange change = entry(middle);
+            if (change != null && change.version() <= version)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+
+        int count = (int) Math.min(Math.max(0, limit), end - low);
+        List<UserChange> changes = new ArrayList<>(count);
+        for (long sequence = low; sequence < low + count; sequence++)
+            changes.add(entry(sequence));
+
+        UserChange last = count == 0 ? null : changes.getLast();
+        long lastVersion = last == null ? version : last.version();
+        return new Changes(changes, lastVersion, low + count < end);
+    }
+
+    private void append(UserChange change)
+    {
+        long stamp = lock.writeLock();
+        try
+        {
+            int index = (int) (head % ring.length);
+            if (ring[index] != null)
+                evictedVersion = ring[index].version();
+
+            ring[index] = change;
+            head++;
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private UserChange entry(long sequence)
+    {
+        return ring[(int) (sequence % ring.length)];
+    }
+
+    /**
+     * @param changes changes after the requested version, oldest first
+     * @param version version to request the next changes after
+     * @param hasMore whether more changes after {@code version} are kept already
+     * */
+    public record Changes(List<UserChange> changes, long version, boolean hasMore) {  }
+}
@@ -0,0 +1,172 @@
+package com.techeart.restapi.service;
+
+import com.techeart.restapi.repository.UserChange;
+import com.techeart.restapi.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pushes the changes of the repository to subscribers as server-sent events.
+ * <p>
+ * Changes are published into a ring of {@code app.changeStreamSize} entries without locks, and every
+ * subscriber is served by its own virtual thread reading the ring at its own pace. Writers never wait
+ * for subscribers: a subscriber that falls a whole ring behind gets a {@code resync} event and is
+ * disconnected, and has to reload the users.
+ * */
+@Service
+public class UserChangeStream
+{
+    static final String CHANGE_EVENT = "change";
+    static final String RESYNC_EVENT = "resync";
+
+    /**
+     * Idle time after which a comment is sent, so that closed connections are noticed.
+     * */
+    private static final long HEARTBEAT_NANOS = TimeUnit.SECONDS.toNanos(15);
+
+    private final AtomicReferenceArray<Entry> ring;
+
+    /**
+     * Sequence of the next change. Written by the single writing thread of the repository
+     * after the entry, so that entries below it are visible to the subscribers.
+     * */
+    private volatile long head;
+
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    public UserChangeStream(UserRepository repository, ConfigurationService config)
+    {
+        this.ring = new AtomicReferenceArray<>(Math.max(1, config.getChangeStreamSize()));
+        repository.addChangeListener(this::publish);
+    }
+
+    /**
+     * Starts sending the changes after this call to a new emitter.
+     * */
+    public SseEmitter subscribe()
+    {
+        /*no timeout: the stream ends when the client disconnects*/
+        return subscribe(new SseEmitter(0L));
+    }
+
+    SseEmitter subscribe(SseEmitter emitter)
+    {
+        Subscriber subscriber = new Subscriber(emitter, head);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+
+        subscribers.add(subscriber);
+        subscriber.thread = Thread.ofVirtual().name("user-change-stream").start(() -> serve(subscriber));
+        return emitter;
+    }
+
+    @PreDestroy
+    public void close()
+    {
+        for (Subscriber subscriber : subscribers)
+        {
+            subscriber.close();
+            subscriber.emitter.complete();
+        }
+    }
+
+    private void publish(UserChange change)
+    {
+        long sequence = head;
+        ring.set(index(sequence), new Entry(sequence, change));
+        head = sequence + 1;
+
+        for (Subscriber subscriber : subscribers)
+            LockSupport.unpark(subscriber.thread);
+    }
+
+    private void serve(Subscriber subscriber)
+    {
+        long cursor = subscriber.cursor;
+        long lastSend = System.nanoTime();
+
+        try
+        {
+            while (!subscriber.closed)
+            {
+                long end = head;
+                for (; cursor < end; cursor++)
+                {
+                    Entry entry = ring.get(index(cursor));
+                    /*overwritten by a writer that went around the ring meanwhile*/
+                    if (entry.sequence() != cursor)
+                    {
+                        subscriber.emitter.send(SseEmitter.event().name(RESYNC_EVENT).data("Resync required."));
+                        subscriber.emitter.complete();
+                        return;
+                    }
+
+                    subscriber.emitter.send(SseEmitter.event()
+                            .name(CHANGE_EVENT)
+                            .id(Long.toString(entry.change().version()))
+                            .data(entry.change(), MediaType.APPLICATION_JSON));
+                    lastSend = System.nanoTime();
+                }
+
+                if (System.nanoTime() - lastSend >= HEARTBEAT_NANOS)
+                {
+                    subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                    lastSend = System.nanoTime();
+                }
+
+                /*woken up by the next change; a wake-up before parking is not lost*/
+                if (head == end)
+                    LockSupport.parkNanos(HEARTBEAT_NANOS);
+            }
+        }
+        catch (IOException | IllegalStateException e)
+        {
+            /*the client is gone or the emitter completed*/
+            subscriber.emitter.completeWithError(e);
+        }
+        finally
+        {
+            subscriber.close();
+        }
+    }
+
+    private int index(long sequence)
+    {
+        return (int) (sequence % ring.length());
+    }
+
+    private final class Subscriber
+    {
+        private final SseEmitter emitter;
+        private final long cursor;
+
+        private volatile Thread thread;
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter, long cursor)
+        {
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+
+        private void close()
+        {
+            closed = true;
+            subscribers.remove(this);
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private record Entry(long sequence, UserChange change) {  }
+}
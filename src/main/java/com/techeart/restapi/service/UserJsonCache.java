@@ -0,0 +1,112 @@
+package com.techeart.restapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.techeart.restapi.api.data.DataResponseDto;
+import com.techeart.restapi.api.exception.ApiRequestException;
+import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.repository.UserChange;
+import com.techeart.restapi.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serialized single user responses, so that users polled over and over are not serialized again.
+ * <p>
+ * An entry is dropped when its user is updated, patched or deleted. When the cache is full
+ * an arbitrary entry makes room for a new one.
+ * */
+@Service
+public class UserJsonCache
+{
+    private final UsersService usersService;
+    private final ObjectWriter writer;
+    private final int maxEntries;
+
+    private final ConcurrentHashMap<UUID, UserJson> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Version of the latest update or delete. A response serialized from a user read before it
+     * may already be outdated, so it is returned but not cached.
+     * */
+    private volatile long invalidatedVersion;
+
+    @Autowired
+    public UserJsonCache(UsersService usersService, UserRepository repository,
+                         ObjectMapper mapper, ConfigurationService config)
+    {
+        this.usersService = usersService;
+        this.writer = mapper.writerFor(DataResponseDto.class);
+        this.maxEntries = config.getUserJsonCacheSize();
+
+        repository.addChangeListener(this::onChange);
+    }
+
+    /**
+     * Returns the serialized response of a single user.
+     * */
+    public UserJson get(UUID userId) throws ApiRequestException
+    {
+        UserJson cached = entries.get(userId);
+        if (cached != null)
+            return cached;
+
+        long version = invalidatedVersion;
+        UserJson json = serialize(usersService.getOne(userId));
+
+        if (maxEntries <= 0)
+            return json;
+
+        if (entries.size() >= maxEntries)
+            evictOne();
+
+        /*checked atomically with the removal of the entry by a concurrent write of the same user*/
+        entries.compute(userId, (id, current) -> current != null || version != invalidatedVersion ? current : json);
+
+        return json;
+    }
+
+    private void onChange(UserChange change)
+    {
+        if (change.type() == UserChange.Type.CREATE)
+            return;
+
+        invalidatedVersion = change.version();
+        entries.remove(change.id());
+    }
+
+    private UserJson serialize(User user)
+    {
+        try
+        {
+            byte[] body = writer.writeValueAsBytes(new DataResponseDto(user));
+            return new UserJson(body, "\"" + DigestUtils.md5DigestAsHex(body) + "\"");
+        }
+        catch (JsonProcessingException e)
+        {
+            throw new IllegalStateException("Can't serialize user " + user.getId(), e);
+        }
+    }
+
+    private void evictOne()
+    {
+        Iterator<UUID> ids = entries.keySet().iterator();
+        if (ids.hasNext())
+        {
+            ids.next();
+            ids.remove();
+        }
+    }
+
+    /**
+     * @param body serialized {@link DataResponseDto} holding the user
+     * @param etag strong entity tag of the body, quoted
+     * */
+    public record UserJson(byte[] body, String etag) {  }
+}
@@ -1,31 +1,60 @@
 package com.techeart.restapi.service;
 
+import com.techeart.restapi.api.data.DataLookupResponseDto;
 import com.techeart.restapi.api.data.DataResponseDto;
 import com.techeart.restapi.api.data.DataResponsePageDto;
 import com.techeart.restapi.api.data.UserPatchDto;
+import com.techeart.restapi.api.data.UserPatchItemDto;
 import com.techeart.restapi.api.exception.ApiRequestException;
 import com.techeart.restapi.api.exception.BadEmailException;
+import com.techeart.restapi.api.model.BatchItemResult;
 import com.techeart.restapi.api.model.PaginationInfo;
 import com.techeart.restapi.api.model.PaginationLinks;
 import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.index.EmailIndex;
+import com.techeart.restapi.repository.SortOrder;
+import com.techeart.restapi.repository.UserPage;
+import com.techeart.restapi.repository.UserQuery;
+import com.techeart.restapi.repository.UserRepository;
+import com.techeart.restapi.repository.UserSearchResult;
+import com.techeart.restapi.repository.UserSnapshot;
+import com.techeart.restapi.repository.WriteResult;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
-import java.time.Period;
 import java.util.*;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Service
 public class UsersService
 {
+    /**
+     * Prefixes of the decoded cursors: a page after or before the user with the given key.
+     * */
+    private static final char CURSOR_AFTER = 'a';
+    private static final char CURSOR_BEFORE = 'b';
+
     private final ConfigurationService config;
+    private final UserRepository repository;
+    private final Validator validator;
+    private final AgeCutoffs ages;
 
     @Autowired
-    public UsersService(ConfigurationService config)
+    public UsersService(ConfigurationService config, UserRepository repository, Validator validator, AgeCutoffs ages)
     {
         this.config = config;
+        this.repository = repository;
+        this.validator = validator;
+        this.ages = ages;
     }
 
     public DataResponseDto get(@Nullable Integer offset, @Nullable Integer limit, String url)
@@ -33,72 +62,254 @@ public class UsersService
         int ofs = offset == null ? config.getPaginationDefaultOffset() : offset;
         int lim = limit == null ? config.getPaginationDefaultLimit() : limit;
 
-        return createResponsePage(USERS, ofs, lim, url);
+        return createResponsePage(ofs, lim, null, url);
+    }
+
+    /**
+     * Returns a page of users in the order given by a sort parameter, see {@link SortOrder}.
+     * The links of the page keep the order.
+     * */
+    public DataResponseDto getSorted(@Nonnull String sort, @Nullable Integer offset, @Nullable Integer limit, String url)
+            throws ApiRequestException
+    {
+        SortOrder order;
+        try
+        {
+            order = SortOrder.parse(sort);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw ApiRequestException.badRequest(e.getMessage());
+        }
+
+        int ofs = offset == null ? config.getPaginationDefaultOffset() : offset;
+        int lim = limit == null ? config.getPaginationDefaultLimit() : limit;
+
+        return createResponsePage(ofs, lim, order, url);
+    }
+
+    /**
+     * Returns the page pointed by a cursor taken from the links of a previous page.
+     * An empty cursor points to the first page.
+     * */
+    public DataResponseDto getByCursor(@Nonnull String cursor, @Nullable Integer limit, String url)
+            throws ApiRequestException
+    {
+        int lim = Math.min(limit == null ? config.getPaginationDefaultLimit() : limit, config.getPaginationMaxLimit());
+        if (lim <= 0)
+            return new DataResponseDto();
+
+        UserPage page;
+        if (cursor.isEmpty())
+        {
+            page = repository.findPageAfter(UserPage.NO_KEY, lim);
+        }
+        else
+        {
+            String decoded = decodeCursor(cursor);
+            long key = parseCursorKey(decoded);
+            try
+            {
+                page = decoded.charAt(0) == CURSOR_AFTER
+                        ? repository.findPageAfter(key, lim)
+                        : repository.findPageBefore(key, lim);
+            }
+            catch (IllegalArgumentException e)
+            {
+                /*users moved to other slots since the cursor was made, on a restart, restore or compaction*/
+                throw ApiRequestException.badRequest("Cursor has expired, start again from the first page.");
+            }
+        }
+
+        if (page.users().isEmpty())
+            return new DataResponseDto();
+
+        PaginationInfo pagination = new PaginationInfo(page.offset(), page.users().size(), page.total(), page.version());
+        PaginationLinks links = new PaginationLinks();
+
+        if (page.hasNext())
+            links.setNext(createCursorUrl(url, CURSOR_AFTER, page.lastKey(), lim));
+
+        if (page.hasPrevious())
+            links.setPrev(createCursorUrl(url, CURSOR_BEFORE, page.firstKey(), lim));
+
+        return new DataResponsePageDto(pagination, links, page.users().toArray());
     }
 
     public User getOne(UUID userId) throws ApiRequestException
     {
-        for (User u : USERS)
+        return repository.findById(userId)
+                .orElseThrow(() -> ApiRequestException.notFound("No user found on given id."));
+    }
+
+    /**
+     * Finds the users of all ids in a single read of the repository.
+     *
+     * @return the users found, in the order of the ids, and the ids not found
+     * */
+    public DataLookupResponseDto getMany(@Nullable List<UUID> userIds) throws ApiRequestException
+    {
+        if (userIds == null || userIds.isEmpty())
+            throw ApiRequestException.badRequest("No user ids provided.");
+
+        if (userIds.size() > config.getLookupMaxIds())
+            throw ApiRequestException.badRequest("Too many user ids in one lookup, the limit is " + config.getLookupMaxIds() + ".");
+
+        if (userIds.stream().anyMatch(Objects::isNull))
+            throw ApiRequestException.badRequest("User id can not be null.");
+
+        List<User> found = repository.findAllById(userIds);
+        List<User> users = new ArrayList<>(found.size());
+        List<UUID> missing = new ArrayList<>();
+        for (int i = 0; i < found.size(); i++)
         {
-            if (userId.equals(u.getId()))
-                return u;
+            if (found.get(i) != null)
+                users.add(found.get(i));
+            else
+                missing.add(userIds.get(i));
         }
 
-        throw ApiRequestException.notFound("No user found on given id.");
+        return new DataLookupResponseDto(missing, users.toArray());
     }
 
     public List<User> getByBirthDate(@Nonnull LocalDate minBirthDate, @Nullable LocalDate maxBirthDate)
             throws ApiRequestException
     {
-        LocalDate maxDate = maxBirthDate == null ? LocalDate.now() : maxBirthDate;
+        LocalDate maxDate = maxBirthDate == null ? ages.today() : maxBirthDate;
 
         if (minBirthDate.isAfter(maxDate))
             throw ApiRequestException.badRequest("Argument 'minBirthDate' cannot be less than 'maxBirthDate'.");
 
-        List<User> result = new ArrayList<>();
+        /*both bounds are exclusive*/
+        return repository.findByBirthDateBetween(minBirthDate.toEpochDay() + 1, maxDate.toEpochDay() - 1);
+    }
 
-        USERS.forEach(u -> {
-            LocalDate bd = u.getBirthDate();
-            if (bd.isAfter(minBirthDate) && bd.isBefore(maxDate))
-                result.add(u);
-        });
+    /**
+     * Returns users whose age in whole years is within the given bounds (both inclusive and optional).
+     * */
+    public List<User> getByAge(@Nullable Integer minAge, @Nullable Integer maxAge) throws ApiRequestException
+    {
+        if (minAge == null && maxAge == null)
+            throw ApiRequestException.badRequest("No age bounds provided.");
 
-        return result;
+        checkAgeBounds(minAge, maxAge);
+        return repository.findByBirthDateBetween(
+                maxAge == null ? Long.MIN_VALUE : ages.bornOnOrAfter(maxAge).toEpochDay(),
+                ages.bornOnOrBefore(minAge == null ? 0 : minAge).toEpochDay());
     }
 
-    public User add(@Nullable User user) throws ApiRequestException
+    /**
+     * Finds users meeting all criteria of the query and being of an age within the given bounds
+     * (both inclusive and optional), which narrow the birth date range of the query.
+     *
+     * @param limit max count of users, limited as the page size is
+     * */
+    public UserSearchResult search(UserQuery query, @Nullable Integer minAge, @Nullable Integer maxAge,
+                                   @Nullable Integer limit) throws ApiRequestException
     {
-        if (user == null)
-            throw ApiRequestException.badRequest("Can't create new user: no valid user data provided.");
+        if (query.isEmpty() && minAge == null && maxAge == null)
+            throw ApiRequestException.badRequest("No search criteria provided.");
+
+        if (query.minBirthDate() != null && query.maxBirthDate() != null && query.minBirthDate().isAfter(query.maxBirthDate()))
+            throw ApiRequestException.badRequest("Argument 'minBirthDate' cannot be less than 'maxBirthDate'.");
 
-        int userAge = getUserAgeInYears(user);
-        if (!isUserAgeValid(userAge))
+        if (minAge != null || maxAge != null)
         {
-            if (userAge == -1)
-                throw ApiRequestException.badRequest("Wrong user birth date: " + user.getBirthDate());
-            else
-                throw ApiRequestException.forbidden("Illegal user age: " + userAge);
+            checkAgeBounds(minAge, maxAge);
+            query = new UserQuery(query.emailDomain(), query.firstName(), query.lastName(),
+                    later(query.minBirthDate(), maxAge == null ? null : ages.bornOnOrAfter(maxAge)),
+                    earlier(query.maxBirthDate(), minAge == null ? null : ages.bornOnOrBefore(minAge)),
+                    query.hasPhone(), query.hasAddress(), query.emailContains(), query.addressContains());
         }
 
-        for (User u : USERS)
+        int lim = Math.min(limit == null ? config.getPaginationDefaultLimit() : limit, config.getPaginationMaxLimit());
+        return repository.search(query, lim);
+    }
+
+    /**
+     * Finds users whose first or last name starts with the prefix, for typeahead.
+     *
+     * @param limit max count of users, limited as the page size is
+     * */
+    public List<User> suggest(@Nullable String prefix, @Nullable Integer limit) throws ApiRequestException
+    {
+        if (prefix == null || prefix.isBlank())
+            throw ApiRequestException.badRequest("Name prefix can not be empty.");
+
+        int lim = Math.min(limit == null ? config.getPaginationDefaultLimit() : limit, config.getPaginationMaxLimit());
+        return repository.findByNamePrefix(prefix, lim);
+    }
+
+    /**
+     * Returns a lazy stream of all users of the current snapshot in insertion order,
+     * optionally only those born within the given dates (both inclusive).
+     * */
+    public Stream<User> export(@Nullable LocalDate minBirthDate, @Nullable LocalDate maxBirthDate)
+            throws ApiRequestException
+    {
+        if (minBirthDate != null && maxBirthDate != null && minBirthDate.isAfter(maxBirthDate))
+            throw ApiRequestException.badRequest("Argument 'minBirthDate' cannot be less than 'maxBirthDate'.");
+
+        /*closed with the stream, so an export stopped early releases the snapshot*/
+        UserSnapshot snapshot = repository.snapshot();
+        Stream<User> users = StreamSupport.stream(snapshot.spliterator(), false).onClose(snapshot::close);
+        if (minBirthDate == null && maxBirthDate == null)
+            return users;
+
+        return users.filter(u -> u.getBirthDate() != null
+                && (minBirthDate == null || !u.getBirthDate().isBefore(minBirthDate))
+                && (maxBirthDate == null || !u.getBirthDate().isAfter(maxBirthDate)));
+    }
+
+    public User add(@Nullable User user) throws ApiRequestException
+    {
+        User result = createNewUser(user);
+        checkWriteResult(repository.insert(result));
+
+        return result;
+    }
+
+    /**
+     * Validates and creates all valid users at once. Users failing validation, repeating an address
+     * of a preceding item or using a taken address are skipped, without failing the others.
+     *
+     * @return the outcome of every item, in the order of the items
+     * */
+    public List<BatchItemResult> addAll(@Nullable List<User> users) throws ApiRequestException
+    {
+        checkBatch(users, "Can't create users: no valid user data provided.");
+
+        BatchItemResult[] results = new BatchItemResult[users.size()];
+        List<User> accepted = new ArrayList<>(users.size());
+        int[] acceptedIndexes = new int[users.size()];
+        Set<String> emails = new HashSet<>();
+
+        for (int i = 0; i < users.size(); i++)
         {
-            if (u.getEmail().equals(user.getEmail()))
-                throw new BadEmailException("Email address is already in use.");
+            try
+            {
+                User user = validate(users.get(i));
+                if (user.getEmail() != null && !emails.add(EmailIndex.normalize(user.getEmail())))
+                    throw new BadEmailException("Email address is repeated in the batch.");
+
+                acceptedIndexes[accepted.size()] = i;
+                accepted.add(createNewUser(user));
+            }
+            catch (ApiRequestException e)
+            {
+                results[i] = new BatchItemResult(i, e.getStatusCode(), null, e.getMessage());
+            }
         }
 
-        UUID id = UUID.randomUUID();
-        User result = new User(
-                id,
-                user.getEmail(),
-                user.getFirstName(),
-                user.getLastName(),
-                user.getBirthDate(),
-                user.getAddress(),
-                user.getPhoneNumber()
-        );
-        USERS.add(result);
+        List<WriteResult> written = accepted.isEmpty() ? List.of() : repository.insertAll(accepted);
+        for (int j = 0; j < written.size(); j++)
+        {
+            WriteResult result = written.get(j);
+            UUID id = result == WriteResult.OK ? accepted.get(j).getId() : null;
+            results[acceptedIndexes[j]] = createItemResult(acceptedIndexes[j], id, result, HttpStatus.CREATED);
+        }
 
-        return result;
+        return Arrays.asList(results);
     }
 
     public void update(@Nullable User user) throws ApiRequestException
@@ -106,14 +317,7 @@ public class UsersService
         if (user == null)
             throw ApiRequestException.badRequest("Can't update user: no valid user data provided.");
 
-        int index = getUpdateIndex(user);
-
-        if (index == -2)
-            throw new BadEmailException("Email address is already in use.");
-        else if (index < 0)
-            throw ApiRequestException.notFound("No user found on given id.");
-
-        USERS.set(index, user);
+        checkWriteResult(repository.replace(user));
     }
 
     public void patch(@Nullable UUID userId, @Nullable UserPatchDto data) throws ApiRequestException
@@ -124,137 +328,257 @@ public class UsersService
         if (data == null)
             throw ApiRequestException.badRequest("Can't update user: no valid user data provided.");
 
-        User original = getOne(userId);
-
-        User user = data.patchUser(original);
-        update(user);
+        checkWriteResult(repository.replace(userId, data::patchUser));
     }
 
     public void delete(UUID userId) throws ApiRequestException
     {
-        for (int i = 0; i < USERS.size(); i++)
+        checkWriteResult(repository.delete(userId));
+    }
+
+    /**
+     * Applies all patches at once. Patches of unknown users, or taking an address in use,
+     * are skipped without failing the others.
+     *
+     * @return the outcome of every patch, in the order of the patches
+     * */
+    public List<BatchItemResult> patchAll(@Nullable List<UserPatchItemDto> patches) throws ApiRequestException
+    {
+        checkBatch(patches, "Can't update users: no valid user data provided.");
+
+        BatchItemResult[] results = new BatchItemResult[patches.size()];
+        Map<UUID, UnaryOperator<User>> changes = new LinkedHashMap<>();
+        int[] changeIndexes = new int[patches.size()];
+
+        for (int i = 0; i < patches.size(); i++)
         {
-            if (USERS.get(i).getId().equals(userId))
+            UserPatchItemDto patch = patches.get(i);
+            if (patch == null || patch.getId() == null)
+                results[i] = new BatchItemResult(i, HttpStatus.BAD_REQUEST, null, "User id can not be null.");
+            else if (changes.containsKey(patch.getId()))
+                results[i] = new BatchItemResult(i, HttpStatus.BAD_REQUEST, patch.getId(), "User is repeated in the batch.");
+            else
             {
-                USERS.remove(i);
-                return;
+                changeIndexes[changes.size()] = i;
+                changes.put(patch.getId(), patch::patchUser);
             }
         }
 
-        throw ApiRequestException.notFound("No user found on given id.");
+        List<WriteResult> written = changes.isEmpty() ? List.of() : repository.replaceAll(changes);
+        Iterator<UUID> ids = changes.keySet().iterator();
+        for (int j = 0; j < written.size(); j++)
+            results[changeIndexes[j]] = createItemResult(changeIndexes[j], ids.next(), written.get(j), HttpStatus.OK);
+
+        return Arrays.asList(results);
     }
 
-    private boolean isUserAgeValid(int ageYears)
+    /**
+     * Deletes all users at once, skipping unknown ids.
+     *
+     * @return the outcome of every id, in the order of the ids
+     * */
+    public List<BatchItemResult> deleteAll(@Nullable List<UUID> userIds) throws ApiRequestException
     {
-        return ageYears >= config.getUserMinAge();
+        checkBatch(userIds, "No user ids provided.");
+
+        BatchItemResult[] results = new BatchItemResult[userIds.size()];
+        Set<UUID> ids = new LinkedHashSet<>();
+        int[] idIndexes = new int[userIds.size()];
+
+        for (int i = 0; i < userIds.size(); i++)
+        {
+            UUID id = userIds.get(i);
+            if (id == null)
+                results[i] = new BatchItemResult(i, HttpStatus.BAD_REQUEST, null, "User id can not be null.");
+            else if (!ids.add(id))
+                results[i] = new BatchItemResult(i, HttpStatus.BAD_REQUEST, id, "User is repeated in the batch.");
+            else
+                idIndexes[ids.size() - 1] = i;
+        }
+
+        List<WriteResult> written = ids.isEmpty() ? List.of() : repository.deleteAll(ids);
+        Iterator<UUID> deleted = ids.iterator();
+        for (int j = 0; j < written.size(); j++)
+            results[idIndexes[j]] = createItemResult(idIndexes[j], deleted.next(), written.get(j), HttpStatus.OK);
+
+        return Arrays.asList(results);
     }
 
-    private int getUserAgeInYears(User user)
+    /**
+     * Checks the age of a new user and copies it with a new id.
+     * */
+    private User createNewUser(@Nullable User user) throws ApiRequestException
     {
-        if (user.getBirthDate().isAfter(LocalDate.now()))
-            return -1;
+        if (user == null)
+            throw ApiRequestException.badRequest("Can't create new user: no valid user data provided.");
+
+        /*compared with the cutoff of the day, the age itself is computed for the message only*/
+        if (!ages.isAtLeast(user.getBirthDate(), config.getUserMinAge()))
+        {
+            int userAge = ages.ageOf(user.getBirthDate());
+            if (userAge == -1)
+                throw ApiRequestException.badRequest("Wrong user birth date: " + user.getBirthDate());
+            else
+                throw ApiRequestException.forbidden("Illegal user age: " + userAge);
+        }
 
-        return Period.between(user.getBirthDate(), LocalDate.now()).getYears();
+        return new User(
+                UUID.randomUUID(),
+                user.getEmail(),
+                user.getFirstName(),
+                user.getLastName(),
+                user.getBirthDate(),
+                user.getAddress(),
+                user.getPhoneNumber()
+        );
     }
 
     /**
-     * Searches for the index of an updatable user in 'USERS' list.
-     * <p>
-     * Returns -2 if user email is already in use.
-     * Returns -1 if user with specified id has not been found.
-     * Otherwise, returns the index of a user with the same id in list.
+     * Checks the constraints of the user model, as the controller does for single users.
      * */
-    private int getUpdateIndex(User user)
-    {
-        /*
-         * searching for first id match
-         * and for any email match
-         * in the same loop
-         *
-         * updating value in list only if
-         * specified user id is found
-         * and there is no users with the same email and different id
-         * */
-
-        int idMatchIndex = -1;
-        int emailMatchIndex = -1;
-
-        for (int i = 0; i < USERS.size(); i++)
-        {
-            User u = USERS.get(i);
+    private User validate(@Nullable User user) throws ApiRequestException
+    {
+        if (user == null)
+            throw ApiRequestException.badRequest("Can't create new user: no valid user data provided.");
 
-            if (idMatchIndex < 0 && user.getId().equals(u.getId()))
-            {
-                idMatchIndex = i;
-            }
+        Set<ConstraintViolation<User>> violations = validator.validate(user);
+        if (!violations.isEmpty())
+            throw ApiRequestException.badRequest(violations.iterator().next().getMessage());
 
-            if (user.getEmail().equals(u.getEmail()))
-            {
-                emailMatchIndex = i;
-                break;
-            }
+        return user;
+    }
+
+    private void checkBatch(@Nullable List<?> items, String emptyMessage) throws ApiRequestException
+    {
+        if (items == null || items.isEmpty())
+            throw ApiRequestException.badRequest(emptyMessage);
+
+        if (items.size() > config.getBatchMaxSize())
+            throw ApiRequestException.badRequest("Too many items in one batch, the limit is " + config.getBatchMaxSize() + ".");
+    }
+
+    private BatchItemResult createItemResult(int index, @Nullable UUID userId, WriteResult result, HttpStatus successStatus)
+    {
+        try
+        {
+            checkWriteResult(result);
+            return new BatchItemResult(index, successStatus, userId, null);
+        }
+        catch (ApiRequestException e)
+        {
+            return new BatchItemResult(index, e.getStatusCode(), userId, e.getMessage());
         }
+    }
+
+    private void checkWriteResult(WriteResult result) throws ApiRequestException
+    {
+        switch (result)
+        {
+            case EMAIL_TAKEN -> throw new BadEmailException("Email address is already in use.");
+            case NOT_FOUND -> throw ApiRequestException.notFound("No user found on given id.");
+        }
+    }
 
-        if (emailMatchIndex >= 0 && idMatchIndex != emailMatchIndex)
-            return -2;
+    private void checkAgeBounds(@Nullable Integer minAge, @Nullable Integer maxAge) throws ApiRequestException
+    {
+        if (!isAgeInRange(minAge) || !isAgeInRange(maxAge))
+            throw ApiRequestException.badRequest("Age must be between 0 and " + AgeCutoffs.MAX_AGE + ".");
 
-        return idMatchIndex;
+        if (minAge != null && maxAge != null && minAge > maxAge)
+            throw ApiRequestException.badRequest("Argument 'minAge' cannot be greater than 'maxAge'.");
     }
 
-    private DataResponseDto createResponsePage(List<User> from, int offset, int limit, String url)
+    private static boolean isAgeInRange(@Nullable Integer age)
     {
-        int total = from.size();
-        if (total == 0)
-            return new DataResponseDto();
+        return age == null || (age >= 0 && age <= AgeCutoffs.MAX_AGE);
+    }
 
-        if (offset >= total)
-            return new DataResponseDto();
+    private static LocalDate later(@Nullable LocalDate a, @Nullable LocalDate b)
+    {
+        return a == null || (b != null && b.isAfter(a)) ? b : a;
+    }
 
+    private static LocalDate earlier(@Nullable LocalDate a, @Nullable LocalDate b)
+    {
+        return a == null || (b != null && b.isBefore(a)) ? b : a;
+    }
+
+    private DataResponseDto createResponsePage(int offset, int limit, @Nullable SortOrder order, String url)
+    {
         limit = Math.min(limit, config.getPaginationMaxLimit());
-        limit = Math.min(limit, total - offset);
 
-        if (limit <= 0)
+        if (offset < 0 || limit <= 0)
             return new DataResponseDto();
 
+        UserPage page = order == null ? repository.findPage(offset, limit) : repository.findSortedPage(order, offset, limit);
+        if (page.users().isEmpty())
+            return new DataResponseDto();
+
+        int total = page.total();
+        limit = page.users().size();
         int lastIndex = offset + limit;
 
-        List<User> data = from.subList(offset, lastIndex);
-        PaginationInfo pagination = new PaginationInfo(offset, limit, total);
+        PaginationInfo pagination = new PaginationInfo(offset, limit, total, page.version());
         PaginationLinks links = new PaginationLinks();
 
         if (lastIndex < total)
         {
-            String nextPageLink = createPageUrl(url, lastIndex, limit);
+            String nextPageLink = createPageUrl(url, lastIndex, limit, order);
             links.setNext(nextPageLink);
         }
 
         if (offset > 0)
         {
             int prevOfs = Math.max(offset - limit, 0);
-            String prevPageLink = createPageUrl(url, prevOfs, limit);
+            String prevPageLink = createPageUrl(url, prevOfs, limit, order);
             links.setPrev(prevPageLink);
         }
 
-        return new DataResponsePageDto(pagination, links, data.toArray());
+        return new DataResponsePageDto(pagination, links, page.users().toArray());
     }
 
-    private String createPageUrl(String baseUrl, int offset, int limit)
+    private String createPageUrl(String baseUrl, int offset, int limit, @Nullable SortOrder order)
     {
-        return baseUrl + "?offset=" + offset + "&limit=" + limit;
+        /*the names of sortable properties need no encoding*/
+        return baseUrl + "?offset=" + offset + "&limit=" + limit + (order == null ? "" : "&sort=" + order);
     }
 
-    /**
-     * Used only for the simulation of a repository
-     * because of persistence layer is absent in this demo app.
-     * */
-    private List<User> USERS = new ArrayList<>();
+    private String createCursorUrl(String baseUrl, char direction, long key, int limit)
+    {
+        String cursor = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((direction + Long.toString(key)).getBytes(StandardCharsets.US_ASCII));
+        return baseUrl + "?cursor=" + cursor + "&limit=" + limit;
+    }
 
-    /**
-     * Used only for testing purposes
-     * because of persistence layer is absent in this demo app.
-     * */
-    public void initUsersList(List<User> data)
+    private String decodeCursor(String cursor) throws ApiRequestException
     {
-        USERS = data;
+        try
+        {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            if (decoded.length() > 1 && (decoded.charAt(0) == CURSOR_AFTER || decoded.charAt(0) == CURSOR_BEFORE))
+                return decoded;
+        }
+        catch (IllegalArgumentException e)
+        {
+            /*reported below*/
+        }
+
+        throw ApiRequestException.badRequest("Invalid cursor.");
+    }
+
+    private long parseCursorKey(String decoded) throws ApiRequestException
+    {
+        try
+        {
+            long key = Long.parseLong(decoded, 1, decoded.length(), 10);
+            if (key >= 0)
+                return key;
+        }
+        catch (NumberFormatException e)
+        {
+            /*reported below*/
+        }
+
+        throw ApiRequestException.badRequest("Invalid cursor.");
     }
 }
@@ -0,0 +1,64 @@
+package com.techeart.restapi.benchmark;
+
+import com.techeart.restapi.api.model.User;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates users resembling real data: names and addresses repeat, emails are unique.
+ * */
+final class SyntheticUsers
+{
+    private static final String[] FIRST_NAMES = names("James", "Mary", "Robert", "Patricia", "John", "Jennifer",
+            "Michael", "Linda", "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica",
+            "Thomas", "Sarah", "Olena", "Andrii", "Oksana", "Dmytro", "Iryna", "Serhii", "Natalia", "Taras");
+
+    private static final String[] LAST_NAMES = names("Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia",
+            "Miller", "Davis", "Rodriguez", "Martinez", "Wilson", "Anderson", "Taylor", "Thomas", "Moore",
+            "Jackson", "Martin", "Lee", "Shevchenko", "Kovalenko", "Bondarenko", "Tkachenko", "Kravchenko", "Melnyk");
+
+    private static final String[] STREETS = { "Main St", "Oak Ave", "Pine Rd", "Maple Dr", "Cedar Ln", "Elm St",
+            "Khreshchatyk St", "Shevchenka Blvd", "Lesi Ukrainky Ave", "Park Rd", "Lake View", "Hill St" };
+
+    private static final String[] CITIES = { "Kyiv", "Lviv", "Kharkiv", "Odesa", "Dnipro", "New York", "Chicago",
+            "Boston", "Denver", "Austin", "Seattle", "Warsaw" };
+
+    private static final String[] DOMAINS = { "gmail.com", "mail.com", "ukr.net", "outlook.com", "yahoo.com" };
+
+    private final Random random = new Random(42);
+    private int count;
+
+    User next()
+    {
+        int i = count++;
+        /*copies, as every deserialized request has its own instances*/
+        String firstName = new String(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]);
+        String lastName = new String(LAST_NAMES[random.nextInt(LAST_NAMES.length)]);
+
+        /*a few thousand distinct addresses, shared by the members of a household or a building*/
+        String address = (1 + random.nextInt(200)) + " " + STREETS[random.nextInt(STREETS.length)] + ", "
+                + CITIES[random.nextInt(CITIES.length)];
+
+        return new User(new UUID(random.nextLong(), random.nextLong()),
+                firstName.toLowerCase() + "." + lastName.toLowerCase() + i + "@" + DOMAINS[random.nextInt(DOMAINS.length)],
+                firstName,
+                lastName,
+                LocalDate.of(1950, 1, 1).plusDays(random.nextInt(20000)),
+                random.nextInt(4) == 0 ? null : address,
+                random.nextInt(3) == 0 ? null : "380" + (100000000 + random.nextInt(900000000)));
+    }
+
+    /**
+     * Every name is used with a few suffixes, giving a realistic number of distinct names.
+     * */
+    private static String[] names(String... base)
+    {
+        String[] result = new String[base.length * 8];
+        for (int i = 0; i < result.length; i++)
+            result[i] = i < base.length ? base[i] : base[i % base.length] + "-" + base[(i / base.length) % base.length];
+
+        return result;
+    }
+}
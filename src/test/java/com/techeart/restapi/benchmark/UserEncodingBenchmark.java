@@ -0,0 +1,98 @@
+package com.techeart.restapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.techeart.restapi.api.data.DataResponsePageDto;
+import com.techeart.restapi.api.model.PaginationInfo;
+import com.techeart.restapi.api.model.PaginationLinks;
+import com.techeart.restapi.api.model.User;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the size and the encoding and decoding time of user pages in JSON, CBOR and Smile,
+ * using mappers configured as the message converters of the application.
+ * <p>
+ * Not a part of the regular build, run with:
+ * mvn test -Dtest=UserEncodingBenchmark -Dbenchmark=true -Dbenchmark.pageSize=100
+ * */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class UserEncodingBenchmark
+{
+    private static final int PAGES = 100;
+    private static final int ROUNDS = 200;
+
+    private final int pageSize = Integer.getInteger("benchmark.pageSize", 100);
+
+    @Test
+    public void json() throws IOException
+    {
+        measure("json", Jackson2ObjectMapperBuilder.json().build());
+    }
+
+    @Test
+    public void cbor() throws IOException
+    {
+        measure("cbor", Jackson2ObjectMapperBuilder.cbor().build());
+    }
+
+    @Test
+    public void smile() throws IOException
+    {
+        measure("smile", Jackson2ObjectMapperBuilder.smile().build());
+    }
+
+    private void measure(String format, ObjectMapper mapper) throws IOException
+    {
+        SyntheticUsers generator = new SyntheticUsers();
+        List<DataResponsePageDto> pages = new ArrayList<>();
+        for (int p = 0; p < PAGES; p++)
+        {
+            Object[] users = new Object[pageSize];
+            for (int i = 0; i < pageSize; i++)
+                users[i] = generator.next();
+
+            pages.add(new DataResponsePageDto(new PaginationInfo(p * pageSize, pageSize, PAGES * pageSize, 1),
+                    new PaginationLinks("next", "prev"), users));
+        }
+
+        List<byte[]> encoded = new ArrayList<>();
+        for (DataResponsePageDto page : pages)
+            encoded.add(mapper.writeValueAsBytes(page));
+
+        long bytes = 0;
+        for (byte[] page : encoded)
+            bytes += page.length;
+
+        long encodeNanos = Long.MAX_VALUE;
+        long decodeNanos = Long.MAX_VALUE;
+        int checksum = 0;
+        for (int round = 0; round < ROUNDS; round++)
+        {
+            long start = System.nanoTime();
+            for (DataResponsePageDto page : pages)
+                checksum += mapper.writeValueAsBytes(page).length;
+            encodeNanos = Math.min(encodeNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (byte[] page : encoded)
+                checksum += mapper.readValue(page, Page.class).data().size();
+            decodeNanos = Math.min(decodeNanos, System.nanoTime() - start);
+        }
+
+        Assertions.assertTrue(checksum > 0);
+        System.out.printf("%-6s page of %d users: %,d B  encode: %,d us  decode: %,d us%n",
+                format, pageSize, bytes / PAGES, encodeNanos / PAGES / 1000, decodeNanos / PAGES / 1000);
+    }
+
+    /**
+     * Page as read by a client.
+     * */
+    private record Page(List<User> data, Map<String, Object> pagination, Map<String, Object> links) {  }
+}
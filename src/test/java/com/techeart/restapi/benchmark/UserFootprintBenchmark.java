@@ -0,0 +1,83 @@
+package com.techeart.restapi.benchmark;
+
+import com.techeart.restapi.repository.InMemoryUserRepository;
+import com.techeart.restapi.repository.UserRepository;
+import com.techeart.restapi.repository.columnar.ColumnarUserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.ref.Reference;
+import java.util.function.Supplier;
+
+/**
+ * Measures the memory taken by the users of each storage engine, with and without substring indexes (engines suffixed '-').
+ * <p>
+ * Not a part of the regular build, run with:
+ * mvn test -Dtest=UserFootprintBenchmark -Dbenchmark=true -Dbenchmark.users=1000000 -DargLine=-Xmx4g
+ * */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class UserFootprintBenchmark
+{
+    private final int users = Integer.getInteger("benchmark.users", 1_000_000);
+
+    @Test
+    public void memory()
+    {
+        measure("memory", InMemoryUserRepository::new);
+    }
+
+    @Test
+    public void columnar()
+    {
+        measure("columnar", ColumnarUserRepository::new);
+    }
+
+    @Test
+    public void memoryWithoutSubstringIndexes()
+    {
+        measure("memory-", () -> new InMemoryUserRepository(false));
+    }
+
+    @Test
+    public void columnarWithoutSubstringIndexes()
+    {
+        measure("columnar-", () -> new ColumnarUserRepository(false));
+    }
+
+    private void measure(String engine, Supplier<UserRepository> factory)
+    {
+        long before = usedHeap();
+
+        UserRepository repository = factory.get();
+        SyntheticUsers generator = new SyntheticUsers();
+        for (int i = 0; i < users; i++)
+            repository.insert(generator.next());
+
+        long heap = usedHeap() - before;
+        long offHeap = repository instanceof ColumnarUserRepository columnar ? columnar.allocatedBytes() : 0;
+
+        System.out.printf("%-10s users: %,d  heap: %,d MiB (%d B/user)  off-heap: %,d MiB (%d B/user)%n",
+                engine, users, heap >> 20, heap / users, offHeap >> 20, offHeap / users);
+
+        Reference.reachabilityFence(repository);
+    }
+
+    private static long usedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+        {
+            System.gc();
+            try
+            {
+                Thread.sleep(100);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
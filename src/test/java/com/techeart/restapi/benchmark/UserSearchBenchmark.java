@@ -0,0 +1,100 @@
+package com.techeart.restapi.benchmark;
+
+import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.repository.InMemoryUserRepository;
+import com.techeart.restapi.repository.UserQuery;
+import com.techeart.restapi.repository.UserRepository;
+import com.techeart.restapi.repository.columnar.ColumnarUserRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Measures the latency of index backed searches of each storage engine.
+ * <p>
+ * Not a part of the regular build, run with:
+ * mvn test -Dtest=UserSearchBenchmark -Dbenchmark=true -Dbenchmark.users=1000000 -DargLine=-Xmx4g
+ * */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class UserSearchBenchmark
+{
+    private static final int SEARCHES = 100_000;
+    private static final int LIMIT = 10;
+
+    private final int users = Integer.getInteger("benchmark.users", 1_000_000);
+
+    @Test
+    public void memory()
+    {
+        measure("memory", InMemoryUserRepository::new);
+    }
+
+    @Test
+    public void columnar()
+    {
+        measure("columnar", ColumnarUserRepository::new);
+    }
+
+    private void measure(String engine, Supplier<UserRepository> factory)
+    {
+        UserRepository repository = factory.get();
+        SyntheticUsers generator = new SyntheticUsers();
+        List<String> prefixes = new ArrayList<>();
+        List<UserQuery> fragments = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < users; i++)
+        {
+            User user = generator.next();
+            repository.insert(user);
+
+            /*prefixes typed so far: one to four letters of a stored name*/
+            if (prefixes.size() < 1000)
+            {
+                String name = random.nextBoolean() ? user.getFirstName() : user.getLastName();
+                prefixes.add(name.substring(0, 1 + random.nextInt(Math.min(4, name.length()))));
+            }
+
+            /*five chars from anywhere in a stored email or address*/
+            if (fragments.size() < 1000 && user.getAddress() != null)
+            {
+                boolean byEmail = random.nextBoolean();
+                String value = byEmail ? user.getEmail() : user.getAddress();
+                int from = random.nextInt(value.length() - 4);
+                String fragment = value.substring(from, from + 5);
+                fragments.add(new UserQuery(null, null, null, null, null, null, null,
+                        byEmail ? fragment : null, byEmail ? null : fragment));
+            }
+        }
+
+        int found = 0;
+        for (int i = 0; i < SEARCHES; i++)
+            found += repository.findByNamePrefix(prefixes.get(i % prefixes.size()), LIMIT).size();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < SEARCHES; i++)
+            found += repository.findByNamePrefix(prefixes.get(i % prefixes.size()), LIMIT).size();
+        long nanos = System.nanoTime() - start;
+
+        Assertions.assertTrue(found > 0);
+        System.out.printf("%-10s users: %,d  name prefix, top %d: %.1f us%n",
+                engine, users, LIMIT, nanos / 1000.0 / SEARCHES);
+
+        found = 0;
+        for (int i = 0; i < SEARCHES; i++)
+            found += repository.search(fragments.get(i % fragments.size()), LIMIT).users().size();
+
+        start = System.nanoTime();
+        for (int i = 0; i < SEARCHES; i++)
+            found += repository.search(fragments.get(i % fragments.size()), LIMIT).users().size();
+        nanos = System.nanoTime() - start;
+
+        Assertions.assertTrue(found > 0);
+        System.out.printf("%-10s users: %,d  substring, top %d: %.1f us%n",
+                engine, users, LIMIT, nanos / 1000.0 / SEARCHES);
+    }
+}
@@ -0,0 +1,78 @@
+package com.techeart.restapi.benchmark;
+
+import com.techeart.restapi.repository.InMemoryUserRepository;
+import com.techeart.restapi.repository.SortOrder;
+import com.techeart.restapi.repository.UserRepository;
+import com.techeart.restapi.repository.columnar.ColumnarUserRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Compares pages in a sort order with pages in insertion order, for each storage engine.
+ * <p>
+ * Not a part of the regular build, run with:
+ * mvn test -Dtest=UserSortBenchmark -Dbenchmark=true -Dbenchmark.users=1000000 -DargLine=-Xmx4g
+ * */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class UserSortBenchmark
+{
+    private static final int PAGES = 100_000;
+    private static final int LIMIT = 20;
+
+    private final int users = Integer.getInteger("benchmark.users", 1_000_000);
+
+    @Test
+    public void memory()
+    {
+        measure("memory", InMemoryUserRepository::new);
+    }
+
+    @Test
+    public void columnar()
+    {
+        measure("columnar", ColumnarUserRepository::new);
+    }
+
+    private void measure(String engine, Supplier<UserRepository> factory)
+    {
+        UserRepository repository = factory.get();
+        SyntheticUsers generator = new SyntheticUsers();
+        for (int i = 0; i < users; i++)
+            repository.insert(generator.next());
+
+        SortOrder order = SortOrder.parse("lastName,-birthDate");
+        long start = System.nanoTime();
+        repository.findSortedPage(order, 0, LIMIT);
+        long build = System.nanoTime() - start;
+
+        int[] offsets = new Random(7).ints(1000, 0, users - LIMIT).toArray();
+        long unsorted = time(offset -> repository.findPage(offset, LIMIT).users().size(), offsets);
+        long sorted = time(offset -> repository.findSortedPage(order, offset, LIMIT).users().size(), offsets);
+
+        System.out.printf("%-10s users: %,d  view built in %,d ms  page of %d: unsorted %.1f us, sorted %.1f us%n",
+                engine, users, build / 1_000_000, LIMIT, unsorted / 1000.0 / PAGES, sorted / 1000.0 / PAGES);
+    }
+
+    /**
+     * Reads the pages once to warm up and once measured, returning the time of the second run.
+     * */
+    private static long time(IntUnaryOperator page, int[] offsets)
+    {
+        int found = 0;
+        for (int i = 0; i < PAGES; i++)
+            found += page.applyAsInt(offsets[i % offsets.length]);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < PAGES; i++)
+            found += page.applyAsInt(offsets[i % offsets.length]);
+        long nanos = System.nanoTime() - start;
+
+        Assertions.assertEquals(2 * PAGES * LIMIT, found);
+        return nanos;
+    }
+}
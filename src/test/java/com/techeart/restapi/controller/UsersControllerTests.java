@@ -1,40 +1,68 @@
 package com.techeart.restapi.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.techeart.restapi.api.controller.UsersController;
+import com.techeart.restapi.api.data.DataLookupResponseDto;
 import com.techeart.restapi.api.data.DataRequestDto;
 import com.techeart.restapi.api.data.DataResponseDto;
 import com.techeart.restapi.api.data.DataResponsePageDto;
+import com.techeart.restapi.api.data.UserFieldsWriter;
 import com.techeart.restapi.api.data.UserPatchDto;
+import com.techeart.restapi.api.exception.ApiRequestException;
+import com.techeart.restapi.api.model.BatchItemResult;
 import com.techeart.restapi.api.model.PaginationInfo;
 import com.techeart.restapi.api.model.PaginationLinks;
 import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.repository.UserChange;
+import com.techeart.restapi.repository.UserQuery;
+import com.techeart.restapi.repository.UserRepository;
+import com.techeart.restapi.repository.UserSearchResult;
+import com.techeart.restapi.service.ConfigurationService;
+import com.techeart.restapi.service.UserChangeLog;
+import com.techeart.restapi.service.UserChangeStream;
+import com.techeart.restapi.service.UserJsonCache;
 import com.techeart.restapi.service.UsersService;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.nio.ByteBuffer;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(UsersController.class)
+@Import({UserJsonCache.class, UserFieldsWriter.class})
 public class UsersControllerTests
 {
     private static final String apiPath = "/api/v1/users";
+    private static final MediaType CBOR = MediaType.parseMediaType("application/cbor");
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
 
     @Autowired
     private MockMvc mvc;
@@ -42,6 +70,18 @@ public class UsersControllerTests
     @MockBean
     private UsersService service;
 
+    @MockBean
+    private UserRepository repository;
+
+    @MockBean
+    private ConfigurationService config;
+
+    @MockBean
+    private UserChangeLog changeLog;
+
+    @MockBean
+    private UserChangeStream changeStream;
+
     private final ObjectMapper MAPPER;
 
     public UsersControllerTests()
@@ -70,6 +110,24 @@ public class UsersControllerTests
                 .andExpect(jsonPath("$.data[0].phoneNumber", is(user.getPhoneNumber())));
     }
 
+    @Test
+    public void getOne_matchingETag_returnsNotModified() throws Exception
+    {
+        User user = new User(UUID.randomUUID(), "bob@gmail.com", "Bob", "Washington", LocalDate.of(1996, 6, 13));
+
+        given(service.getOne(user.getId())).willReturn(user);
+
+        String etag = mvc.perform(get(apiPath+"/{userId}", user.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mvc.perform(get(apiPath+"/{userId}", user.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+    }
+
     @Test
     public void getOne_gettingUser_returnsError() throws Exception
     {
@@ -91,8 +149,9 @@ public class UsersControllerTests
         int offset = 0;
         int limit = 1;
         int total = 1;
+        long version = 7;
         DataResponsePageDto result = new DataResponsePageDto(
-                new PaginationInfo(offset, limit, total),
+                new PaginationInfo(offset, limit, total, version),
                 new PaginationLinks(),
                 List.of(user).toArray()
         );
@@ -112,10 +171,145 @@ public class UsersControllerTests
                 .andExpect(jsonPath("$.pagination.offset", is(offset)))
                 .andExpect(jsonPath("$.pagination.limit", is(limit)))
                 .andExpect(jsonPath("$.pagination.total", is(total)))
+                .andExpect(jsonPath("$.pagination.version", is((int) version)))
                 .andExpect(jsonPath("$.links.next", equalTo(null)))
                 .andExpect(jsonPath("$.links.prev", equalTo(null)));
     }
 
+    @Test
+    public void getPage_sortParameter_returnsSortedPage() throws Exception
+    {
+        User user = new User(UUID.randomUUID(), "bob@gmail.com", "Bob", "Washington", LocalDate.of(1996, 6, 13));
+        DataResponsePageDto result = new DataResponsePageDto(
+                new PaginationInfo(0, 1, 1, 7), new PaginationLinks(), List.of(user).toArray());
+
+        given(service.getSorted(eq("lastName,-birthDate"), any(), any(), any())).willReturn(result);
+
+        mvc.perform(get(apiPath+"?sort=lastName,-birthDate").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(1)))
+                .andExpect(jsonPath("$.data[0].id", is(user.getId().toString())));
+    }
+
+    @Test
+    public void getPage_sortWithCursor_returnsError() throws Exception
+    {
+        mvc.perform(get(apiPath+"?sort=lastName&cursor=").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors", hasSize(1)));
+    }
+
+    @Test
+    public void getPage_selectedFields_returnsOnlyThoseFields() throws Exception
+    {
+        User user = new User(UUID.randomUUID(), "bob@gmail.com", "Bob", "Washington", LocalDate.of(1996, 6, 13));
+        DataResponsePageDto result = new DataResponsePageDto(
+                new PaginationInfo(0, 1, 1, 7),
+                new PaginationLinks(),
+                List.of(user).toArray()
+        );
+
+        given(service.get(any(), any(), any())).willReturn(result);
+
+        mvc.perform(get(apiPath).param("fields", "email,birthDate,id").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(1)))
+                .andExpect(jsonPath("$.data[0].*", hasSize(3)))
+                .andExpect(jsonPath("$.data[0].id", is(user.getId().toString())))
+                .andExpect(jsonPath("$.data[0].email", is(user.getEmail())))
+                .andExpect(jsonPath("$.data[0].birthDate", is(user.getBirthDate().toString())))
+                .andExpect(jsonPath("$.pagination.total", is(1)));
+    }
+
+    @Test
+    public void getPage_unknownField_returnsError() throws Exception
+    {
+        given(service.get(any(), any(), any())).willReturn(new DataResponseDto());
+
+        mvc.perform(get(apiPath).param("fields", "id,password").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors[0].detail").exists());
+    }
+
+    @Test
+    public void getPage_acceptingCbor_returnsCbor() throws Exception
+    {
+        User user = new User(UUID.randomUUID(), "bob@gmail.com", "Bob", "Washington", LocalDate.of(1996, 6, 13));
+        DataResponsePageDto result = new DataResponsePageDto(
+                new PaginationInfo(0, 1, 1, 7),
+                new PaginationLinks(),
+                List.of(user).toArray()
+        );
+
+        given(service.get(any(), any(), any())).willReturn(result);
+
+        byte[] body = mvc.perform(get(apiPath).accept(CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode decoded = new CBORMapper().readTree(body);
+        Assertions.assertEquals(user.getEmail(), decoded.at("/data/0/email").asText());
+        /*ids and dates are written as binary and numbers, not as text*/
+        Assertions.assertEquals(user.getId(), toUuid(decoded.at("/data/0/id").binaryValue()));
+        Assertions.assertEquals("[1996,6,13]", decoded.at("/data/0/birthDate").toString());
+        Assertions.assertEquals(7, decoded.at("/pagination/version").asLong());
+    }
+
+    @Test
+    public void getOne_acceptingSmile_returnsSmile() throws Exception
+    {
+        User user = new User(UUID.randomUUID(), "bob@gmail.com", "Bob", "Washington", LocalDate.of(1996, 6, 13));
+
+        given(service.getOne(user.getId())).willReturn(user);
+
+        byte[] body = mvc.perform(get(apiPath+"/{userId}", user.getId()).accept(SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        Assertions.assertEquals(user.getId(), toUuid(new SmileMapper().readTree(body).at("/data/0/id").binaryValue()));
+    }
+
+    @Test
+    public void getOne_preferringCborOverAnything_returnsCbor() throws Exception
+    {
+        User user = new User(UUID.randomUUID(), "bob@gmail.com", "Bob", "Washington", LocalDate.of(1996, 6, 13));
+
+        given(service.getOne(user.getId())).willReturn(user);
+
+        byte[] body = mvc.perform(get(apiPath+"/{userId}", user.getId()).header(HttpHeaders.ACCEPT, "application/cbor, */*;q=0.1"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        Assertions.assertEquals(user.getEmail(), new CBORMapper().readTree(body).at("/data/0/email").asText());
+    }
+
+    @Test
+    public void getOne_preferringJsonOverCbor_returnsJson() throws Exception
+    {
+        User user = new User(UUID.randomUUID(), "bob@gmail.com", "Bob", "Washington", LocalDate.of(1996, 6, 13));
+
+        given(service.getOne(user.getId())).willReturn(user);
+
+        mvc.perform(get(apiPath+"/{userId}", user.getId()).header(HttpHeaders.ACCEPT, "application/cbor;q=0.5, application/json"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.data[0].email", is(user.getEmail())));
+    }
+
+    @Test
+    public void getPage_fieldsAcceptingUnknownTypeOrAnything_returnsJson() throws Exception
+    {
+        given(service.get(any(), any(), any())).willReturn(new DataResponseDto());
+
+        mvc.perform(get(apiPath).param("fields", "id").header(HttpHeaders.ACCEPT, "text/html, */*;q=0.1"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+    }
+
     @Test
     public void getPage_gettingUsersNoParams_returnsEmptyArray() throws Exception
     {
@@ -180,6 +374,147 @@ public class UsersControllerTests
                 .andExpect(jsonPath("$.errors[0].detail").exists());
     }
 
+    @Test
+    public void findByBirthDate_ageBounds_returnsUsersOfAge() throws Exception
+    {
+        User user = new User(UUID.randomUUID(), "bob@gmail.com", "Bob", "Smith", LocalDate.of(2001, 6, 13));
+
+        given(service.getByAge(18, 30)).willReturn(List.of(user));
+
+        mvc.perform(get(apiPath+"/search?minAge=18&maxAge=30").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(1)))
+                .andExpect(jsonPath("$.data[0].id", is(user.getId().toString())));
+    }
+
+    @Test
+    public void findByBirthDate_datesAndAges_returnsError() throws Exception
+    {
+        mvc.perform(get(apiPath+"/search?minDate=2000-01-01&minAge=18").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors", hasSize(1)));
+    }
+
+    @Test
+    public void query_combinedCriteria_returnsUsersAndPlan() throws Exception
+    {
+        User user = new User(UUID.randomUUID(), "bob@gmail.com", "Bob", "Smith", LocalDate.of(2001, 6, 13));
+        UserQuery query = new UserQuery("gmail.com", null, "Smith", LocalDate.of(2000, 1, 1), null, true, null, null, null);
+
+        given(service.search(query, null, null, 5)).willReturn(new UserSearchResult(List.of(user), "index(lastName:1) -> filter(hasPhone)"));
+
+        mvc.perform(get(apiPath+"/query?emailDomain=gmail.com&lastName=Smith&minDate=2000-01-01&hasPhone=true&limit=5")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(UsersController.QUERY_PLAN_HEADER, "index(lastName:1) -> filter(hasPhone)"))
+                .andExpect(jsonPath("$.data", hasSize(1)))
+                .andExpect(jsonPath("$.data[0].id", is(user.getId().toString())));
+    }
+
+    @Test
+    public void query_substringCriteria_passesFragments() throws Exception
+    {
+        User user = new User(UUID.randomUUID(), "bob@gmail.com", "Bob", "Smith", LocalDate.of(2001, 6, 13));
+        UserQuery query = new UserQuery(null, null, null, null, null, null, null, "bob@", "baker st");
+
+        given(service.search(query, null, null, null)).willReturn(new UserSearchResult(List.of(user), "index(emailContains:1) & index(addressContains:5)"));
+
+        mvc.perform(get(apiPath+"/query?emailContains=bob@&addressContains=baker st").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(UsersController.QUERY_PLAN_HEADER, "index(emailContains:1) & index(addressContains:5)"))
+                .andExpect(jsonPath("$.data", hasSize(1)));
+    }
+
+    @Test
+    public void suggest_namePrefix_returnsSelectedFields() throws Exception
+    {
+        User user = new User(UUID.randomUUID(), "bob@gmail.com", "Bob", "Smith", LocalDate.of(2001, 6, 13));
+
+        given(service.suggest("bo", 5)).willReturn(List.of(user));
+
+        mvc.perform(get(apiPath+"/suggest?prefix=bo&limit=5&fields=id,firstName,lastName").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(1)))
+                .andExpect(jsonPath("$.data[0].firstName", is("Bob")))
+                .andExpect(jsonPath("$.data[0].email").doesNotExist());
+    }
+
+    @Test
+    public void findAllById_mixedIds_returnsUsersAndMissingIds() throws Exception
+    {
+        User user = new User(UUID.randomUUID(), "bob@gmail.com", "Bob", "Washington", LocalDate.of(1996, 6, 13));
+        UUID unknown = UUID.randomUUID();
+
+        given(service.getMany(List.of(unknown, user.getId()))).willReturn(new DataLookupResponseDto(List.of(unknown), user));
+
+        mvc.perform(post(apiPath+"/lookup").accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(MAPPER.writeValueAsString(new DataRequestDto<>(List.of(unknown, user.getId())))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(1)))
+                .andExpect(jsonPath("$.data[0].id", is(user.getId().toString())))
+                .andExpect(jsonPath("$.missing", contains(unknown.toString())));
+    }
+
+    @Test
+    public void getChanges_changesAfterVersion_returnsChanges() throws Exception
+    {
+        User user = new User(UUID.randomUUID(), "bob@gmail.com", "Bob", "Washington", LocalDate.of(1996, 6, 13));
+        List<UserChange> changes = List.of(
+                new UserChange(43, UserChange.Type.CREATE, user.getId(), user),
+                new UserChange(44, UserChange.Type.DELETE, user.getId(), null));
+
+        given(changeLog.since(42, 10)).willReturn(new UserChangeLog.Changes(changes, 44, true));
+
+        mvc.perform(get(apiPath+"/changes?since=42&limit=10").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version", is(44)))
+                .andExpect(jsonPath("$.hasMore", is(true)))
+                .andExpect(jsonPath("$.data", hasSize(2)))
+                .andExpect(jsonPath("$.data[0].type", is("CREATE")))
+                .andExpect(jsonPath("$.data[0].user.email", is("bob@gmail.com")))
+                .andExpect(jsonPath("$.data[1].type", is("DELETE")))
+                .andExpect(jsonPath("$.data[1].id", is(user.getId().toString())));
+    }
+
+    @Test
+    public void getChanges_changesDropped_returnsGone() throws Exception
+    {
+        given(changeLog.since(1, null)).willThrow(new ApiRequestException(HttpStatus.GONE, "Reload the users."));
+
+        mvc.perform(get(apiPath+"/changes?since=1").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isGone());
+    }
+
+    @Test
+    public void streamChanges_subscribing_startsEventStream() throws Exception
+    {
+        given(changeStream.subscribe()).willReturn(new SseEmitter());
+
+        mvc.perform(get(apiPath+"/changes/stream").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted());
+
+        verify(changeStream).subscribe();
+    }
+
+    @Test
+    public void export_gettingUsers_returnsUserPerLine() throws Exception
+    {
+        User first = new User(UUID.randomUUID(), "bob@gmail.com", "Bob", "Washington", LocalDate.of(1996, 6, 13));
+        User second = new User(UUID.randomUUID(), "john@gmail.com", "John", "Warner", LocalDate.of(2001, 6, 13));
+
+        given(service.export(any(), any())).willReturn(Stream.of(first, second));
+
+        MvcResult result = mvc.perform(get(apiPath+"/export").param("minDate", "1990-01-01"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(MAPPER.writeValueAsString(first) + "\n" + MAPPER.writeValueAsString(second) + "\n"));
+    }
+
     @Test
     public void create_addingNewUser_returnsSuccessCode() throws Exception
     {
@@ -191,6 +526,57 @@ public class UsersControllerTests
                 .andExpect(status().isCreated());
     }
 
+    @Test
+    public void createAll_addingUsers_returnsItemResults() throws Exception
+    {
+        List<User> users = List.of(
+                new User("bob@gmail.com", "Bob", "Washington", LocalDate.of(2001, 6, 13)),
+                new User("bob@gmail.com", "Bob", "Warner", LocalDate.of(2001, 6, 13)));
+        UUID id = UUID.randomUUID();
+
+        given(service.addAll(any())).willReturn(List.of(
+                new BatchItemResult(0, HttpStatus.CREATED, id, null),
+                new BatchItemResult(1, HttpStatus.BAD_REQUEST, null, "Email address is repeated in the batch.")));
+
+        mvc.perform(post(apiPath+"/batch").accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON).content(MAPPER.writeValueAsString(new DataRequestDto<>(users))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(2)))
+                .andExpect(jsonPath("$.data[0].status", is(201)))
+                .andExpect(jsonPath("$.data[0].id", is(id.toString())))
+                .andExpect(jsonPath("$.data[1].index", is(1)))
+                .andExpect(jsonPath("$.data[1].status", is(400)))
+                .andExpect(jsonPath("$.data[1].detail").exists());
+    }
+
+    @Test
+    public void deleteAll_deletingUsers_returnsItemResults() throws Exception
+    {
+        UUID id = UUID.randomUUID();
+
+        given(service.deleteAll(List.of(id))).willReturn(List.of(new BatchItemResult(0, HttpStatus.OK, id, null)));
+
+        mvc.perform(delete(apiPath+"/batch").accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON).content(MAPPER.writeValueAsString(new DataRequestDto<>(List.of(id)))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(1)))
+                .andExpect(jsonPath("$.data[0].status", is(200)))
+                .andExpect(jsonPath("$.data[0].id", is(id.toString())));
+    }
+
+    @Test
+    public void create_cborBody_returnsSuccessCode() throws Exception
+    {
+        User user = new User("bob@gmail.com", "Bob", "Washington", LocalDate.of(2001, 6, 13));
+        ObjectMapper cbor = new CBORMapper().registerModule(new JavaTimeModule())
+                .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+
+        mvc.perform(post(apiPath).contentType(CBOR).content(cbor.writeValueAsBytes(new DataRequestDto<>(user))))
+                .andExpect(status().isCreated());
+
+        verify(service).add(argThat(u -> u.getEmail().equals(user.getEmail()) && u.getBirthDate().equals(user.getBirthDate())));
+    }
+
     @Test
     public void create_addingInvalidUser_returnsError() throws Exception
     {
@@ -276,4 +662,10 @@ public class UsersControllerTests
                 .andExpect(jsonPath("$.errors[0].status").exists())
                 .andExpect(jsonPath("$.errors[0].detail").exists());
     }
+
+    private static UUID toUuid(byte[] bytes)
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
 }
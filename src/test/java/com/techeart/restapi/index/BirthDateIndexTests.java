@@ -0,0 +1,72 @@
+package com.techeart.restapi.index;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class BirthDateIndexTests
+{
+    @Test
+    public void addAndRemove_manyPages_keepsEntriesOrderedAndCounted()
+    {
+        // given
+        BirthDateIndex index = new BirthDateIndex();
+        TreeSet<Long> expected = new TreeSet<>();
+        long[] days = new Random(42).longs(200_000, 0, 3650).toArray();
+
+        // when
+        for (int slot = 0; slot < days.length; slot++)
+        {
+            index.add(days[slot], slot);
+            expected.add(days[slot] << 32 | slot);
+        }
+        for (int slot = 0; slot < days.length; slot += 3)
+        {
+            index.remove(days[slot], slot);
+            expected.remove(days[slot] << 32 | slot);
+        }
+
+        // then
+        Assertions.assertEquals(expected.size(), index.size());
+        Assertions.assertEquals(expected.stream().map(entry -> (int) (entry & 0xffffffffL)).toList(), slotsBetween(index, 0, 3649));
+        long inRange = expected.subSet(100L << 32, 200L << 32).size();
+        Assertions.assertEquals(inRange, index.countBetween(100, 199));
+        Assertions.assertEquals(inRange, slotsBetween(index, 100, 199).size());
+    }
+
+    @Test
+    public void snapshot_indexChangedAfterwards_keepsItsEntries()
+    {
+        // given
+        BirthDateIndex index = new BirthDateIndex();
+        for (int slot = 0; slot < 100_000; slot++)
+            index.add(slot % 1000, slot);
+        BirthDateIndex snapshot = index.snapshot();
+        List<Integer> before = slotsBetween(snapshot, 0, 999);
+
+        // when
+        for (int slot = 0; slot < 100_000; slot += 2)
+            index.remove(slot % 1000, slot);
+        for (int slot = 100_000; slot < 150_000; slot++)
+            index.add(slot % 1000, slot);
+
+        // then
+        Assertions.assertEquals(100_000, snapshot.size());
+        Assertions.assertEquals(before, slotsBetween(snapshot, 0, 999));
+        Assertions.assertEquals(100, snapshot.countBetween(0, 0));
+        Assertions.assertEquals(100_000, index.size());
+        Assertions.assertEquals(150, index.countBetween(1, 1));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> snapshot.add(1, 1));
+    }
+
+    private static List<Integer> slotsBetween(BirthDateIndex index, long fromDay, long toDay)
+    {
+        List<Integer> result = new ArrayList<>();
+        index.forEachBetween(fromDay, toDay, result::add);
+        return result;
+    }
+}
@@ -0,0 +1,83 @@
+package com.techeart.restapi.index;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+public class SlotBitmapTests
+{
+    @Test
+    public void add_slotsOfSeveralChunks_walksInAscendingOrder()
+    {
+        // given
+        SlotBitmap bitmap = new SlotBitmap();
+        int[] slots = { 200_000, 3, 65_536, 1, 65_535, 3 };
+
+        // when
+        for (int slot : slots)
+            bitmap.add(slot);
+
+        // then
+        Assertions.assertEquals(5, bitmap.size());
+        Assertions.assertEquals(List.of(1, 3, 65_535, 65_536, 200_000), toList(bitmap));
+        Assertions.assertTrue(bitmap.contains(65_536));
+        Assertions.assertFalse(bitmap.contains(2));
+    }
+
+    @Test
+    public void addAndRemove_denseChunk_switchesRepresentationKeepingSlots()
+    {
+        // given
+        SlotBitmap bitmap = new SlotBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        // when
+        for (int slot = 0; slot < 10_000; slot += 2)
+        {
+            bitmap.add(slot);
+            expected.add(slot);
+        }
+        for (int slot = 0; slot < 10_000; slot += 3)
+        {
+            bitmap.remove(slot);
+            expected.remove(slot);
+        }
+        for (int slot = 0; slot < 6_000; slot++)
+        {
+            bitmap.remove(slot);
+            expected.remove(slot);
+        }
+
+        // then
+        Assertions.assertEquals(expected.size(), bitmap.size());
+        Assertions.assertEquals(new ArrayList<>(expected), toList(bitmap));
+        Assertions.assertFalse(bitmap.remove(6_006));
+    }
+
+    @Test
+    public void remove_lastSlots_emptiesBitmap()
+    {
+        // given
+        SlotBitmap bitmap = new SlotBitmap();
+        bitmap.add(70_000);
+        bitmap.add(5);
+
+        // when
+        boolean removed = bitmap.remove(70_000) && bitmap.remove(5);
+
+        // then
+        Assertions.assertTrue(removed);
+        Assertions.assertEquals(0, bitmap.size());
+        Assertions.assertEquals(List.of(), toList(bitmap));
+    }
+
+    private static List<Integer> toList(SlotBitmap bitmap)
+    {
+        List<Integer> slots = new ArrayList<>();
+        bitmap.forEachWhile(slot -> slots.add(slot));
+        return slots;
+    }
+}
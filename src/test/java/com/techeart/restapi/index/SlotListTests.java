@@ -0,0 +1,70 @@
+package com.techeart.restapi.index;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+public class SlotListTests
+{
+    @Test
+    public void remove_manyPages_keepsOffsetsAndRanks()
+    {
+        // given
+        SlotList<Integer> list = new SlotList<>();
+        for (int i = 0; i < 300_000; i++)
+            list.add(i);
+
+        // when
+        for (int slot = 0; slot < 300_000; slot++)
+        {
+            /*empties whole chunks and pages of the first third*/
+            if (slot < 100_000 || slot % 2 == 0)
+                list.remove(slot);
+        }
+
+        // then
+        Assertions.assertEquals(100_000, list.size());
+        Assertions.assertEquals(100_001, list.slotAt(0));
+        Assertions.assertEquals(299_999, list.slotAt(99_999));
+        Assertions.assertEquals(50_000, list.rank(200_000));
+        Assertions.assertEquals(200_001, list.nextSlot(200_000));
+        Assertions.assertEquals(0, list.rank(100_000));
+        Assertions.assertEquals(-1, list.previousSlot(100_000));
+    }
+
+    @Test
+    public void snapshot_listChangedAfterwards_keepsItsElements()
+    {
+        // given
+        SlotList<Integer> list = new SlotList<>();
+        for (int i = 0; i < 100_000; i++)
+            list.add(i);
+        SlotList<Integer> snapshot = list.snapshot();
+
+        // when
+        for (int slot = 0; slot < 100_000; slot += 2)
+            list.remove(slot);
+        list.set(1, -1);
+        list.add(100_000);
+
+        // then
+        Assertions.assertEquals(100_000, snapshot.size());
+        Assertions.assertEquals(1, snapshot.get(1));
+        Assertions.assertEquals(0, snapshot.slotAt(0));
+        Assertions.assertEquals(IntStream.range(0, 100_000).boxed().toList(), toList(snapshot));
+        Assertions.assertEquals(50_001, list.size());
+        Assertions.assertEquals(-1, list.get(1));
+        Assertions.assertEquals(100_000, list.get(list.slotAt(50_000)));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> snapshot.add(1));
+    }
+
+    private static List<Integer> toList(SlotList<Integer> list)
+    {
+        List<Integer> result = new ArrayList<>();
+        list.forEach(result::add);
+        return result;
+    }
+}
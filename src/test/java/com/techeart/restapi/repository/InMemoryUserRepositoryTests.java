@@ -0,0 +1,133 @@
+package com.techeart.restapi.repository;
+
+import com.techeart.restapi.api.model.User;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class InMemoryUserRepositoryTests extends UserRepositoryContractTests
+{
+    @Override
+    protected UserRepository createRepository()
+    {
+        return new InMemoryUserRepository();
+    }
+
+    @Test
+    public void insert_repeatedText_sharesInstances()
+    {
+        // given
+        User bob = new User(UUID.randomUUID(), "bob@gmail.com", new String("Bob"), "Washington",
+                LocalDate.of(1996, 6, 13), new String("Some Address"), null);
+        User other = new User(UUID.randomUUID(), "other@gmail.com", new String("Bob"), "Smith",
+                LocalDate.of(1990, 1, 1), new String("Some Address"), null);
+
+        // when
+        repository.insert(bob);
+        repository.insert(other);
+        repository.replace(bob.getId(), u -> new User(u.getId(), u.getEmail(), new String("Bob"),
+                u.getLastName(), u.getBirthDate(), new String("Other Address"), null));
+
+        // then
+        User storedBob = repository.findById(bob.getId()).orElseThrow();
+        User storedOther = repository.findById(other.getId()).orElseThrow();
+        Assertions.assertSame(storedBob.getFirstName(), storedOther.getFirstName());
+        Assertions.assertEquals("Other Address", storedBob.getAddress());
+        Assertions.assertEquals("Some Address", storedOther.getAddress());
+    }
+
+    @Test
+    public void restore_keysOfEarlierSlots_areRejected()
+    {
+        // given
+        repository.insert(createUser("bob@gmail.com", LocalDate.of(1996, 6, 13)));
+        repository.insert(createUser("john@gmail.com", LocalDate.of(1990, 1, 1)));
+        UserPage page = repository.findPageAfter(UserPage.NO_KEY, 1);
+
+        // when
+        repository.restore(repository.version(), repository.snapshot());
+
+        // then
+        Assertions.assertThrows(IllegalArgumentException.class, () -> repository.findPageAfter(page.lastKey(), 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> repository.findPageBefore(page.firstKey(), 1));
+        UserPage restored = repository.findPageAfter(UserPage.NO_KEY, 1);
+        Assertions.assertEquals("john@gmail.com", repository.findPageAfter(restored.lastKey(), 1).users().get(0).getEmail());
+        Assertions.assertEquals(2, repository.findPageBefore(Long.MAX_VALUE, 5).users().size());
+    }
+
+    @Test
+    public void replace_whileOtherUserIsBeingPatched_isNotBlocked() throws Exception
+    {
+        // given
+        User bob = createUser("bob@gmail.com", LocalDate.of(1996, 6, 13));
+        User john = createUser("john@gmail.com", LocalDate.of(1990, 1, 1));
+        repository.insert(bob);
+        repository.insert(john);
+        CountDownLatch patching = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture<WriteResult> slowPatch = CompletableFuture.supplyAsync(() -> repository.replace(bob.getId(), u -> {
+            patching.countDown();
+            awaitQuietly(finish);
+            return new User(u.getId(), u.getEmail(), "Robert", u.getLastName(), u.getBirthDate(), null, null);
+        }));
+        Assertions.assertTrue(patching.await(5, TimeUnit.SECONDS));
+
+        // when
+        WriteResult result = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> repository.replace(john.getId(),
+                u -> new User(u.getId(), "johnny@gmail.com", u.getFirstName(), u.getLastName(), u.getBirthDate(), null, null)));
+        finish.countDown();
+
+        // then
+        Assertions.assertEquals(WriteResult.OK, result);
+        Assertions.assertEquals(WriteResult.OK, slowPatch.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals("Robert", repository.findById(bob.getId()).orElseThrow().getFirstName());
+        Assertions.assertEquals(john.getId(), repository.findByEmail("johnny@gmail.com").orElseThrow().getId());
+        Assertions.assertEquals(WriteResult.OK, repository.insert(createUser("john@gmail.com", null)));
+    }
+
+    @Test
+    public void search_withoutSubstringIndexes_scansAndFilters()
+    {
+        // given
+        UserRepository unindexed = new InMemoryUserRepository(false);
+        String[] addresses = { "12 Baker Street", "5 Main Road", "221B BAKER STREET" };
+        for (int i = 0; i < addresses.length; i++)
+        {
+            User user = createUser(i + "@test.com", LocalDate.of(1996, 6, 13));
+            user.setAddress(addresses[i]);
+            unindexed.insert(user);
+        }
+        unindexed.replace(unindexed.findByEmail("1@test.com").orElseThrow().getId(), u -> {
+            User moved = new User(u.getId(), u.getEmail(), u.getFirstName(), u.getLastName(), u.getBirthDate());
+            moved.setAddress("Baker Street 3");
+            return moved;
+        });
+
+        // when
+        UserSearchResult result = unindexed.search(
+                new UserQuery(null, null, null, null, null, null, null, null, "baker st"), 10);
+
+        // then
+        Assertions.assertEquals(List.of("0@test.com", "1@test.com", "2@test.com"), result.users().stream().map(User::getEmail).toList());
+        Assertions.assertEquals("scan(3) -> filter(addressContains)", result.plan());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.techeart.restapi.repository;
+
+import com.techeart.restapi.service.ConfigurationService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class RepositoryConfigurationTests
+{
+    @Test
+    public void userRepository_durableMappedEngine_isRejected()
+    {
+        // given
+        ConfigurationService config = Mockito.mock(ConfigurationService.class);
+        Mockito.when(config.getStorageEngine()).thenReturn(RepositoryConfiguration.ENGINE_MAPPED);
+        Mockito.when(config.isStorageDurable()).thenReturn(true);
+        Mockito.when(config.getStorageDir()).thenReturn("unused");
+
+        // when
+        IllegalStateException e = Assertions.assertThrows(IllegalStateException.class,
+                () -> new RepositoryConfiguration().userRepository(config));
+
+        // then
+        Assertions.assertTrue(e.getMessage().contains(RepositoryConfiguration.ENGINE_MAPPED));
+    }
+}
@@ -0,0 +1,718 @@
+package com.techeart.restapi.repository;
+
+import com.techeart.restapi.api.model.User;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.UnaryOperator;
+
+/**
+ * Behaviour every storage engine must provide. Each engine has a subclass creating it.
+ * */
+public abstract class UserRepositoryContractTests
+{
+    protected UserRepository repository;
+
+    protected abstract UserRepository createRepository() throws Exception;
+
+    @BeforeEach
+    void setupRepository() throws Exception
+    {
+        repository = createRepository();
+    }
+
+    @Test
+    public void insert_newUser_findsByIdAndEmail()
+    {
+        // given
+        User user = createUser("bob@gmail.com", LocalDate.of(1996, 6, 13));
+        user.setAddress("Some Address");
+        user.setPhoneNumber("380991231234");
+
+        // when
+        WriteResult result = repository.insert(user);
+
+        // then
+        Assertions.assertEquals(WriteResult.OK, result);
+        assertSameUser(user, repository.findById(user.getId()).orElseThrow());
+        assertSameUser(user, repository.findByEmail("BOB@gmail.com").orElseThrow());
+    }
+
+    @Test
+    public void insert_emailTaken_returnsEmailTaken()
+    {
+        // given
+        repository.insert(createUser("bob@gmail.com", LocalDate.of(1996, 6, 13)));
+        User user = createUser("Bob@Gmail.com", LocalDate.of(1990, 1, 1));
+
+        // when
+        WriteResult result = repository.insert(user);
+
+        // then
+        Assertions.assertEquals(WriteResult.EMAIL_TAKEN, result);
+        Assertions.assertTrue(repository.findById(user.getId()).isEmpty());
+    }
+
+    @Test
+    public void insertAll_repeatedAndTakenEmails_storesOthersInOrder()
+    {
+        // given
+        repository.insert(createUser("bob@gmail.com", LocalDate.of(1996, 6, 13)));
+        List<User> changes = new ArrayList<>();
+        repository.addChangeListener(change -> changes.add(change.user()));
+        long version = repository.version();
+
+        List<User> users = List.of(
+                createUser("john@gmail.com", LocalDate.of(1990, 1, 1)),
+                createUser("BOB@gmail.com", LocalDate.of(1990, 1, 1)),
+                createUser("mari@gmail.com", LocalDate.of(2001, 3, 26)),
+                createUser("John@Gmail.com", LocalDate.of(1990, 1, 1)));
+
+        // when
+        List<WriteResult> results = repository.insertAll(users);
+
+        // then
+        Assertions.assertEquals(List.of(WriteResult.OK, WriteResult.EMAIL_TAKEN, WriteResult.OK, WriteResult.EMAIL_TAKEN), results);
+        Assertions.assertEquals(version + 2, repository.version());
+        Assertions.assertEquals(List.of(users.get(0), users.get(2)), changes);
+
+        UserPage page = repository.findPage(0, 10);
+        Assertions.assertEquals(3, page.total());
+        Assertions.assertEquals(users.get(0).getId(), page.users().get(1).getId());
+        Assertions.assertEquals(users.get(2).getId(), page.users().get(2).getId());
+        Assertions.assertEquals(users.get(2).getId(), repository.findByEmail("MARI@gmail.com").orElseThrow().getId());
+        Assertions.assertTrue(repository.findById(users.get(3).getId()).isEmpty());
+    }
+
+    @Test
+    public void replace_existingUser_replacesAndMovesEmail()
+    {
+        // given
+        User user = createUser("bob@gmail.com", LocalDate.of(1996, 6, 13));
+        repository.insert(user);
+        User changed = new User(user.getId(), "robert@gmail.com", "Robert", "Washington",
+                LocalDate.of(1990, 1, 1), "Other Address", null);
+
+        // when
+        WriteResult result = repository.replace(changed);
+
+        // then
+        Assertions.assertEquals(WriteResult.OK, result);
+        assertSameUser(changed, repository.findById(user.getId()).orElseThrow());
+        Assertions.assertTrue(repository.findByEmail("bob@gmail.com").isEmpty());
+        Assertions.assertEquals(user.getId(), repository.findByEmail("robert@gmail.com").orElseThrow().getId());
+        Assertions.assertEquals(1, repository.findByBirthDateBetween(
+                LocalDate.of(1990, 1, 1).toEpochDay(), LocalDate.of(1990, 1, 1).toEpochDay()).size());
+    }
+
+    @Test
+    public void replace_unknownOrConflictingUser_returnsError()
+    {
+        // given
+        User bob = createUser("bob@gmail.com", LocalDate.of(1996, 6, 13));
+        User john = createUser("john@gmail.com", LocalDate.of(1996, 6, 13));
+        repository.insert(bob);
+        repository.insert(john);
+
+        // when
+        WriteResult unknown = repository.replace(createUser("new@gmail.com", LocalDate.of(1996, 6, 13)));
+        WriteResult conflict = repository.replace(
+                new User(bob.getId(), "JOHN@gmail.com", "Bob", "Washington", LocalDate.of(1996, 6, 13)));
+
+        // then
+        Assertions.assertEquals(WriteResult.NOT_FOUND, unknown);
+        Assertions.assertEquals(WriteResult.EMAIL_TAKEN, conflict);
+        Assertions.assertEquals("bob@gmail.com", repository.findById(bob.getId()).orElseThrow().getEmail());
+    }
+
+    @Test
+    public void replaceWithChange_existingUser_appliesChange()
+    {
+        // given
+        User user = createUser("bob@gmail.com", LocalDate.of(1996, 6, 13));
+        repository.insert(user);
+
+        // when
+        WriteResult result = repository.replace(user.getId(), u -> new User(u.getId(), u.getEmail(), "Robert",
+                u.getLastName(), u.getBirthDate(), u.getAddress(), u.getPhoneNumber()));
+
+        // then
+        Assertions.assertEquals(WriteResult.OK, result);
+        Assertions.assertEquals("Robert", repository.findById(user.getId()).orElseThrow().getFirstName());
+        Assertions.assertEquals(WriteResult.NOT_FOUND, repository.replace(UUID.randomUUID(), u -> u));
+    }
+
+    @Test
+    public void delete_existingUser_removesFromAllIndexes()
+    {
+        // given
+        User user = createUser("bob@gmail.com", LocalDate.of(1996, 6, 13));
+        repository.insert(user);
+
+        // when
+        WriteResult result = repository.delete(user.getId());
+
+        // then
+        Assertions.assertEquals(WriteResult.OK, result);
+        Assertions.assertEquals(WriteResult.NOT_FOUND, repository.delete(user.getId()));
+        Assertions.assertTrue(repository.findById(user.getId()).isEmpty());
+        Assertions.assertTrue(repository.findByEmail(user.getEmail()).isEmpty());
+        Assertions.assertTrue(repository.findByBirthDateBetween(Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+        Assertions.assertEquals(0, repository.findPage(0, 10).total());
+    }
+
+    @Test
+    public void replaceAll_mixedTargets_appliesChangesInOneVersionRange()
+    {
+        // given
+        User bob = createUser("bob@gmail.com", LocalDate.of(1996, 6, 13));
+        User john = createUser("john@gmail.com", LocalDate.of(1990, 1, 1));
+        repository.insert(bob);
+        repository.insert(john);
+        long version = repository.version();
+
+        Map<UUID, UnaryOperator<User>> changes = new LinkedHashMap<>();
+        changes.put(bob.getId(), u -> new User(u.getId(), u.getEmail(), "Robert", u.getLastName(), LocalDate.of(1980, 1, 1)));
+        changes.put(UUID.randomUUID(), u -> u);
+        changes.put(john.getId(), u -> new User(u.getId(), "BOB@gmail.com", u.getFirstName(), u.getLastName(), u.getBirthDate()));
+
+        // when
+        List<WriteResult> results = repository.replaceAll(changes);
+
+        // then
+        Assertions.assertEquals(List.of(WriteResult.OK, WriteResult.NOT_FOUND, WriteResult.EMAIL_TAKEN), results);
+        Assertions.assertEquals(version + 1, repository.version());
+        Assertions.assertEquals("Robert", repository.findById(bob.getId()).orElseThrow().getFirstName());
+        Assertions.assertEquals(1, repository.findByBirthDateBetween(
+                LocalDate.of(1980, 1, 1).toEpochDay(), LocalDate.of(1980, 1, 1).toEpochDay()).size());
+        Assertions.assertEquals("john@gmail.com", repository.findById(john.getId()).orElseThrow().getEmail());
+    }
+
+    @Test
+    public void deleteAll_mixedIds_removesKnownUsers()
+    {
+        // given
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+        {
+            User user = createUser(i + "@test.com", LocalDate.of(1996, 6, 13));
+            users.add(user);
+            repository.insert(user);
+        }
+        List<UUID> changes = new ArrayList<>();
+        repository.addChangeListener(change -> changes.add(change.id()));
+        long version = repository.version();
+
+        // when
+        List<WriteResult> results = repository.deleteAll(
+                List.of(users.get(3).getId(), UUID.randomUUID(), users.get(0).getId()));
+
+        // then
+        Assertions.assertEquals(List.of(WriteResult.OK, WriteResult.NOT_FOUND, WriteResult.OK), results);
+        Assertions.assertEquals(version + 2, repository.version());
+        Assertions.assertEquals(List.of(users.get(3).getId(), users.get(0).getId()), changes);
+        Assertions.assertEquals(3, repository.findPage(0, 10).total());
+        Assertions.assertTrue(repository.findByEmail("0@test.com").isEmpty());
+        Assertions.assertEquals(WriteResult.OK, repository.insert(createUser("3@test.com", null)));
+    }
+
+    @Test
+    public void findAllById_mixedIds_returnsUsersInOrderOfIds()
+    {
+        // given
+        User bob = createUser("bob@gmail.com", LocalDate.of(1996, 6, 13));
+        User john = createUser("john@gmail.com", LocalDate.of(1990, 1, 1));
+        repository.insert(bob);
+        repository.insert(john);
+        repository.delete(bob.getId());
+        UUID unknown = UUID.randomUUID();
+
+        // when
+        List<User> result = repository.findAllById(List.of(john.getId(), unknown, bob.getId(), john.getId()));
+
+        // then
+        Assertions.assertEquals(4, result.size());
+        assertSameUser(john, result.get(0));
+        Assertions.assertNull(result.get(1));
+        Assertions.assertNull(result.get(2));
+        assertSameUser(john, result.get(3));
+    }
+
+    @Test
+    public void findByBirthDateBetween_manyUsers_returnsSortedRange()
+    {
+        // given
+        for (int i = 0; i < 2000; i++)
+            repository.insert(createUser(i + "@test.com", LocalDate.of(1970, 1, 1).plusDays((i * 7919L) % 3000)));
+
+        long from = LocalDate.of(1972, 1, 1).toEpochDay();
+        long to = LocalDate.of(1974, 1, 1).toEpochDay();
+
+        // when
+        List<User> result = repository.findByBirthDateBetween(from, to);
+
+        // then
+        Assertions.assertFalse(result.isEmpty());
+        for (int i = 0; i < result.size(); i++)
+        {
+            long day = result.get(i).getBirthDate().toEpochDay();
+            Assertions.assertTrue(day >= from && day <= to);
+            if (i > 0)
+                Assertions.assertTrue(day >= result.get(i - 1).getBirthDate().toEpochDay());
+        }
+    }
+
+    @Test
+    public void search_indexedCriteria_drivesBySmallestIndexAndIntersects()
+    {
+        // given
+        for (int i = 0; i < 40; i++)
+        {
+            User user = createUser(i + (i % 2 == 0 ? "@gmail.com" : "@test.com"), LocalDate.of(1980, 1, 1).plusDays(i));
+            user.setLastName(i % 10 == 0 ? "Smith" : "Washington");
+            user.setPhoneNumber(i % 20 == 0 ? "380991231234" : null);
+            repository.insert(user);
+        }
+
+        // when
+        UserSearchResult result = repository.search(
+                new UserQuery("GMAIL.com", null, "smith", null, null, true, null, null, null), 10);
+
+        // then
+        Assertions.assertEquals(List.of("0@gmail.com", "20@gmail.com"), result.users().stream().map(User::getEmail).toList());
+        Assertions.assertEquals("index(lastName:4) & index(emailDomain:20) -> filter(hasPhone)", result.plan());
+    }
+
+    @Test
+    public void search_nameDrivesManyUsers_returnsFirstUsersInInsertionOrder()
+    {
+        // given
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 3000; i++)
+        {
+            User user = createUser(i + "@test.com", null);
+            users.add(user);
+            repository.insert(user);
+        }
+        for (int i = 0; i < 10; i += 3)
+            repository.delete(users.get(i).getId());
+        repository.replace(users.get(1).getId(), u -> new User(u.getId(), u.getEmail(), "Robert",
+                u.getLastName(), u.getBirthDate(), u.getAddress(), u.getPhoneNumber()));
+        repository.replace(users.get(1).getId(), u -> new User(u.getId(), u.getEmail(), "Bob",
+                u.getLastName(), u.getBirthDate(), u.getAddress(), u.getPhoneNumber()));
+
+        // when
+        UserSearchResult result = repository.search(
+                new UserQuery(null, "BOB", null, null, null, null, null, null, null), 5);
+
+        // then
+        Assertions.assertEquals(List.of("1@test.com", "2@test.com", "4@test.com", "5@test.com", "7@test.com"),
+                result.users().stream().map(User::getEmail).toList());
+        Assertions.assertEquals("index(firstName:2996)", result.plan());
+    }
+
+    @Test
+    public void search_narrowBirthDateRange_drivesByBirthDate()
+    {
+        // given
+        for (int i = 0; i < 40; i++)
+            repository.insert(createUser(i + "@gmail.com", LocalDate.of(1980, 1, 1).plusDays(i)));
+
+        // when
+        UserSearchResult result = repository.search(new UserQuery("gmail.com", null, null,
+                LocalDate.of(1980, 1, 3), LocalDate.of(1980, 1, 5), null, null, null, null), 10);
+
+        // then
+        Assertions.assertEquals(List.of("2@gmail.com", "3@gmail.com", "4@gmail.com"),
+                result.users().stream().map(User::getEmail).toList());
+        Assertions.assertEquals("index(birthDate:3) & index(emailDomain:40)", result.plan());
+    }
+
+    @Test
+    public void search_usersChanged_keepsIndexesInSync()
+    {
+        // given
+        User bob = createUser("bob@gmail.com", LocalDate.of(1996, 6, 13));
+        User john = createUser("john@gmail.com", LocalDate.of(1996, 6, 13));
+        repository.insert(bob);
+        repository.insert(john);
+
+        // when
+        repository.replace(bob.getId(), user -> new User(user.getId(), "bob@test.com", "Robert",
+                user.getLastName(), user.getBirthDate()));
+        repository.delete(john.getId());
+
+        // then
+        Assertions.assertTrue(repository.search(new UserQuery("gmail.com", null, null, null, null, null, null, null, null), 10).users().isEmpty());
+        Assertions.assertTrue(repository.search(new UserQuery(null, "bob", null, null, null, null, null, null, null), 10).users().isEmpty());
+        List<User> found = repository.search(new UserQuery("test.com", "ROBERT", null, null, null, null, null, null, null), 10).users();
+        Assertions.assertEquals(1, found.size());
+        Assertions.assertEquals(bob.getId(), found.getFirst().getId());
+    }
+
+    @Test
+    public void search_noIndexedCriterion_scansUpToLimit()
+    {
+        // given
+        for (int i = 0; i < 10; i++)
+        {
+            User user = createUser(i + "@test.com", LocalDate.of(1996, 6, 13));
+            user.setAddress(i % 2 == 0 ? "Some Address" : null);
+            repository.insert(user);
+        }
+
+        // when
+        UserSearchResult result = repository.search(new UserQuery(null, null, null, null, null, null, true, null, null), 3);
+
+        // then
+        Assertions.assertEquals(List.of("0@test.com", "2@test.com", "4@test.com"),
+                result.users().stream().map(User::getEmail).toList());
+        Assertions.assertEquals("scan(10) -> filter(hasAddress)", result.plan());
+    }
+
+    @Test
+    public void search_addressFragment_drivesByTrigramsAndChecksCandidates()
+    {
+        // given
+        String[] addresses = { "12 Baker Street", "5 Main Road", "221B BAKER STREET", "Bakery, 7 Mill Street", null };
+        for (int i = 0; i < addresses.length; i++)
+        {
+            User user = createUser(i + "@test.com", LocalDate.of(1996, 6, 13));
+            user.setAddress(addresses[i]);
+            repository.insert(user);
+        }
+
+        // when
+        UserSearchResult result = repository.search(
+                new UserQuery(null, null, null, null, null, null, null, null, "baker st"), 10);
+
+        // then
+        Assertions.assertEquals(List.of("0@test.com", "2@test.com"), result.users().stream().map(User::getEmail).toList());
+        Assertions.assertEquals("index(addressContains:2)", result.plan());
+    }
+
+    @Test
+    public void search_substringsChanged_keepsTrigramIndexesInSync()
+    {
+        // given
+        User bob = createUser("bob.smith@gmail.com", LocalDate.of(1996, 6, 13));
+        User john = createUser("john.smith@gmail.com", LocalDate.of(1996, 6, 13));
+        bob.setAddress("Kyiv, Khreshchatyk 1");
+        repository.insert(bob);
+        repository.insert(john);
+
+        // when
+        repository.replace(bob.getId(), user -> {
+            User moved = new User(user.getId(), "robert.smith@test.com", user.getFirstName(),
+                    user.getLastName(), user.getBirthDate());
+            moved.setAddress("Lviv, Rynok 2");
+            return moved;
+        });
+        repository.delete(john.getId());
+
+        // then
+        Assertions.assertTrue(repository.search(new UserQuery(null, null, null, null, null, null, null, "smith@gmail", null), 10).users().isEmpty());
+        Assertions.assertTrue(repository.search(new UserQuery(null, null, null, null, null, null, null, null, "kyiv"), 10).users().isEmpty());
+        List<User> found = repository.search(new UserQuery(null, null, null, null, null, null, null, "ROBERT", "rynok"), 10).users();
+        Assertions.assertEquals(1, found.size());
+        Assertions.assertEquals(bob.getId(), found.getFirst().getId());
+    }
+
+    @Test
+    public void search_fragmentShorterThanTrigram_filters()
+    {
+        // given
+        for (int i = 0; i < 4; i++)
+            repository.insert(createUser(i + (i % 2 == 0 ? "@gmail.com" : "@test.com"), LocalDate.of(1996, 6, 13)));
+
+        // when
+        UserSearchResult result = repository.search(new UserQuery(null, null, null, null, null, null, null, "@T", null), 10);
+
+        // then
+        Assertions.assertEquals(List.of("1@test.com", "3@test.com"), result.users().stream().map(User::getEmail).toList());
+        Assertions.assertEquals("scan(4) -> filter(emailContains)", result.plan());
+    }
+
+    @Test
+    public void findSortedPage_compositeOrder_returnsPageInOrderAndReverse()
+    {
+        // given
+        String[] lastNames = { "Smith", "adams", "Smith", "Brown", "smith" };
+        for (int i = 0; i < lastNames.length; i++)
+        {
+            User user = createUser(i + "@test.com", LocalDate.of(1990, 1, 1).plusDays(i % 3));
+            user.setLastName(lastNames[i]);
+            repository.insert(user);
+        }
+
+        // when
+        UserPage page = repository.findSortedPage(SortOrder.parse("lastName,-birthDate"), 1, 3);
+        UserPage reversed = repository.findSortedPage(SortOrder.parse("-lastName,birthDate"), 0, 10);
+
+        // then
+        Assertions.assertEquals(List.of("1@test.com", "3@test.com", "2@test.com", "4@test.com", "0@test.com"),
+                reversed.users().stream().map(User::getEmail).toList().reversed());
+        Assertions.assertEquals(List.of("3@test.com", "2@test.com", "4@test.com"),
+                page.users().stream().map(User::getEmail).toList());
+        Assertions.assertEquals(1, page.offset());
+        Assertions.assertEquals(5, page.total());
+        Assertions.assertTrue(page.hasNext());
+    }
+
+    @Test
+    public void findSortedPage_usersChanged_keepsViewInOrder()
+    {
+        // given
+        Random random = new Random(3);
+        List<User> stored = new ArrayList<>();
+        for (int i = 0; i < 1500; i++)
+        {
+            User user = createUser(i + "@test.com", LocalDate.of(1980, 1, 1).plusDays(random.nextInt(400)));
+            stored.add(user);
+            repository.insert(user);
+        }
+        SortOrder order = SortOrder.parse("birthDate,email");
+        repository.findSortedPage(order, 0, 1);
+
+        // when
+        for (int i = 0; i < 600; i++)
+        {
+            int at = random.nextInt(stored.size());
+            User user = stored.get(at);
+            if (i % 3 == 0)
+            {
+                repository.delete(user.getId());
+                stored.remove(at);
+            }
+            else
+            {
+                User moved = new User(user.getId(), user.getEmail(), user.getFirstName(), user.getLastName(),
+                        LocalDate.of(1980, 1, 1).plusDays(random.nextInt(400)));
+                repository.replace(moved);
+                stored.set(at, moved);
+            }
+        }
+        UserPage page = repository.findSortedPage(order, 0, stored.size());
+
+        // then
+        stored.sort(Comparator.comparing(User::getBirthDate).thenComparing(User::getEmail));
+        Assertions.assertEquals(stored.stream().map(User::getId).toList(), page.users().stream().map(User::getId).toList());
+    }
+
+    @Test
+    public void findByNamePrefix_firstAndLastNames_returnsUsersInNameOrder()
+    {
+        // given
+        String[][] names = { { "Johnny", "Walker" }, { "Bob", "Johnson" }, { "John", "Smith" }, { "Mari", "Swanson" } };
+        for (int i = 0; i < names.length; i++)
+        {
+            User user = createUser(i + "@test.com", LocalDate.of(1996, 6, 13));
+            user.setFirstName(names[i][0]);
+            user.setLastName(names[i][1]);
+            repository.insert(user);
+        }
+
+        // when
+        List<User> result = repository.findByNamePrefix("JOH", 10);
+
+        // then
+        Assertions.assertEquals(List.of("John", "Johnny", "Bob"), result.stream().map(User::getFirstName).toList());
+        Assertions.assertEquals(2, repository.findByNamePrefix("joh", 2).size());
+        Assertions.assertTrue(repository.findByNamePrefix("x", 10).isEmpty());
+    }
+
+    @Test
+    public void findByNamePrefix_userRenamed_findsByNewName()
+    {
+        // given
+        User bob = createUser("bob@gmail.com", LocalDate.of(1996, 6, 13));
+        repository.insert(bob);
+
+        // when
+        repository.replace(bob.getId(), user -> new User(user.getId(), user.getEmail(), "Robert",
+                "Marley", user.getBirthDate()));
+
+        // then
+        Assertions.assertTrue(repository.findByNamePrefix("bo", 10).isEmpty());
+        Assertions.assertTrue(repository.findByNamePrefix("wash", 10).isEmpty());
+        Assertions.assertEquals(bob.getId(), repository.findByNamePrefix("mar", 10).getFirst().getId());
+    }
+
+    @Test
+    public void findPage_afterDeletes_returnsUsersInInsertionOrder()
+    {
+        // given
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 3000; i++)
+        {
+            User user = createUser(i + "@test.com", LocalDate.of(1996, 6, 13));
+            users.add(user);
+            repository.insert(user);
+        }
+        for (int i = 0; i < users.size(); i += 2)
+            repository.delete(users.get(i).getId());
+        long version = repository.version();
+
+        // when
+        UserPage page = repository.findPage(1000, 5);
+
+        // then
+        Assertions.assertEquals(1500, page.total());
+        Assertions.assertEquals(version, page.version());
+        Assertions.assertEquals(5, page.users().size());
+        for (int i = 0; i < 5; i++)
+            Assertions.assertEquals(users.get(2001 + 2 * i).getId(), page.users().get(i).getId());
+        Assertions.assertTrue(repository.findPage(1500, 5).users().isEmpty());
+    }
+
+    @Test
+    public void setCommitHook_hookFails_cancelsChangeAndFollowingOnes()
+    {
+        // given
+        User bob = createUser("bob@gmail.com", LocalDate.of(1996, 6, 13));
+        User john = createUser("john@gmail.com", LocalDate.of(1990, 1, 1));
+        User mari = createUser("mari@gmail.com", LocalDate.of(2001, 3, 26));
+        List<UUID> committed = new ArrayList<>();
+        List<UUID> published = new ArrayList<>();
+        repository.addChangeListener(change -> published.add(change.id()));
+        repository.setCommitHook(change -> {
+            if (change.id().equals(john.getId()) || change.user() != null && "robert@gmail.com".equals(change.user().getEmail()))
+                throw new IllegalStateException("rejected");
+            committed.add(change.id());
+        });
+        long version = repository.version();
+
+        // when
+        Assertions.assertThrows(IllegalStateException.class, () -> repository.insertAll(List.of(bob, john, mari)));
+        Assertions.assertThrows(IllegalStateException.class, () -> repository.replace(bob.getId(),
+                u -> new User(u.getId(), "robert@gmail.com", u.getFirstName(), u.getLastName(), u.getBirthDate())));
+
+        // then
+        Assertions.assertEquals(version + 1, repository.version());
+        Assertions.assertEquals(List.of(bob.getId()), committed);
+        Assertions.assertEquals(committed, published);
+        Assertions.assertEquals(1, repository.findPage(0, 10).total());
+        Assertions.assertTrue(repository.findById(john.getId()).isEmpty());
+        Assertions.assertEquals(bob.getId(), repository.findByEmail("bob@gmail.com").orElseThrow().getId());
+        Assertions.assertTrue(repository.findByEmail("robert@gmail.com").isEmpty());
+
+        repository.setCommitHook(change -> { });
+        Assertions.assertEquals(WriteResult.OK, repository.insert(createUser("john@gmail.com", null)));
+        Assertions.assertEquals(WriteResult.OK, repository.insert(createUser("mari@gmail.com", null)));
+        Assertions.assertEquals(WriteResult.OK, repository.insert(createUser("robert@gmail.com", null)));
+    }
+
+    @Test
+    public void findPageAfter_deletesBetweenPages_continuesAfterLastKey()
+    {
+        // given
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 3000; i++)
+        {
+            User user = createUser(i + "@test.com", LocalDate.of(1996, 6, 13));
+            users.add(user);
+            repository.insert(user);
+        }
+        UserPage first = repository.findPageAfter(UserPage.NO_KEY, 1500);
+
+        // when
+        /*removing users of the page already read and the first user of the next page*/
+        for (int i = 0; i <= 1500; i += 2)
+            repository.delete(users.get(i).getId());
+        UserPage next = repository.findPageAfter(first.lastKey(), 5);
+
+        // then
+        Assertions.assertEquals(0, first.offset());
+        Assertions.assertTrue(first.hasNext());
+        Assertions.assertEquals(750, next.offset());
+        Assertions.assertEquals(2249, next.total());
+        for (int i = 0; i < 5; i++)
+            Assertions.assertEquals(users.get(1501 + i).getId(), next.users().get(i).getId());
+        Assertions.assertTrue(next.hasPrevious());
+    }
+
+    @Test
+    public void findPageBefore_afterDeletes_returnsPrecedingUsers()
+    {
+        // given
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 3000; i++)
+        {
+            User user = createUser(i + "@test.com", LocalDate.of(1996, 6, 13));
+            users.add(user);
+            repository.insert(user);
+        }
+        for (int i = 0; i < users.size(); i += 2)
+            repository.delete(users.get(i).getId());
+        UserPage page = repository.findPageAfter(UserPage.NO_KEY, 1000);
+
+        // when
+        UserPage next = repository.findPageAfter(page.lastKey(), 3);
+        UserPage previous = repository.findPageBefore(next.firstKey(), 3);
+        UserPage last = repository.findPageBefore(Long.MAX_VALUE, 3);
+
+        // then
+        Assertions.assertEquals(997, previous.offset());
+        for (int i = 0; i < 3; i++)
+            Assertions.assertEquals(users.get(1995 + 2 * i).getId(), previous.users().get(i).getId());
+        Assertions.assertEquals(next.firstKey(), repository.findPageAfter(previous.lastKey(), 1).firstKey());
+
+        Assertions.assertEquals(1497, last.offset());
+        Assertions.assertFalse(last.hasNext());
+        Assertions.assertEquals(users.get(2999).getId(), last.users().get(2).getId());
+        Assertions.assertTrue(repository.findPageBefore(page.firstKey(), 3).users().isEmpty());
+    }
+
+    @Test
+    public void snapshot_writesWhileIterating_returnsUsersOfItsVersion()
+    {
+        // given
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 3000; i++)
+        {
+            User user = createUser(i + "@test.com", LocalDate.of(1970, 1, 1).plusDays(i));
+            users.add(user);
+            repository.insert(user);
+        }
+        for (int i = 0; i < users.size(); i += 7)
+            repository.delete(users.get(i).getId());
+
+        long version = repository.version();
+        String expected = repository.findPage(0, 5000).users().toString();
+        UserSnapshot snapshot = repository.snapshot();
+        Iterator<User> iterator = snapshot.iterator();
+        List<User> read = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            read.add(iterator.next());
+
+        // when
+        for (int i = 1; i < users.size(); i += 5)
+        {
+            User user = users.get(i);
+            repository.replace(user.getId(), u -> new User(u.getId(), "changed" + u.getEmail(), "Robert",
+                    u.getLastName(), u.getBirthDate(), u.getAddress(), u.getPhoneNumber()));
+        }
+        for (int i = 3; i < users.size(); i += 11)
+            repository.delete(users.get(i).getId());
+        repository.insert(createUser("late@test.com", LocalDate.of(1990, 1, 1)));
+        iterator.forEachRemaining(read::add);
+
+        // then
+        Assertions.assertEquals(version, snapshot.version());
+        Assertions.assertEquals(read.size(), snapshot.size());
+        Assertions.assertEquals(expected, read.toString());
+    }
+
+    protected static User createUser(String email, LocalDate birthDate)
+    {
+        return new User(UUID.randomUUID(), email, "Bob", "Washington", birthDate);
+    }
+
+    protected static void assertSameUser(User expected, User actual)
+    {
+        Assertions.assertEquals(expected.toString(), actual.toString());
+    }
+}
@@ -0,0 +1,142 @@
+package com.techeart.restapi.repository.columnar;
+
+import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.repository.SortOrder;
+import com.techeart.restapi.repository.UserPage;
+import com.techeart.restapi.repository.UserQuery;
+import com.techeart.restapi.repository.UserRepository;
+import com.techeart.restapi.repository.UserRepositoryContractTests;
+import com.techeart.restapi.repository.UserSearchResult;
+import com.techeart.restapi.repository.WriteResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+class ColumnarUserRepositoryTests extends UserRepositoryContractTests
+{
+    private ColumnarUserRepository opened;
+
+    @Override
+    protected UserRepository createRepository()
+    {
+        opened = new ColumnarUserRepository();
+        return opened;
+    }
+
+    @AfterEach
+    void closeRepository() throws IOException
+    {
+        opened.close();
+    }
+
+    @Test
+    public void replace_sameText_keepsStoredText()
+    {
+        // given
+        User user = new User(UUID.randomUUID(), "bob@gmail.com", "Bob", "Washington",
+                LocalDate.of(1996, 6, 13), "Some Address", "00380991231234");
+        repository.insert(user);
+        long allocated = opened.allocatedBytes();
+
+        // when
+        for (int i = 0; i < 100000; i++)
+        {
+            int round = i;
+            repository.replace(user.getId(), u -> new User(u.getId(), u.getEmail(), u.getFirstName(),
+                    u.getLastName(), u.getBirthDate().plusDays(round % 2), u.getAddress(), u.getPhoneNumber()));
+        }
+
+        // then
+        Assertions.assertEquals(allocated, opened.allocatedBytes());
+        Assertions.assertEquals("00380991231234", repository.findById(user.getId()).orElseThrow().getPhoneNumber());
+    }
+
+    @Test
+    public void replace_changingText_reusesFreedText()
+    {
+        // given
+        User user = new User(UUID.randomUUID(), "bob@gmail.com", "Bob", "Washington",
+                LocalDate.of(1996, 6, 13), "Some Address", "00380991231234");
+        repository.insert(user);
+        repository.replace(user.getId(), u -> new User(u.getId(), "bob0@gmail.com", u.getFirstName(),
+                u.getLastName(), u.getBirthDate(), "Address 0", "003809912312340"));
+        long allocated = opened.allocatedBytes();
+
+        // when
+        /*more text than a region of the text store holds, if it was never reused*/
+        for (int i = 1; i < 200000; i++)
+        {
+            int round = i;
+            repository.replace(user.getId(), u -> new User(u.getId(), "bob" + round + "@gmail.com", u.getFirstName(),
+                    u.getLastName(), u.getBirthDate(), "Address " + round, "00380991231234" + round));
+        }
+        User other = createUser("john@gmail.com", null);
+        for (int i = 0; i < 1000; i++)
+        {
+            repository.insert(other);
+            repository.delete(other.getId());
+        }
+
+        // then
+        Assertions.assertEquals(allocated, opened.allocatedBytes());
+        User stored = repository.findById(user.getId()).orElseThrow();
+        Assertions.assertEquals("bob199999@gmail.com", stored.getEmail());
+        Assertions.assertEquals("Address 199999", stored.getAddress());
+        Assertions.assertEquals("00380991231234199999", stored.getPhoneNumber());
+    }
+
+    @Test
+    public void deleteAll_mostUsers_compactsSlotsKeepingOrder()
+    {
+        // given
+        SortOrder order = SortOrder.parse("-email");
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < (1 << 16) + 10; i++)
+            users.add(createUser(i + "@test.com", LocalDate.of(1970, 1, 1).plusDays(i % 10)));
+        repository.insertAll(users);
+        repository.findSortedPage(order, 0, 1);
+        List<UUID> deleted = users.subList(0, 1 << 16).stream().map(User::getId).toList();
+        UserPage before = repository.findPageAfter(UserPage.NO_KEY, 1);
+
+        // when
+        repository.deleteAll(deleted);
+        repository.insert(createUser("new@test.com", null));
+
+        // then
+        UserPage page = repository.findPage(0, 100);
+        Assertions.assertEquals(11, page.total());
+        Assertions.assertEquals("65536@test.com", page.users().get(0).getEmail());
+        Assertions.assertEquals("new@test.com", page.users().get(10).getEmail());
+        Assertions.assertEquals("65537@test.com", repository.findPageAfter(page.firstKey(), 1).users().get(0).getEmail());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> repository.findPageAfter(before.lastKey(), 1));
+        Assertions.assertEquals(users.get(65545).getId(), repository.findByEmail("65545@test.com").orElseThrow().getId());
+        Assertions.assertTrue(repository.findById(users.get(0).getId()).isEmpty());
+        Assertions.assertEquals(10, repository.findByBirthDateBetween(0, 10).size());
+        Assertions.assertEquals("new@test.com", repository.findSortedPage(order, 0, 1).users().get(0).getEmail());
+        Assertions.assertEquals(WriteResult.OK, repository.insert(createUser("0@test.com", null)));
+    }
+
+    @Test
+    public void search_withoutSubstringIndexes_scansAndFilters() throws IOException
+    {
+        // given
+        try (ColumnarUserRepository unindexed = new ColumnarUserRepository(false))
+        {
+            for (int i = 0; i < 4; i++)
+                unindexed.insert(createUser(i + (i % 2 == 0 ? "@gmail.com" : "@test.com"), LocalDate.of(1996, 6, 13)));
+
+            // when
+            UserSearchResult result = unindexed.search(new UserQuery(null, null, null, null, null, null, null, "test.com", null), 10);
+
+            // then
+            Assertions.assertEquals(List.of("1@test.com", "3@test.com"), result.users().stream().map(User::getEmail).toList());
+            Assertions.assertEquals("scan(4) -> filter(emailContains)", result.plan());
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.techeart.restapi.repository.durable;
+
+import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.repository.InMemoryUserRepository;
+import com.techeart.restapi.repository.UserChange;
+import com.techeart.restapi.repository.UserRepository;
+import com.techeart.restapi.repository.UserRepositoryContractTests;
+import com.techeart.restapi.repository.UserSnapshot;
+import com.techeart.restapi.repository.WriteResult;
+import com.techeart.restapi.repository.columnar.ColumnarUserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+class DurableUserRepositoryTests extends UserRepositoryContractTests
+{
+    @TempDir
+    Path directory;
+
+    private final List<DurableUserRepository> opened = new ArrayList<>();
+
+    @Override
+    protected UserRepository createRepository() throws IOException
+    {
+        return open(0);
+    }
+
+    @AfterEach
+    void closeRepositories() throws IOException
+    {
+        for (DurableUserRepository r : opened)
+            r.close();
+    }
+
+    @Test
+    public void reopen_afterWrites_restoresUsersAndVersion() throws IOException
+    {
+        // given
+        User bob = createUser("bob@gmail.com", LocalDate.of(1996, 6, 13));
+        User john = createUser("john@gmail.com", LocalDate.of(1990, 1, 1));
+        repository.insert(bob);
+        repository.insert(john);
+        repository.replace(bob.getId(), u -> new User(u.getId(), u.getEmail(), "Robert",
+                u.getLastName(), u.getBirthDate(), "Some Address", null));
+        repository.delete(john.getId());
+        long version = repository.version();
+        User expected = repository.findById(bob.getId()).orElseThrow();
+
+        // when
+        UserRepository reopened = reopen(0);
+
+        // then
+        Assertions.assertEquals(version, reopened.version());
+        Assertions.assertEquals(1, reopened.findPage(0, 10).total());
+        assertSameUser(expected, reopened.findById(bob.getId()).orElseThrow());
+        Assertions.assertTrue(reopened.findByEmail("john@gmail.com").isEmpty());
+        Assertions.assertEquals(WriteResult.EMAIL_TAKEN, reopened.insert(createUser("BOB@gmail.com", null)));
+    }
+
+    @Test
+    public void reopen_afterSnapshots_loadsSnapshotAndLogTail() throws IOException
+    {
+        // given
+        repository = reopen(100);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 250; i++)
+        {
+            User user = createUser(i + "@test.com", LocalDate.of(1970, 1, 1).plusDays(i));
+            users.add(user);
+            repository.insert(user);
+        }
+        for (int i = 0; i < users.size(); i += 3)
+            repository.delete(users.get(i).getId());
+        long version = repository.version();
+
+        // when
+        UserRepository reopened = reopen(100);
+
+        // then
+        Assertions.assertEquals(version, reopened.version());
+        Assertions.assertEquals(repository.findPage(0, 1000).users().toString(), reopened.findPage(0, 1000).users().toString());
+        Assertions.assertEquals(1, countFiles("snapshot-"));
+        Assertions.assertTrue(countFiles("wal-") <= 2);
+    }
+
+    @Test
+    public void reopen_recordEngineSnapshots_loadsSnapshotAndLogTail()
+    {
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            // given
+            closeAll();
+            UserRepository durable = track(new DurableUserRepository(new ColumnarUserRepository(), directory, 1, 0, 10));
+            for (int i = 0; i < 25; i++)
+                durable.insert(createUser(i + "@test.com", LocalDate.of(1970, 1, 1).plusDays(i)));
+
+            // when
+            closeAll();
+            UserRepository reopened = track(new DurableUserRepository(new ColumnarUserRepository(), directory, 1, 0, 10));
+
+            // then
+            Assertions.assertEquals(25, reopened.version());
+            Assertions.assertEquals(25, reopened.findPage(0, 100).total());
+            Assertions.assertEquals(1, countFiles("snapshot-"));
+        });
+    }
+
+    @Test
+    public void snapshotStore_recordEngineChangedWhileWriting_writesAndLoadsItsVersion() throws IOException
+    {
+        // given
+        ColumnarUserRepository engine = new ColumnarUserRepository();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 3000; i++)
+        {
+            User user = createUser(i + "@test.com", LocalDate.of(1970, 1, 1).plusDays(i));
+            users.add(user);
+            engine.insert(user);
+        }
+        String expected = engine.findPage(0, 5000).users().toString();
+        UserSnapshot snapshot = engine.snapshot();
+
+        /*changing users behind the position of the snapshot once its first user is written*/
+        UserSnapshot changing = new UserSnapshot()
+        {
+            @Override
+            public long version() {
+                return snapshot.version();
+            }
+
+            @Override
+            public int size() {
+                return snapshot.size();
+            }
+
+            @Override
+            public Iterator<User> iterator()
+            {
+                Iterator<User> iterator = snapshot.iterator();
+                return new Iterator<>()
+                {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public User next()
+                    {
+                        User user = iterator.next();
+                        if (user.getId().equals(users.get(0).getId()))
+                        {
+                            for (int i = 1; i < users.size(); i += 3)
+                                engine.delete(users.get(i).getId());
+                            engine.insert(createUser("late@test.com", null));
+                        }
+
+                        return user;
+                    }
+                };
+            }
+        };
+
+        // when
+        SnapshotStore.write(directory, changing);
+        SnapshotStore.Loaded loaded = SnapshotStore.loadLatest(directory);
+        ColumnarUserRepository restored = new ColumnarUserRepository();
+        restored.restore(loaded.version(), loaded.users());
+
+        // then
+        Assertions.assertEquals(snapshot.version(), restored.version());
+        Assertions.assertEquals(expected, restored.findPage(0, 5000).users().toString());
+        engine.close();
+        restored.close();
+    }
+
+    @Test
+    public void reopen_tornLogTail_ignoresIncompleteRecord() throws IOException
+    {
+        // given
+        User bob = createUser("bob@gmail.com", LocalDate.of(1996, 6, 13));
+        User john = createUser("john@gmail.com", LocalDate.of(1990, 1, 1));
+        repository.insert(bob);
+        repository.insert(john);
+        closeAll();
+
+        /*cutting the last record in half, as a crash in the middle of a write would*/
+        Path segment = listFiles("wal-").get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE))
+        {
+            channel.truncate(channel.size() - 10);
+        }
+
+        // when
+        UserRepository reopened = open(0);
+        reopened.insert(createUser("alice@gmail.com", null));
+        closeAll();
+        UserRepository reopenedAgain = open(0);
+
+        // then
+        Assertions.assertEquals(2, reopenedAgain.version());
+        Assertions.assertTrue(reopenedAgain.findById(bob.getId()).isPresent());
+        Assertions.assertTrue(reopenedAgain.findById(john.getId()).isEmpty());
+        Assertions.assertTrue(reopenedAgain.findByEmail("alice@gmail.com").isPresent());
+    }
+
+    @Test
+    public void write_logFails_rejectsWriteWithoutApplyingIt() throws IOException
+    {
+        // given
+        closeAll();
+        AtomicBoolean failing = new AtomicBoolean();
+        DurableUserRepository durable = track(new DurableUserRepository(new InMemoryUserRepository(), directory,
+                firstVersion -> new WriteAheadLog(directory, firstVersion, 1) {
+                    @Override
+                    synchronized void append(UserChange change) throws IOException
+                    {
+                        if (failing.get())
+                            throw new IOException("disk full");
+                        super.append(change);
+                    }
+                }, 0, 0));
+        User bob = createUser("bob@gmail.com", LocalDate.of(1996, 6, 13));
+        durable.insert(bob);
+        List<Long> published = new ArrayList<>();
+        durable.addChangeListener(change -> published.add(change.version()));
+
+        // when
+        failing.set(true);
+        Assertions.assertThrows(UncheckedIOException.class, () -> durable.insert(createUser("john@gmail.com", null)));
+        Assertions.assertThrows(UncheckedIOException.class, () -> durable.replace(bob.getId(),
+                u -> new User(u.getId(), "robert@gmail.com", u.getFirstName(), u.getLastName(), u.getBirthDate())));
+        Assertions.assertThrows(UncheckedIOException.class, () -> durable.delete(bob.getId()));
+        failing.set(false);
+        durable.insert(createUser("mari@gmail.com", null));
+
+        // then
+        Assertions.assertEquals(2, durable.version());
+        Assertions.assertEquals(List.of(2L), published);
+        Assertions.assertTrue(durable.findByEmail("john@gmail.com").isEmpty());
+        Assertions.assertEquals("bob@gmail.com", durable.findById(bob.getId()).orElseThrow().getEmail());
+
+        UserRepository reopened = reopen(0);
+        Assertions.assertEquals(2, reopened.version());
+        Assertions.assertEquals(durable.findPage(0, 10).users().toString(), reopened.findPage(0, 10).users().toString());
+    }
+
+    private UserRepository reopen(int snapshotInterval) throws IOException
+    {
+        closeAll();
+        return open(snapshotInterval);
+    }
+
+    private DurableUserRepository open(int snapshotInterval) throws IOException
+    {
+        return track(new DurableUserRepository(new InMemoryUserRepository(), directory, 1, 0, snapshotInterval));
+    }
+
+    private DurableUserRepository track(DurableUserRepository r)
+    {
+        opened.add(r);
+        return r;
+    }
+
+    private void closeAll() throws IOException
+    {
+        closeRepositories();
+        opened.clear();
+    }
+
+    private long countFiles(String prefix) throws IOException
+    {
+        return listFiles(prefix).size();
+    }
+
+    private List<Path> listFiles(String prefix) throws IOException
+    {
+        try (Stream<Path> files = Files.list(directory))
+        {
+            return files.filter(f -> f.getFileName().toString().startsWith(prefix)).sorted().toList();
+        }
+    }
+}
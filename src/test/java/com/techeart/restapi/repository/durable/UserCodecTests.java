@@ -0,0 +1,49 @@
+package com.techeart.restapi.repository.durable;
+
+import com.techeart.restapi.api.model.User;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.time.LocalDate;
+import java.util.UUID;
+
+public class UserCodecTests
+{
+    @Test
+    public void read_writtenUser_returnsEqualUser() throws IOException
+    {
+        // given
+        User user = new User(UUID.randomUUID(), "bob@gmail.com", "Bob", null, LocalDate.of(1996, 6, 13), "Some Address", null);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        UserCodec.write(new DataOutputStream(bytes), user);
+
+        // when
+        User result = UserCodec.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        // then
+        Assertions.assertEquals(user.getId(), result.getId());
+        Assertions.assertEquals("bob@gmail.com", result.getEmail());
+        Assertions.assertNull(result.getLastName());
+        Assertions.assertEquals(user.getBirthDate(), result.getBirthDate());
+        Assertions.assertEquals("Some Address", result.getAddress());
+    }
+
+    @Test
+    public void read_lengthBeyondRecord_failsBeforeAllocating() throws IOException
+    {
+        // given
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        UserCodec.writeId(out, UUID.randomUUID());
+        out.writeInt(Integer.MAX_VALUE - 8);
+        out.write(new byte[16]);
+
+        // when
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+
+        // then
+        IOException e = Assertions.assertThrows(IOException.class, () -> UserCodec.read(in));
+        Assertions.assertTrue(e.getMessage().contains("Corrupted string length"));
+    }
+}
@@ -0,0 +1,112 @@
+package com.techeart.restapi.repository.mapped;
+
+import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.repository.UserPage;
+import com.techeart.restapi.repository.UserRepository;
+import com.techeart.restapi.repository.UserRepositoryContractTests;
+import com.techeart.restapi.repository.WriteResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+class MappedUserRepositoryTests extends UserRepositoryContractTests
+{
+    @TempDir
+    Path directory;
+
+    private MappedUserRepository opened;
+
+    @Override
+    protected UserRepository createRepository() throws IOException
+    {
+        opened = new MappedUserRepository(directory);
+        return opened;
+    }
+
+    @AfterEach
+    void closeRepository() throws IOException
+    {
+        opened.close();
+    }
+
+    @Test
+    public void reopen_afterWrites_rebuildsIndexesFromFiles() throws IOException
+    {
+        // given
+        User bob = new User(UUID.randomUUID(), "bob@gmail.com", "Bob", "Washington",
+                LocalDate.of(1996, 6, 13), "Адреса", "00380991231234");
+        User john = createUser("john@gmail.com", LocalDate.of(1990, 1, 1));
+        repository.insert(bob);
+        repository.insert(john);
+        repository.replace(bob.getId(), u -> new User(u.getId(), "robert@gmail.com", u.getFirstName(),
+                u.getLastName(), u.getBirthDate(), u.getAddress(), "+380 99 123"));
+        repository.delete(john.getId());
+        long version = repository.version();
+        User expected = repository.findById(bob.getId()).orElseThrow();
+
+        // when
+        opened.close();
+        UserRepository reopened = createRepository();
+
+        // then
+        Assertions.assertEquals(version, reopened.version());
+        Assertions.assertEquals(1, reopened.findPage(0, 10).total());
+        assertSameUser(expected, reopened.findById(bob.getId()).orElseThrow());
+        assertSameUser(expected, reopened.findByEmail("Robert@gmail.com").orElseThrow());
+        Assertions.assertEquals("+380 99 123", expected.getPhoneNumber());
+        Assertions.assertTrue(reopened.findById(john.getId()).isEmpty());
+        Assertions.assertEquals(1, reopened.findByBirthDateBetween(Long.MIN_VALUE, Long.MAX_VALUE).size());
+        Assertions.assertEquals(WriteResult.OK, reopened.insert(createUser("bob@gmail.com", null)));
+    }
+
+    @Test
+    public void reopen_afterDeletes_compactsSlotsAndReusesText() throws IOException
+    {
+        // given
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+        {
+            User user = new User(UUID.randomUUID(), "user" + i + "@test.com", "Bob", "Washington",
+                    LocalDate.of(1996, 6, 13), "Address " + i, null);
+            users.add(user);
+            repository.insert(user);
+        }
+        for (int i = 0; i < users.size(); i += 2)
+            repository.delete(users.get(i).getId());
+        opened.close();
+        long stringsEnd = stringsEnd();
+
+        // when
+        UserRepository reopened = createRepository();
+        for (int i = 0; i < users.size(); i += 2)
+            reopened.insert(new User(UUID.randomUUID(), "resu" + i + "@test.com", "Bob", "Washington",
+                    LocalDate.of(1996, 6, 13), "Sserdda " + i, null));
+
+        // then
+        UserPage page = reopened.findPage(0, 200);
+        Assertions.assertEquals(100, page.total());
+        Assertions.assertEquals("user1@test.com", page.users().get(0).getEmail());
+        Assertions.assertEquals("user99@test.com", page.users().get(49).getEmail());
+        Assertions.assertEquals("resu0@test.com", page.users().get(50).getEmail());
+        Assertions.assertEquals("Sserdda 98", page.users().get(99).getAddress());
+        Assertions.assertEquals(users.get(99).getId(), reopened.findByEmail("user99@test.com").orElseThrow().getId());
+        opened.close();
+        Assertions.assertEquals(stringsEnd, stringsEnd());
+    }
+
+    private long stringsEnd() throws IOException
+    {
+        try (MappedRecordStore store = new MappedRecordStore(directory))
+        {
+            return store.stringsEnd();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.techeart.restapi.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+class AgeCutoffsTests
+{
+	@Test
+	public void ageOf_birthDates_returnsWholeYears()
+	{
+		// given
+		AgeCutoffs testedObj = new AgeCutoffs(new MovableClock(LocalDate.of(2026, 2, 28)));
+
+		// then
+		Assertions.assertEquals(18, testedObj.ageOf(LocalDate.of(2008, 2, 28)));
+		Assertions.assertEquals(17, testedObj.ageOf(LocalDate.of(2008, 2, 29)));
+		Assertions.assertEquals(0, testedObj.ageOf(LocalDate.of(2026, 2, 28)));
+		Assertions.assertEquals(-1, testedObj.ageOf(LocalDate.of(2026, 3, 1)));
+		Assertions.assertEquals(AgeCutoffs.MAX_AGE, testedObj.ageOf(LocalDate.of(1700, 1, 1)));
+		Assertions.assertFalse(testedObj.isAtLeast(LocalDate.of(2008, 2, 29), 18));
+	}
+
+	@Test
+	public void bornOnOrAfter_age_returnsDayAfterNextAgeCutoff()
+	{
+		// given
+		AgeCutoffs testedObj = new AgeCutoffs(new MovableClock(LocalDate.of(2026, 6, 13)));
+
+		// then
+		Assertions.assertEquals(LocalDate.of(2008, 6, 13), testedObj.bornOnOrBefore(18));
+		Assertions.assertEquals(LocalDate.of(1995, 6, 14), testedObj.bornOnOrAfter(30));
+		Assertions.assertEquals(30, testedObj.ageOf(testedObj.bornOnOrAfter(30)));
+		Assertions.assertEquals(31, testedObj.ageOf(testedObj.bornOnOrAfter(30).minusDays(1)));
+	}
+
+	@Test
+	public void isAtLeast_clockPassesMidnight_usesCutoffsOfNewDay()
+	{
+		// given
+		MovableClock clock = new MovableClock(LocalDate.of(2026, 6, 12));
+		AgeCutoffs testedObj = new AgeCutoffs(clock);
+		LocalDate birthDate = LocalDate.of(2008, 6, 13);
+		boolean before = testedObj.isAtLeast(birthDate, 18);
+
+		// when
+		clock.instant = clock.instant.plusSeconds(24 * 60 * 60);
+
+		// then
+		Assertions.assertFalse(before);
+		Assertions.assertTrue(testedObj.isAtLeast(birthDate, 18));
+		Assertions.assertEquals(LocalDate.of(2026, 6, 13), testedObj.today());
+	}
+
+	/**
+	 * Clock standing at the start of a day in UTC until moved.
+	 * */
+	private static class MovableClock extends Clock
+	{
+		private Instant instant;
+
+		MovableClock(LocalDate day)
+		{
+			instant = day.atStartOfDay(ZoneOffset.UTC).toInstant();
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Instant instant() {
+			return instant;
+		}
+	}
+}
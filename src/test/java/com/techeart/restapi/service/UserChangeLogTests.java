@@ -0,0 +1,125 @@
+package com.techeart.restapi.service;
+
+import com.techeart.restapi.api.data.UserPatchDto;
+import com.techeart.restapi.api.exception.ApiRequestException;
+import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.repository.InMemoryUserRepository;
+import com.techeart.restapi.repository.UserChange;
+import com.techeart.restapi.repository.UserRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+class UserChangeLogTests
+{
+	private UserRepository repository;
+	private UserChangeLog testedObj;
+
+	@BeforeEach
+	void setupCurrent()
+	{
+		ConfigurationService config = Mockito.mock(ConfigurationService.class);
+		Mockito.when(config.getChangeLogSize()).thenReturn(4);
+		Mockito.when(config.getPaginationDefaultLimit()).thenReturn(2);
+		Mockito.when(config.getPaginationMaxLimit()).thenReturn(10);
+
+		repository = new InMemoryUserRepository();
+		repository.insert(createUser("before@gmail.com"));
+		testedObj = new UserChangeLog(repository, config);
+	}
+
+	@Test
+	public void since_changesAfterVersion_returnsThemInOrder()
+	{
+		// given
+		long version = repository.version();
+		User bob = createUser("bob@gmail.com");
+		repository.insert(bob);
+		repository.replace(bob.getId(), new UserPatchDto(null, "Robert", null, null, null, null)::patchUser);
+		repository.delete(bob.getId());
+
+		// when
+		UserChangeLog.Changes changes = testedObj.since(version, 10);
+
+		// then
+		Assertions.assertEquals(
+				List.of(UserChange.Type.CREATE, UserChange.Type.UPDATE, UserChange.Type.DELETE),
+				changes.changes().stream().map(UserChange::type).toList());
+		Assertions.assertEquals(repository.version(), changes.version());
+		Assertions.assertFalse(changes.hasMore());
+	}
+
+	@Test
+	public void since_moreChangesThanLimit_returnsPagesToContinueFrom()
+	{
+		// given
+		long version = repository.version();
+		for (int i = 0; i < 3; i++)
+			repository.insert(createUser(i + "@gmail.com"));
+
+		// when
+		UserChangeLog.Changes first = testedObj.since(version, null);
+		UserChangeLog.Changes second = testedObj.since(first.version(), null);
+
+		// then
+		Assertions.assertEquals(2, first.changes().size());
+		Assertions.assertTrue(first.hasMore());
+		Assertions.assertEquals(1, second.changes().size());
+		Assertions.assertFalse(second.hasMore());
+		Assertions.assertEquals(repository.version(), second.version());
+	}
+
+	@Test
+	public void since_noChanges_returnsSameVersion()
+	{
+		// when
+		UserChangeLog.Changes changes = testedObj.since(repository.version(), 10);
+
+		// then
+		Assertions.assertTrue(changes.changes().isEmpty());
+		Assertions.assertEquals(repository.version(), changes.version());
+	}
+
+	@Test
+	public void since_changesDropped_throwsException()
+	{
+		// given
+		long version = repository.version();
+		for (int i = 0; i < 5; i++)
+			repository.insert(createUser(i + "@gmail.com"));
+
+		// then
+		ApiRequestException thrown = Assertions.assertThrows(ApiRequestException.class, () -> testedObj.since(version, 10));
+		Assertions.assertEquals(thrown.getStatusCode(), HttpStatus.GONE);
+		Assertions.assertEquals(4, testedObj.since(version + 1, 10).changes().size());
+	}
+
+	@Test
+	public void since_versionBeforeLogStarted_throwsException()
+	{
+		// then
+		ApiRequestException thrown = Assertions.assertThrows(ApiRequestException.class,
+				() -> testedObj.since(repository.version() - 1, 10));
+		Assertions.assertEquals(thrown.getStatusCode(), HttpStatus.GONE);
+	}
+
+	@Test
+	public void since_unknownVersion_throwsException()
+	{
+		// then
+		ApiRequestException thrown = Assertions.assertThrows(ApiRequestException.class,
+				() -> testedObj.since(repository.version() + 1, 10));
+		Assertions.assertEquals(thrown.getStatusCode(), HttpStatus.GONE);
+	}
+
+	private static User createUser(String email)
+	{
+		return new User(UUID.randomUUID(), email, "Bob", "Washington", LocalDate.of(1996, 6, 13));
+	}
+}
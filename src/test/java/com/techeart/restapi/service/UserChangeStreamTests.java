@@ -0,0 +1,154 @@
+package com.techeart.restapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.repository.InMemoryUserRepository;
+import com.techeart.restapi.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+class UserChangeStreamTests
+{
+	private UserRepository repository;
+	private UserChangeStream testedObj;
+
+	@BeforeEach
+	void setupCurrent()
+	{
+		ConfigurationService config = Mockito.mock(ConfigurationService.class);
+		Mockito.when(config.getChangeStreamSize()).thenReturn(4);
+
+		repository = new InMemoryUserRepository();
+		testedObj = new UserChangeStream(repository, config);
+	}
+
+	@AfterEach
+	void cleanupCurrent()
+	{
+		testedObj.close();
+	}
+
+	@Test
+	public void subscribe_usersChanged_sendsChangeEvents() throws Exception
+	{
+		// given
+		RecordingEmitter emitter = new RecordingEmitter(null);
+		testedObj.subscribe(emitter);
+		User bob = createUser("bob@gmail.com");
+
+		// when
+		repository.insert(bob);
+		repository.delete(bob.getId());
+
+		// then
+		String created = emitter.next();
+		Assertions.assertTrue(created.contains("event:change"));
+		Assertions.assertTrue(created.contains("\"type\":\"CREATE\""));
+		Assertions.assertTrue(created.contains(bob.getId().toString()));
+		Assertions.assertTrue(emitter.next().contains("\"type\":\"DELETE\""));
+	}
+
+	@Test
+	public void subscribe_subscriberLagging_sendsResyncWithoutBlockingWriters() throws Exception
+	{
+		// given
+		CountDownLatch stalled = new CountDownLatch(1);
+		RecordingEmitter emitter = new RecordingEmitter(stalled);
+		testedObj.subscribe(emitter);
+
+		repository.insert(createUser("first@gmail.com"));
+		Assertions.assertTrue(emitter.next().contains("first@gmail.com"));
+
+		// when
+		for (int i = 0; i < 10; i++)
+			repository.insert(createUser(i + "@gmail.com"));
+		stalled.countDown();
+
+		// then
+		Assertions.assertTrue(emitter.next().contains("event:" + UserChangeStream.RESYNC_EVENT));
+		Assertions.assertTrue(emitter.completed.await(5, TimeUnit.SECONDS));
+	}
+
+	private static User createUser(String email)
+	{
+		return new User(UUID.randomUUID(), email, "Bob", "Washington", LocalDate.of(1996, 6, 13));
+	}
+
+	/**
+	 * Records the events as text instead of writing them to a response.
+	 * Sending the first event waits for the given latch, if any.
+	 * */
+	private static class RecordingEmitter extends SseEmitter
+	{
+		private static final ObjectMapper MAPPER = new ObjectMapper().registerModule(new JavaTimeModule());
+
+		private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+		private final CountDownLatch completed = new CountDownLatch(1);
+		private CountDownLatch stall;
+
+		private RecordingEmitter(CountDownLatch stall)
+		{
+			this.stall = stall;
+		}
+
+		@Override
+		public void send(SseEventBuilder builder)
+		{
+			events.add(builder.build().stream()
+					.map(part -> part.getData() instanceof String text ? text : toJson(part.getData()))
+					.collect(Collectors.joining()));
+
+			if (stall != null)
+			{
+				try
+				{
+					stall.await();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				stall = null;
+			}
+		}
+
+		@Override
+		public void complete()
+		{
+			completed.countDown();
+		}
+
+		private String next() throws InterruptedException
+		{
+			String event = events.poll(5, TimeUnit.SECONDS);
+			Assertions.assertNotNull(event);
+			return event;
+		}
+
+		private static String toJson(Object data)
+		{
+			try
+			{
+				return MAPPER.writeValueAsString(data);
+			}
+			catch (JsonProcessingException e)
+			{
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
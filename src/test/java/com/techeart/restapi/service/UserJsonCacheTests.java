@@ -0,0 +1,89 @@
+package com.techeart.restapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.techeart.restapi.api.data.UserPatchDto;
+import com.techeart.restapi.api.exception.ApiRequestException;
+import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.repository.InMemoryUserRepository;
+import com.techeart.restapi.repository.UserRepository;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.UUID;
+
+class UserJsonCacheTests
+{
+	private UsersService service;
+	private UserJsonCache testedObj;
+
+	private User user;
+
+	@BeforeEach
+	void setupCurrent()
+	{
+		ConfigurationService config = Mockito.mock(ConfigurationService.class);
+		Mockito.when(config.getUserJsonCacheSize()).thenReturn(10);
+
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.registerModule(new JavaTimeModule());
+		mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+
+		UserRepository repository = new InMemoryUserRepository();
+		service = new UsersService(config, repository, Validation.buildDefaultValidatorFactory().getValidator(),
+				new AgeCutoffs(Clock.systemDefaultZone()));
+		testedObj = new UserJsonCache(service, repository, mapper, config);
+
+		user = new User(UUID.randomUUID(), "bob@gmail.com", "Bob", "Washington", LocalDate.of(1996, 6, 13));
+		repository.insert(user);
+	}
+
+	@Test
+	public void get_userNotChanged_returnsCachedJson()
+	{
+		// when
+		UserJsonCache.UserJson first = testedObj.get(user.getId());
+		UserJsonCache.UserJson second = testedObj.get(user.getId());
+
+		// then
+		Assertions.assertSame(first, second);
+		Assertions.assertTrue(new String(first.body(), StandardCharsets.UTF_8).contains("\"firstName\":\"Bob\""));
+	}
+
+	@Test
+	public void get_userPatched_returnsNewJsonAndETag()
+	{
+		// given
+		UserJsonCache.UserJson before = testedObj.get(user.getId());
+
+		// when
+		service.patch(user.getId(), new UserPatchDto(null, "Robert", null, null, null, null));
+		UserJsonCache.UserJson after = testedObj.get(user.getId());
+
+		// then
+		Assertions.assertNotEquals(before.etag(), after.etag());
+		Assertions.assertTrue(new String(after.body(), StandardCharsets.UTF_8).contains("\"firstName\":\"Robert\""));
+	}
+
+	@Test
+	public void get_userDeleted_throwsException()
+	{
+		// given
+		testedObj.get(user.getId());
+
+		// when
+		service.delete(user.getId());
+
+		// then
+		ApiRequestException thrown = Assertions.assertThrows(ApiRequestException.class, () -> testedObj.get(user.getId()));
+		Assertions.assertEquals(thrown.getStatusCode(), HttpStatus.NOT_FOUND);
+	}
+}
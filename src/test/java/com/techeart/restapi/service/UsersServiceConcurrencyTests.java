@@ -0,0 +1,236 @@
+package com.techeart.restapi.service;
+
+import com.techeart.restapi.api.data.DataResponseDto;
+import com.techeart.restapi.api.data.DataResponsePageDto;
+import com.techeart.restapi.api.data.UserPatchDto;
+import com.techeart.restapi.api.exception.BadEmailException;
+import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.repository.InMemoryUserRepository;
+import com.techeart.restapi.repository.UserRepository;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stress tests running service operations from many threads at once.
+ * */
+class UsersServiceConcurrencyTests
+{
+	private static final int THREADS = 8;
+	private static final String apiPath = "/api/v1/users";
+
+	private static ConfigurationService config;
+	private UserRepository repository;
+	private UsersService testedObj;
+
+	@BeforeAll
+	static void setupAll()
+	{
+		config = Mockito.mock(ConfigurationService.class);
+		Mockito.when(config.getUserMinAge()).thenReturn(18);
+		Mockito.when(config.getPaginationDefaultOffset()).thenReturn(0);
+		Mockito.when(config.getPaginationDefaultLimit()).thenReturn(100);
+		Mockito.when(config.getPaginationMaxLimit()).thenReturn(Integer.MAX_VALUE);
+	}
+
+	@BeforeEach
+	void setupCurrent()
+	{
+		repository = new InMemoryUserRepository();
+		testedObj = new UsersService(config, repository, Validation.buildDefaultValidatorFactory().getValidator(),
+				new AgeCutoffs(Clock.systemDefaultZone()));
+	}
+
+	@Test
+	public void add_sameEmailsFromManyThreads_noDuplicates() throws Exception
+	{
+		// given
+		int emails = 2000;
+		AtomicInteger created = new AtomicInteger();
+		AtomicInteger rejected = new AtomicInteger();
+
+		// when
+		runConcurrently(thread -> {
+			for (int i = 0; i < emails; i++)
+			{
+				/*every thread registers the same addresses, in different letter case*/
+				String email = (thread % 2 == 0 ? "user" : "USER") + i + "@test.com";
+				try
+				{
+					testedObj.add(new User(email, "test", "test", LocalDate.of(1996, 6, 13)));
+					created.incrementAndGet();
+				}
+				catch (BadEmailException e)
+				{
+					rejected.incrementAndGet();
+				}
+			}
+		});
+
+		// then
+		List<User> stored = getAll();
+		Set<String> storedEmails = new HashSet<>();
+		stored.forEach(u -> storedEmails.add(u.getEmail().toLowerCase()));
+
+		Assertions.assertEquals(emails, created.get());
+		Assertions.assertEquals(emails * (THREADS - 1), rejected.get());
+		Assertions.assertEquals(emails, stored.size());
+		Assertions.assertEquals(emails, storedEmails.size());
+	}
+
+	@Test
+	public void patch_differentFieldsFromManyThreads_noLostUpdates() throws Exception
+	{
+		// given
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 50; i++)
+			users.add(new User(UUID.randomUUID(), i + "@test.com", "test", "test", LocalDate.of(1996, 6, 13)));
+		users.forEach(repository::insert);
+
+		int rounds = 200;
+
+		// when
+		runConcurrently(thread -> {
+			for (int round = 1; round <= rounds; round++)
+			{
+				String value = thread + "-" + round;
+				for (User u : users)
+				{
+					/*each thread owns one field, the last written value of every field must survive*/
+					UserPatchDto data = switch (thread % 4)
+					{
+						case 0 -> new UserPatchDto(null, value, null, null, null, null);
+						case 1 -> new UserPatchDto(null, null, value, null, null, null);
+						case 2 -> new UserPatchDto(null, null, null, null, value, null);
+						default -> new UserPatchDto(null, null, null, null, null, String.valueOf(10000000000L + round));
+					};
+					testedObj.patch(u.getId(), data);
+				}
+			}
+		}, 4);
+
+		// then
+		for (User u : users)
+		{
+			User result = testedObj.getOne(u.getId());
+			Assertions.assertEquals("0-" + rounds, result.getFirstName());
+			Assertions.assertEquals("1-" + rounds, result.getLastName());
+			Assertions.assertEquals("2-" + rounds, result.getAddress());
+			Assertions.assertEquals(String.valueOf(10000000000L + rounds), result.getPhoneNumber());
+		}
+	}
+
+	@Test
+	public void addAndDelete_withConcurrentReaders_noLostUsers() throws Exception
+	{
+		// given
+		int perThread = 1000;
+		Queue<Throwable> readerErrors = new ConcurrentLinkedQueue<>();
+		Set<UUID> kept = ConcurrentHashMap.newKeySet();
+		CountDownLatch writersDone = new CountDownLatch(1);
+
+		Thread reader = new Thread(() -> {
+			while (writersDone.getCount() > 0)
+			{
+				try
+				{
+					testedObj.get(0, 50, apiPath);
+					testedObj.getByBirthDate(LocalDate.of(1990, 1, 1), LocalDate.of(2000, 1, 1));
+
+					/*a page is built from one snapshot, so it always matches its own total*/
+					if (testedObj.get(0, Integer.MAX_VALUE, apiPath) instanceof DataResponsePageDto page)
+						Assertions.assertEquals(page.getPagination().getTotal(), page.getData().size());
+				}
+				catch (Throwable e)
+				{
+					readerErrors.add(e);
+				}
+			}
+		});
+		reader.start();
+
+		// when
+		runConcurrently(thread -> {
+			for (int i = 0; i < perThread; i++)
+			{
+				User u = testedObj.add(new User(
+						thread + "-" + i + "@test.com", "test", "test", LocalDate.of(1990, 1, 1).plusDays(i)));
+
+				/*every second user is deleted right away*/
+				if (i % 2 == 0)
+					testedObj.delete(u.getId());
+				else
+					kept.add(u.getId());
+			}
+		});
+		writersDone.countDown();
+		reader.join();
+
+		// then
+		List<User> stored = getAll();
+		Set<UUID> storedIds = new HashSet<>();
+		stored.forEach(u -> storedIds.add(u.getId()));
+
+		Assertions.assertTrue(readerErrors.isEmpty(), () -> "Reader failed: " + readerErrors.peek());
+		Assertions.assertEquals(THREADS * perThread / 2, stored.size());
+		Assertions.assertEquals(kept, storedIds);
+		for (UUID id : kept)
+			Assertions.assertEquals(id, testedObj.getOne(id).getId());
+	}
+
+	private List<User> getAll()
+	{
+		List<User> result = new ArrayList<>();
+		DataResponseDto page = testedObj.get(0, Integer.MAX_VALUE, apiPath);
+		page.getData().forEach(o -> result.add((User) o));
+		return result;
+	}
+
+	private void runConcurrently(ThreadTask task) throws Exception
+	{
+		runConcurrently(task, THREADS);
+	}
+
+	private void runConcurrently(ThreadTask task, int threads) throws Exception
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+
+		try
+		{
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++)
+			{
+				int thread = t;
+				futures.add(executor.submit(() -> {
+					start.await();
+					task.run(thread);
+					return null;
+				}));
+			}
+
+			start.countDown();
+			for (Future<?> f : futures)
+				f.get(60, TimeUnit.SECONDS);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	@FunctionalInterface
+	private interface ThreadTask
+	{
+		void run(int thread) throws Exception;
+	}
+}
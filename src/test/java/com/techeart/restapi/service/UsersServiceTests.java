@@ -1,12 +1,20 @@
 package com.techeart.restapi.service;
 
+import com.techeart.restapi.api.data.DataLookupResponseDto;
 import com.techeart.restapi.api.data.DataResponseDto;
 import com.techeart.restapi.api.data.DataResponsePageDto;
 import com.techeart.restapi.api.data.UserPatchDto;
+import com.techeart.restapi.api.data.UserPatchItemDto;
 import com.techeart.restapi.api.exception.ApiRequestException;
 import com.techeart.restapi.api.exception.BadEmailException;
+import com.techeart.restapi.api.model.BatchItemResult;
 import com.techeart.restapi.api.model.PaginationInfo;
 import com.techeart.restapi.api.model.User;
+import com.techeart.restapi.repository.InMemoryUserRepository;
+import com.techeart.restapi.repository.UserQuery;
+import com.techeart.restapi.repository.UserRepository;
+import com.techeart.restapi.repository.UserSearchResult;
+import jakarta.validation.Validation;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,18 +23,20 @@ import org.mockito.Mockito;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpStatus;
 
+import java.time.Clock;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @SpringBootTest
 class UsersServiceTests
 {
 	/**
-	 * Used only for the simulation of a repository
-	 * because of persistence layer is absent in this demo app.
+	 * Users the repository is seeded with.
 	 * */
 	private List<User> userRepo;
 
@@ -43,12 +53,13 @@ class UsersServiceTests
 		Mockito.when(config.getPaginationDefaultOffset()).thenReturn(0);
 		Mockito.when(config.getPaginationDefaultLimit()).thenReturn(2);
 		Mockito.when(config.getPaginationMaxLimit()).thenReturn(10);
+		Mockito.when(config.getBatchMaxSize()).thenReturn(10);
+		Mockito.when(config.getLookupMaxIds()).thenReturn(5);
 	}
 
 	@BeforeEach
 	void setupCurrent()
 	{
-		testedObj = new UsersService(config);
 
 		userRepo = new ArrayList<>(Arrays.asList(
                 new User(UUID.randomUUID(), "bob@gmail.com", "Bob", "Washington", LocalDate.of(1996, 6, 13)),
@@ -56,7 +67,28 @@ class UsersServiceTests
                 new User(UUID.randomUUID(), "mari@gmail.com", "Mari", "Swanson", LocalDate.of(2001, 3, 26))
         ));
 
-		testedObj.initUsersList(userRepo);
+		testedObj = createService(userRepo);
+	}
+
+	private static UsersService createService(List<User> users)
+	{
+		return createService(users, Clock.systemDefaultZone());
+	}
+
+	private static UsersService createService(List<User> users, Clock clock)
+	{
+		UserRepository repository = new InMemoryUserRepository();
+		users.forEach(repository::insert);
+		return new UsersService(config, repository, Validation.buildDefaultValidatorFactory().getValidator(),
+				new AgeCutoffs(clock));
+	}
+
+	/**
+	 * Clock fixed at the given day, in UTC.
+	 * */
+	private static Clock clockAt(LocalDate day)
+	{
+		return Clock.fixed(day.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC);
 	}
 
 	@Test
@@ -109,6 +141,91 @@ class UsersServiceTests
 		Assertions.assertEquals(pag.getTotal(), total);
 	}
 
+	@Test
+	public void getSorted_sortParameter_returnsOrderedPageWithLinksKeepingOrder()
+	{
+		// when
+		DataResponsePageDto result = (DataResponsePageDto)testedObj.getSorted("-birthDate", 0, 2, apiPath);
+
+		// then
+		Assertions.assertEquals(List.of(userRepo.get(1), userRepo.get(2)), Arrays.asList(result.getData().toArray()));
+		Assertions.assertEquals(apiPath + "?offset=2&limit=2&sort=-birthDate", result.getLinks().getNext());
+		Assertions.assertEquals(3, result.getPagination().getTotal());
+	}
+
+	@Test
+	public void getSorted_unknownProperty_throwsException()
+	{
+		// then
+		ApiRequestException thrown = Assertions.assertThrows(ApiRequestException.class,
+				() -> testedObj.getSorted("lastName,phoneNumber", null, null, apiPath));
+		Assertions.assertEquals(HttpStatus.BAD_REQUEST, thrown.getStatusCode());
+		Assertions.assertEquals("Can't sort by 'phoneNumber'.", thrown.getMessage());
+	}
+
+	@Test
+	public void get_afterWrite_returnsNewSnapshotVersion()
+	{
+		// given
+		DataResponsePageDto before = (DataResponsePageDto)testedObj.get(0, 10, apiPath);
+
+		// when
+		testedObj.delete(userRepo.getFirst().getId());
+		DataResponsePageDto after = (DataResponsePageDto)testedObj.get(0, 10, apiPath);
+
+		// then
+		Assertions.assertTrue(after.getPagination().getVersion() > before.getPagination().getVersion());
+		/*a page already built keeps the data of its own snapshot*/
+		Assertions.assertEquals(userRepo.size(), before.getData().size());
+		Assertions.assertEquals(userRepo.size() - 1, after.getData().size());
+	}
+
+	@Test
+	public void getByCursor_followingLinks_walksAllUsers()
+	{
+		// given
+		DataResponsePageDto first = (DataResponsePageDto)testedObj.getByCursor("", 2, apiPath);
+		String nextCursor = first.getLinks().getNext().replaceAll(".*cursor=([^&]*).*", "$1");
+
+		// when
+		testedObj.delete(userRepo.getFirst().getId());
+		DataResponsePageDto next = (DataResponsePageDto)testedObj.getByCursor(nextCursor, 2, apiPath);
+
+		// then
+		Assertions.assertNull(first.getLinks().getPrev());
+		Assertions.assertEquals(1, next.getData().size());
+		Assertions.assertEquals(userRepo.get(2), next.getData().iterator().next());
+		Assertions.assertEquals(1, next.getPagination().getOffset());
+		Assertions.assertNull(next.getLinks().getNext());
+		Assertions.assertTrue(next.getLinks().getPrev().startsWith(apiPath + "?cursor="));
+	}
+
+	@Test
+	public void getByCursor_cursorOfEarlierRun_throwsException()
+	{
+		// given
+		DataResponsePageDto first = (DataResponsePageDto)testedObj.getByCursor("", 2, apiPath);
+		String nextCursor = first.getLinks().getNext().replaceAll(".*cursor=([^&]*).*", "$1");
+
+		// when
+		UsersService restarted = createService(userRepo);
+
+		// then
+		ApiRequestException thrown = Assertions.assertThrows(ApiRequestException.class,
+				() -> restarted.getByCursor(nextCursor, 2, apiPath));
+		Assertions.assertEquals(HttpStatus.BAD_REQUEST, thrown.getStatusCode());
+		Assertions.assertEquals(2, ((DataResponsePageDto)restarted.getByCursor("", 2, apiPath)).getData().size());
+	}
+
+	@Test
+	public void getByCursor_invalidCursor_throwsException()
+	{
+		// then
+		ApiRequestException thrown = Assertions.assertThrows(ApiRequestException.class,
+				() -> testedObj.getByCursor("not a cursor", 2, apiPath));
+		Assertions.assertEquals(thrown.getStatusCode(), HttpStatus.BAD_REQUEST);
+	}
+
 	@Test
 	public void get_offsetTooLarge_returnsEmpty()
 	{
@@ -139,6 +256,135 @@ class UsersServiceTests
 		Assertions.assertEquals(result.getData().size(), 0);
 	}
 
+	@Test
+	public void getMany_mixedIds_returnsUsersInOrderAndMissingIds()
+	{
+		// given
+		UUID unknown = UUID.randomUUID();
+		List<UUID> ids = List.of(userRepo.get(2).getId(), unknown, userRepo.get(0).getId());
+
+		// when
+		DataLookupResponseDto result = testedObj.getMany(ids);
+
+		// then
+		Assertions.assertEquals(List.of(userRepo.get(2), userRepo.get(0)), new ArrayList<>(result.getData()));
+		Assertions.assertEquals(List.of(unknown), result.getMissing());
+	}
+
+	@Test
+	public void getMany_tooManyIds_throwsException()
+	{
+		// given
+		List<UUID> ids = Stream.generate(UUID::randomUUID).limit(6).toList();
+
+		// then
+		ApiRequestException thrown = Assertions.assertThrows(ApiRequestException.class, () -> testedObj.getMany(ids));
+		Assertions.assertEquals(thrown.getStatusCode(), HttpStatus.BAD_REQUEST);
+	}
+
+	@Test
+	public void search_combinedCriteria_returnsMatchingUsers()
+	{
+		// given
+		UserQuery query = new UserQuery("gmail.com", null, null, LocalDate.of(2000, 1, 1), null, null, null, null, null);
+
+		// when
+		UserSearchResult result = testedObj.search(query, null, null, null);
+
+		// then
+		Assertions.assertEquals(List.of(userRepo.get(2), userRepo.get(1)), result.users());
+		Assertions.assertTrue(result.plan().startsWith("index(birthDate:2)"));
+	}
+
+	@Test
+	public void suggest_namePrefix_returnsMatchingUsers()
+	{
+		// when
+		List<User> result = testedObj.suggest("wa", null);
+
+		// then
+		Assertions.assertEquals(List.of(userRepo.get(1), userRepo.get(0)), result);
+	}
+
+	@Test
+	public void suggest_blankPrefix_throwsException()
+	{
+		// then
+		ApiRequestException thrown = Assertions.assertThrows(ApiRequestException.class, () -> testedObj.suggest(" ", null));
+		Assertions.assertEquals(thrown.getStatusCode(), HttpStatus.BAD_REQUEST);
+	}
+
+	@Test
+	public void search_noCriteria_throwsException()
+	{
+		// then
+		ApiRequestException thrown = Assertions.assertThrows(ApiRequestException.class,
+				() -> testedObj.search(new UserQuery(null, null, null, null, null, null, null, null, null), null, null, null));
+		Assertions.assertEquals(thrown.getStatusCode(), HttpStatus.BAD_REQUEST);
+	}
+
+	@Test
+	public void getByAge_ageBounds_returnsUsersOfAgeInclusive()
+	{
+		// given
+		testedObj = createService(userRepo, clockAt(LocalDate.of(2026, 6, 13)));
+
+		// when
+		List<User> adults = testedObj.getByAge(18, 30);
+		List<User> young = testedObj.getByAge(null, 29);
+
+		// then
+		Assertions.assertEquals(List.of(userRepo.get(0), userRepo.get(2)), adults);
+		Assertions.assertEquals(List.of(userRepo.get(2), userRepo.get(1)), young);
+	}
+
+	@Test
+	public void getByAge_invalidBounds_throwsException()
+	{
+		// then
+		Assertions.assertEquals(HttpStatus.BAD_REQUEST,
+				Assertions.assertThrows(ApiRequestException.class, () -> testedObj.getByAge(null, null)).getStatusCode());
+		Assertions.assertEquals(HttpStatus.BAD_REQUEST,
+				Assertions.assertThrows(ApiRequestException.class, () -> testedObj.getByAge(30, 18)).getStatusCode());
+		Assertions.assertEquals(HttpStatus.BAD_REQUEST,
+				Assertions.assertThrows(ApiRequestException.class, () -> testedObj.getByAge(-1, null)).getStatusCode());
+	}
+
+	@Test
+	public void search_ageBounds_narrowBirthDateRange()
+	{
+		// given
+		testedObj = createService(userRepo, clockAt(LocalDate.of(2026, 6, 13)));
+		UserQuery query = new UserQuery("gmail.com", null, null, null, LocalDate.of(2000, 1, 1), null, null, null, null);
+
+		// when
+		UserSearchResult result = testedObj.search(query, 18, null, null);
+
+		// then
+		Assertions.assertEquals(List.of(userRepo.get(0)), result.users());
+		Assertions.assertTrue(result.plan().startsWith("index(birthDate:1)"));
+	}
+
+	@Test
+	public void add_userOfMinAgeSinceToday_addsUserOnlyFromBirthday()
+	{
+		// given
+		LocalDate today = LocalDate.of(2026, 6, 13);
+		LocalDate birthDate = today.minusYears(config.getUserMinAge());
+		User toAdd = new User(UUID.randomUUID(), "test@gmail.com", "test", "test", birthDate);
+
+		// when
+		testedObj = createService(userRepo, clockAt(today.minusDays(1)));
+		ApiRequestException thrown = Assertions.assertThrows(ApiRequestException.class, () -> testedObj.add(toAdd));
+		testedObj = createService(userRepo, clockAt(today));
+		User added = testedObj.add(toAdd);
+
+		// then
+		Assertions.assertEquals(HttpStatus.FORBIDDEN, thrown.getStatusCode());
+		Assertions.assertEquals("Illegal user age: " + (config.getUserMinAge() - 1), thrown.getMessage());
+		Assertions.assertEquals(birthDate, added.getBirthDate());
+	}
+
 	@Test
 	public void getByBirthDate_searchSuccessful_returnsUsers()
 	{
@@ -153,6 +399,59 @@ class UsersServiceTests
 		Assertions.assertEquals(2, result.size());
 	}
 
+	@Test
+	public void getByBirthDate_manyUsers_returnsSortedUsersInRange()
+	{
+		// given
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 5000; i++)
+		{
+			LocalDate birthDate = LocalDate.of(1970, 1, 1).plusDays((i * 7919L) % 9000);
+			users.add(new User(UUID.randomUUID(), i + "@test.com", "test", "test", birthDate));
+		}
+		testedObj = createService(users);
+		for (int i = 0; i < users.size(); i += 3)
+			testedObj.delete(users.get(i).getId());
+
+		LocalDate minDate = LocalDate.of(1980, 1, 1);
+		LocalDate maxDate = LocalDate.of(1985, 1, 1);
+		long expected = 0;
+		for (int i = 0; i < users.size(); i++)
+		{
+			LocalDate bd = users.get(i).getBirthDate();
+			if (i % 3 != 0 && bd.isAfter(minDate) && bd.isBefore(maxDate))
+				expected++;
+		}
+
+		// when
+		List<User> result = testedObj.getByBirthDate(minDate, maxDate);
+
+		// then
+		Assertions.assertEquals(expected, result.size());
+		for (int i = 1; i < result.size(); i++)
+			Assertions.assertFalse(result.get(i).getBirthDate().isBefore(result.get(i - 1).getBirthDate()));
+		Assertions.assertTrue(result.stream().allMatch(
+				u -> u.getBirthDate().isAfter(minDate) && u.getBirthDate().isBefore(maxDate)));
+	}
+
+	@Test
+	public void getByBirthDate_birthDateUpdated_returnsUserInNewRange()
+	{
+		// given
+		User user = userRepo.getFirst();
+		LocalDate birthDate = LocalDate.of(1950, 5, 5);
+		testedObj.update(new User(user.getId(), user.getEmail(), "test", "test", birthDate));
+
+		// when
+		List<User> oldRange = testedObj.getByBirthDate(user.getBirthDate().minusDays(1), user.getBirthDate().plusDays(1));
+		List<User> newRange = testedObj.getByBirthDate(birthDate.minusDays(1), birthDate.plusDays(1));
+
+		// then
+		Assertions.assertTrue(oldRange.isEmpty());
+		Assertions.assertEquals(1, newRange.size());
+		Assertions.assertEquals(user.getId(), newRange.getFirst().getId());
+	}
+
 	@Test
 	public void getByBirthDate_notFound_returnsEmpty()
 	{
@@ -180,6 +479,35 @@ class UsersServiceTests
 		Assertions.assertEquals(thrown.getStatusCode(), HttpStatus.BAD_REQUEST);
 	}
 
+	@Test
+	public void export_noFilter_returnsAllUsersInOrder()
+	{
+		// when
+		List<User> result = testedObj.export(null, null).toList();
+
+		// then
+		Assertions.assertEquals(userRepo, result);
+	}
+
+	@Test
+	public void export_birthDateFilter_returnsUsersInInclusiveRange()
+	{
+		// when
+		List<User> result = testedObj.export(LocalDate.of(1996, 6, 13), LocalDate.of(2001, 3, 26)).toList();
+
+		// then
+		Assertions.assertEquals(List.of(userRepo.get(0), userRepo.get(2)), result);
+	}
+
+	@Test
+	public void export_illegalDateRange_throwsException()
+	{
+		// then
+		ApiRequestException thrown = Assertions.assertThrows(ApiRequestException.class,
+				() -> testedObj.export(LocalDate.of(2001, 1, 1), LocalDate.of(2000, 1, 1)));
+		Assertions.assertEquals(thrown.getStatusCode(), HttpStatus.BAD_REQUEST);
+	}
+
 	@Test
 	public void add_addedSuccessfully_returnsUser()
 	{
@@ -238,6 +566,127 @@ class UsersServiceTests
 		Assertions.assertThrows(BadEmailException.class, () -> testedObj.add(toAdd));
 	}
 
+	@Test
+	public void add_emailIsInUseDifferentCase_throwsException()
+	{
+		// given
+		String email = userRepo.getFirst().getEmail().toUpperCase();
+		User toAdd = new User(UUID.randomUUID(), email, "test", "test", LocalDate.of(1996, 6, 13));
+
+		// then
+		Assertions.assertThrows(BadEmailException.class, () -> testedObj.add(toAdd));
+	}
+
+	@Test
+	public void add_emailReleasedByUpdateAndDelete_returnsUser()
+	{
+		// given
+		User first = userRepo.getFirst();
+		User last = userRepo.getLast();
+		testedObj.update(new User(first.getId(), "changed@test.com", "test", "test", LocalDate.of(1996, 6, 13)));
+		testedObj.delete(last.getId());
+
+		// when
+		User fromUpdated = testedObj.add(new User(first.getEmail(), "test", "test", LocalDate.of(1996, 6, 13)));
+		User fromDeleted = testedObj.add(new User(last.getEmail(), "test", "test", LocalDate.of(1996, 6, 13)));
+
+		// then
+		Assertions.assertEquals(first.getEmail(), fromUpdated.getEmail());
+		Assertions.assertEquals(last.getEmail(), fromDeleted.getEmail());
+		Assertions.assertThrows(BadEmailException.class,
+				() -> testedObj.add(new User("changed@test.com", "test", "test", LocalDate.of(1996, 6, 13))));
+	}
+
+	@Test
+	public void addAll_mixedItems_createsValidUsersAndReportsOthers()
+	{
+		// given
+		List<User> batch = List.of(
+				new User("alice@gmail.com", "Alice", "Brown", LocalDate.of(1990, 1, 1)),
+				new User("not an email", "Carl", "Brown", LocalDate.of(1990, 1, 1)),
+				new User("ALICE@gmail.com", "Alice", "Green", LocalDate.of(1990, 1, 1)),
+				new User("bob@GMAIL.com", "Bob", "Brown", LocalDate.of(1990, 1, 1)),
+				new User("young@gmail.com", "Young", "Brown", LocalDate.now().minusYears(1)),
+				new User("dan@gmail.com", "Dan", "Brown", LocalDate.of(1985, 5, 5)));
+
+		// when
+		List<BatchItemResult> results = testedObj.addAll(batch);
+
+		// then
+		Assertions.assertEquals(batch.size(), results.size());
+		int[] expectedStatus = { 201, 400, 400, 400, 403, 201 };
+		for (int i = 0; i < batch.size(); i++)
+		{
+			Assertions.assertEquals(i, results.get(i).getIndex());
+			Assertions.assertEquals(expectedStatus[i], results.get(i).getStatus());
+		}
+
+		Assertions.assertEquals("Alice", testedObj.getOne(results.get(0).getId()).getFirstName());
+		Assertions.assertEquals("Dan", testedObj.getOne(results.get(5).getId()).getFirstName());
+		Assertions.assertNull(results.get(2).getId());
+		Assertions.assertNotNull(results.get(3).getDetail());
+	}
+
+	@Test
+	public void addAll_tooManyUsers_throwsException()
+	{
+		// given
+		List<User> batch = new ArrayList<>();
+		for (int i = 0; i <= 10; i++)
+			batch.add(new User(i + "@gmail.com", "Bob", "Brown", LocalDate.of(1990, 1, 1)));
+
+		// then
+		ApiRequestException thrown = Assertions.assertThrows(ApiRequestException.class, () -> testedObj.addAll(batch));
+		Assertions.assertEquals(thrown.getStatusCode(), HttpStatus.BAD_REQUEST);
+	}
+
+	@Test
+	public void patchAll_mixedItems_patchesKnownUsersAndReportsOthers()
+	{
+		// given
+		UUID bob = userRepo.get(0).getId();
+		UUID john = userRepo.get(1).getId();
+		List<UserPatchItemDto> patches = List.of(
+				new UserPatchItemDto(bob, null, "Robert", null, null, null, null),
+				new UserPatchItemDto(UUID.randomUUID(), null, "Nobody", null, null, null, null),
+				new UserPatchItemDto(john, "MARI@gmail.com", null, null, null, null, null),
+				new UserPatchItemDto(bob, null, "Bobby", null, null, null, null),
+				new UserPatchItemDto(null, null, "Nobody", null, null, null, null));
+
+		// when
+		List<BatchItemResult> results = testedObj.patchAll(patches);
+
+		// then
+		int[] expectedStatus = { 200, 404, 400, 400, 400 };
+		for (int i = 0; i < patches.size(); i++)
+			Assertions.assertEquals(expectedStatus[i], results.get(i).getStatus());
+
+		Assertions.assertEquals("Robert", testedObj.getOne(bob).getFirstName());
+		Assertions.assertEquals("john@gmail.com", testedObj.getOne(john).getEmail());
+		Assertions.assertEquals(john, results.get(2).getId());
+	}
+
+	@Test
+	public void deleteAll_mixedIds_deletesKnownUsersAndReportsOthers()
+	{
+		// given
+		UUID bob = userRepo.get(0).getId();
+		UUID mari = userRepo.get(2).getId();
+		List<UUID> ids = Arrays.asList(bob, UUID.randomUUID(), mari, bob, null);
+
+		// when
+		List<BatchItemResult> results = testedObj.deleteAll(ids);
+
+		// then
+		int[] expectedStatus = { 200, 404, 200, 400, 400 };
+		for (int i = 0; i < ids.size(); i++)
+			Assertions.assertEquals(expectedStatus[i], results.get(i).getStatus());
+
+		DataResponseDto page = testedObj.get(0, 10, apiPath);
+		Assertions.assertEquals(1, page.getData().size());
+		Assertions.assertEquals(userRepo.get(1), page.getData().iterator().next());
+	}
+
 	@Test
 	public void update_updatedSuccessfully()
 	{
@@ -249,7 +698,7 @@ class UsersServiceTests
 		testedObj.update(toUpdate);
 
 		// then
-		Assertions.assertEquals(toUpdate, userRepo.getFirst());
+		Assertions.assertEquals(toUpdate, testedObj.getOne(id));
 	}
 
 	@Test
@@ -299,7 +748,7 @@ class UsersServiceTests
 		testedObj.patch(id, data);
 
 		// then
-		User result = userRepo.getFirst();
+		User result = testedObj.getOne(id);
 
 		/*check changed field*/
 		Assertions.assertEquals(data.getFirstName(),result.getFirstName());
@@ -364,7 +813,37 @@ class UsersServiceTests
 		testedObj.delete(id);
 
 		// then
-		Assertions.assertEquals(resultSize, userRepo.size());
+		DataResponseDto page = testedObj.get(0, userRepo.size(), apiPath);
+		Assertions.assertEquals(resultSize, page.getData().size());
+		Assertions.assertThrows(ApiRequestException.class, () -> testedObj.getOne(id));
+	}
+
+	@Test
+	public void delete_manyUsers_remainingUsersStayReachable()
+	{
+		// given
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 5000; i++)
+			users.add(new User(UUID.randomUUID(), i + "@test.com", "test", "test", LocalDate.of(1996, 6, 13)));
+		testedObj = createService(users);
+
+		// when
+		for (int i = 0; i < users.size(); i += 2)
+			testedObj.delete(users.get(i).getId());
+
+		// then
+		for (int i = 0; i < users.size(); i++)
+		{
+			UUID id = users.get(i).getId();
+			if (i % 2 == 0)
+				Assertions.assertThrows(ApiRequestException.class, () -> testedObj.getOne(id));
+			else
+				Assertions.assertEquals(users.get(i), testedObj.getOne(id));
+		}
+
+		DataResponsePageDto page = (DataResponsePageDto)testedObj.get(1000, 5, apiPath);
+		Assertions.assertEquals(users.size() / 2, page.getPagination().getTotal());
+		Assertions.assertEquals(users.get(2001), page.getData().iterator().next());
 	}
 
 	@Test